@@ -0,0 +1,254 @@
+/*
+ * Copyright (C) 2006 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.content.res;
+
+import android.graphics.Bitmap;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
+
+/**
+ * The bitmaps of {@link Resources}, by resource id, within a budget of
+ * bytes: once over it, the least recently used bitmaps are dropped. The size
+ * of a bitmap is {@link Bitmap#getByteCount()}.
+ *
+ * A pinned id, e.g. the bitmap of a view on screen, is never dropped, but
+ * still counts against the budget. Pins are counted, an id is pinned until
+ * it was unpinned as many times.
+ */
+public final class BitmapCache {
+
+	private final static class Entry {
+		int mId;
+		Bitmap mBitmap;
+		int mBytes;
+
+		// least recently used first
+		Entry mPrev;
+		Entry mNext;
+	}
+
+	// id -> Entry
+	private final SparseArray mEntries = new SparseArray();
+	// id -> pin count
+	private final SparseIntArray mPins = new SparseIntArray();
+
+	// sentinel of the circular list of entries, mHead.mNext is the least
+	// recently used
+	private final Entry mHead = new Entry();
+
+	private int mMaxSize;
+	private int mSize = 0;
+
+	private int mHitCount = 0;
+	private int mMissCount = 0;
+	private int mPutCount = 0;
+	private int mEvictionCount = 0;
+
+	/**
+	 * @param maxSize budget in bytes
+	 */
+	public BitmapCache(int maxSize) {
+		if (maxSize < 0) {
+			throw new IllegalArgumentException("maxSize " + maxSize);
+		}
+		mMaxSize = maxSize;
+		mHead.mPrev = mHead;
+		mHead.mNext = mHead;
+	}
+
+	/**
+	 * Returns the bitmap of the id and makes it the most recently used, or
+	 * null if it is not cached.
+	 */
+	public synchronized Bitmap get(int id) {
+		final Entry entry = (Entry) mEntries.get(id);
+		if (entry == null) {
+			mMissCount++;
+			return null;
+		}
+
+		mHitCount++;
+		unlink(entry);
+		linkLast(entry);
+		return entry.mBitmap;
+	}
+
+	/**
+	 * True if the id is cached, without counting a hit or a miss.
+	 */
+	public synchronized boolean contains(int id) {
+		return mEntries.get(id) != null;
+	}
+
+	/**
+	 * Caches the bitmap of the id as the most recently used, replacing the
+	 * previous one, then drops bitmaps until the cache is within its budget.
+	 * A bitmap larger than the whole budget is not cached unless pinned.
+	 */
+	public synchronized void put(int id, Bitmap bitmap) {
+		if (bitmap == null) {
+			throw new IllegalArgumentException("bitmap must not be null");
+		}
+
+		final int bytes = bitmap.getByteCount();
+		if (bytes > mMaxSize && mPins.get(id) == 0) {
+			// would only flush the others before being dropped itself
+			remove(id);
+			return;
+		}
+
+		Entry entry = (Entry) mEntries.get(id);
+		if (entry != null) {
+			mSize -= entry.mBytes;
+			unlink(entry);
+		}
+		else {
+			entry = new Entry();
+			entry.mId = id;
+			mEntries.put(id, entry);
+		}
+
+		entry.mBitmap = bitmap;
+		entry.mBytes = bytes;
+		mSize += entry.mBytes;
+		linkLast(entry);
+		mPutCount++;
+
+		trimToSize(mMaxSize);
+	}
+
+	public synchronized void remove(int id) {
+		final Entry entry = (Entry) mEntries.get(id);
+		if (entry != null) {
+			mEntries.delete(id);
+			unlink(entry);
+			mSize -= entry.mBytes;
+		}
+	}
+
+	/**
+	 * Keeps the bitmap of the id, cached now or later, from being dropped.
+	 */
+	public synchronized void pin(int id) {
+		mPins.put(id, mPins.get(id) + 1);
+	}
+
+	/**
+	 * Undoes one {@link #pin(int)}. The bitmap may be dropped right away if
+	 * the cache is over its budget.
+	 */
+	public synchronized void unpin(int id) {
+		final int count = mPins.get(id);
+		if (count <= 1) {
+			mPins.delete(id);
+			trimToSize(mMaxSize);
+		}
+		else {
+			mPins.put(id, count - 1);
+		}
+	}
+
+	public synchronized boolean isPinned(int id) {
+		return mPins.get(id) > 0;
+	}
+
+	/**
+	 * Changes the budget, dropping bitmaps if the cache is over it.
+	 */
+	public synchronized void setMaxSize(int maxSize) {
+		if (maxSize < 0) {
+			throw new IllegalArgumentException("maxSize " + maxSize);
+		}
+		mMaxSize = maxSize;
+		trimToSize(maxSize);
+	}
+
+	public synchronized int getMaxSize() {
+		return mMaxSize;
+	}
+
+	/**
+	 * Bytes of the cached bitmaps, pinned ones included.
+	 */
+	public synchronized int size() {
+		return mSize;
+	}
+
+	/**
+	 * Drops every bitmap which is not pinned.
+	 */
+	public synchronized void evictAll() {
+		trimToSize(0);
+	}
+
+	public synchronized int getHitCount() {
+		return mHitCount;
+	}
+
+	public synchronized int getMissCount() {
+		return mMissCount;
+	}
+
+	public synchronized int getPutCount() {
+		return mPutCount;
+	}
+
+	public synchronized int getEvictionCount() {
+		return mEvictionCount;
+	}
+
+	public synchronized String toString() {
+		final int accesses = mHitCount + mMissCount;
+		return "BitmapCache[size=" + mSize + ",maxSize=" + mMaxSize
+				+ ",entries=" + mEntries.size() + ",pinned=" + mPins.size()
+				+ ",hits=" + mHitCount + ",misses=" + mMissCount
+				+ ",hitRate=" + (accesses == 0 ? 0 : 100 * mHitCount / accesses) + "%"
+				+ ",evictions=" + mEvictionCount + "]";
+	}
+
+	/**
+	 * Drops the least recently used bitmaps which are not pinned until the
+	 * cache holds at most maxSize bytes or only pinned bitmaps.
+	 */
+	private void trimToSize(int maxSize) {
+		Entry entry = mHead.mNext;
+		while (mSize > maxSize && entry != mHead) {
+			final Entry next = entry.mNext;
+			if (mPins.get(entry.mId) == 0) {
+				mEntries.delete(entry.mId);
+				unlink(entry);
+				mSize -= entry.mBytes;
+				mEvictionCount++;
+			}
+			entry = next;
+		}
+	}
+
+	private void linkLast(Entry entry) {
+		entry.mPrev = mHead.mPrev;
+		entry.mNext = mHead;
+		mHead.mPrev.mNext = entry;
+		mHead.mPrev = entry;
+	}
+
+	private static void unlink(Entry entry) {
+		entry.mPrev.mNext = entry.mNext;
+		entry.mNext.mPrev = entry.mPrev;
+		entry.mPrev = null;
+		entry.mNext = null;
+	}
+}
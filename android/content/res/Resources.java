@@ -22,6 +22,7 @@ import java.util.Hashtable;
 import com.android.internal.R;
 
 import android.graphics.Bitmap;
+import android.graphics.BitmapDecoder;
 import android.graphics.BitmapFactory;
 import android.graphics.drawable.Drawable;
 
@@ -57,7 +58,12 @@ public class Resources {
     
     private Hashtable/*<Drawable.ConstantState>*/ mDrawableCache = new Hashtable();
     
-    private Hashtable/*<Drawable.ConstantState>*/ mBitmapCache = new Hashtable();
+    /**
+     * Budget of the bitmap cache in bytes, see {@link #getBitmapCache()}.
+     */
+    public static final int DEFAULT_BITMAP_CACHE_SIZE = 1024 * 1024;
+
+    private final BitmapCache mBitmapCache = new BitmapCache(DEFAULT_BITMAP_CACHE_SIZE);
     
     
     //private final SparseArray<WeakReference<ColorStateList> > mColorStateListCache = new SparseArray<WeakReference<ColorStateList> >();
@@ -1698,22 +1704,82 @@ public class Resources {
         return null;
     }
 
+    /**
+     * Returns the bitmap of a resource, decoding it on the calling thread
+     * unless it was prefetched. A prefetch in progress is waited for rather
+     * than decoding the image twice.
+     */
     public Bitmap getBitmap(int id) {
     	
-    	Integer Id = new Integer(id);
-    	
-    	Bitmap bmp = (Bitmap) mBitmapCache.get(Id);
+    	Bitmap bmp = mBitmapCache.get(id);
     	
     	if(bmp == null) {
-    		bmp =  loadBitmap(id);
-    		mBitmapCache.put(Id, bmp);
+    		String path = getBitmapPath(id);
+    		if (path == null) {
+    			return null;
+    		}
+    		bmp = BitmapDecoder.getInstance().decodeNow(path);
+    		if (bmp != null) {
+    			mBitmapCache.put(id, bmp);
+    		}
     	}
     	
     	
     	return bmp;
     }
+
+    /**
+     * Starts decoding the bitmap of a resource off the UI thread, so that a
+     * later {@link #getBitmap(int)} does not block on it.
+     */
+    public void prefetchBitmap(final int id) {
+    	
+    	String path = getBitmapPath(id);
+    	
+    	if (path == null || mBitmapCache.contains(id)) {
+    		return;
+    	}
+
+    	BitmapFactory.decodeResourceAsync(path, null, new BitmapFactory.OnDecodedListener() {
+    		public void onBitmapDecoded(String resourcePathName, Bitmap bitmap) {
+    			if (bitmap != null && !mBitmapCache.contains(id)) {
+    				mBitmapCache.put(id, bitmap);
+    			}
+    		}
+    	});
+    }
+
+    /**
+     * The cache of the bitmaps returned by {@link #getBitmap(int)}, least
+     * recently used bitmaps being dropped once it is over its budget. Its
+     * statistics tell how well the budget fits the application.
+     */
+    public BitmapCache getBitmapCache() {
+    	return mBitmapCache;
+    }
+
+    /**
+     * Keeps the bitmap of a resource cached, e.g. while a view showing it is
+     * attached. Each call has to be matched by {@link #unpinBitmap(int)}.
+     */
+    public void pinBitmap(int id) {
+    	mBitmapCache.pin(id);
+    }
+
+    public void unpinBitmap(int id) {
+    	mBitmapCache.unpin(id);
+    }
+
+    /**
+     * Prefetches the bitmaps of the framework widgets.
+     */
+    public void prefetchBitmaps() {
+    	for (int i = 0; i < BITMAP_IDS.length; i++) {
+    		prefetchBitmap(BITMAP_IDS[i]);
+    	}
+    }
     
-    private Bitmap loadBitmap(int id) {
+    private String getBitmapPath(int id) {
     	
     	String name = getResourceName(id);
     	
@@ -1721,10 +1787,21 @@ public class Resources {
     		return null;
     	}
 
-    	return BitmapFactory.decodeResource("/flow/"+name);
+    	return "/flow/"+name;
 
     }
     
+    // the ids getResourceName() knows about
+    private static final int[] BITMAP_IDS = {
+    	R.drawable.drawable_checkbox_checked,
+    	R.drawable.drawable_checkbox_unchecked,
+    	R.drawable.drawable_checkbox_disabled,
+    	R.drawable.drawable_radio_button_checked,
+    	R.drawable.drawable_radio_button_unchecked,
+    	R.drawable.drawable_spinner_pressed,
+    	R.drawable.drawable_spinner_released,
+    };
+
     private String getResourceName(int id) {
 
     	switch(id) {
@@ -17,6 +17,7 @@
 package android.graphics;
 
 import java.awt.Image;
+import java.awt.image.BufferedImage;
 
 
 
@@ -469,6 +470,20 @@ public final class Bitmap {
     public final int getHeight() {
         return mHeight == -1 ? mHeight = mNativeBitmap.getHeight(null) : mHeight;
     }
+
+    /**
+     * Returns the number of bytes used to store the bitmap's pixels: the
+     * pixel size of a BufferedImage, 4 bytes per pixel for the images
+     * decoded by the toolkit.
+     */
+    public final int getByteCount() {
+        int bitsPerPixel = 32;
+        if (mNativeBitmap instanceof BufferedImage) {
+            bitsPerPixel = ((BufferedImage) mNativeBitmap).getColorModel().getPixelSize();
+        }
+        final long bits = (long) Math.max(getWidth(), 0) * Math.max(getHeight(), 0) * bitsPerPixel;
+        return (int) ((bits + 7) / 8);
+    }
     
     /**
      * Return the number of bytes between rows in the bitmap's pixels. Note that
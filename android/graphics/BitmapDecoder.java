@@ -0,0 +1,367 @@
+/*
+ * Copyright (C) 2007 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.graphics;
+
+import java.util.Hashtable;
+import java.util.Vector;
+
+import android.os.Handler;
+import android.util.Log;
+
+/**
+ * Decodes images of the application jar on a bounded pool of background
+ * threads, see {@link BitmapFactory#decodeResourceAsync}.
+ *
+ * A request for an image already queued or being decoded joins it instead
+ * of decoding it again. A request is dropped once every caller waiting for
+ * it canceled, the decode being interrupted if it had started.
+ */
+public final class BitmapDecoder {
+
+	private static final String TAG = "BitmapDecoder";
+
+	public static final int DEFAULT_THREAD_COUNT = 2;
+
+	private static BitmapDecoder sInstance = null;
+
+	/**
+	 * The decode of an image and the callers waiting for it.
+	 */
+	static final class Request {
+
+		final String mPath;
+
+		// the options the decode polls, canceled when every caller is
+		final BitmapFactory.Options mDecodeOptions = new BitmapFactory.Options();
+
+		// parallel, the options of a caller may be null, the listener of
+		// decodeNow() is
+		final Vector mListeners = new Vector(1);
+		final Vector mOptions = new Vector(1);
+
+		private final BitmapDecoder mDecoder;
+
+		boolean mStarted = false;
+		boolean mDone = false;
+		Bitmap mBitmap = null;
+
+		Request(BitmapDecoder decoder, String path) {
+			mDecoder = decoder;
+			mPath = path;
+		}
+
+		/**
+		 * Called when the options of one of the callers were canceled.
+		 */
+		void onCancel() {
+			mDecoder.onCancel(this);
+		}
+
+		/**
+		 * True when no caller is waiting for the image anymore.
+		 */
+		boolean isCanceled() {
+			for (int i = 0; i < mOptions.size(); i++) {
+				final Object opts = mOptions.elementAt(i);
+				if (opts == NO_OPTIONS || !((BitmapFactory.Options) opts).mCancel) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	// stands for null options in Request.mOptions
+	private static final Object NO_OPTIONS = new Object();
+
+	// path -> Request, queued or being decoded
+	private final Hashtable mRequests = new Hashtable();
+	// Request, waiting for a thread
+	private final Vector mQueue = new Vector();
+
+	private final int mMaxThreads;
+	private int mThreadCount = 0;
+	private int mIdleThreads = 0;
+
+	private Handler mHandler = null;
+
+	// statistics
+	private int mDecodeCount = 0;
+	private int mJoinedCount = 0;
+	private int mCanceledCount = 0;
+
+	public BitmapDecoder(int maxThreads) {
+		if (maxThreads <= 0) {
+			throw new IllegalArgumentException("maxThreads " + maxThreads);
+		}
+		mMaxThreads = maxThreads;
+	}
+
+	public static synchronized BitmapDecoder getInstance() {
+		if (sInstance == null) {
+			sInstance = new BitmapDecoder(DEFAULT_THREAD_COUNT);
+		}
+		return sInstance;
+	}
+
+	/**
+	 * Queues the decode of an image, or joins the one in progress.
+	 *
+	 * @param opts null-ok; the options of this request, to cancel it
+	 * @param listener called on the UI thread with the bitmap, or null if it
+	 *        could not be decoded
+	 */
+	public void decode(String path, BitmapFactory.Options opts, BitmapFactory.OnDecodedListener listener) {
+		if (path == null || listener == null) {
+			throw new IllegalArgumentException("path and listener must not be null");
+		}
+
+		final Request request;
+		synchronized (this) {
+			if (mHandler == null) {
+				// bound to the UI thread whichever thread asks first
+				mHandler = new Handler();
+			}
+
+			Request existing = (Request) mRequests.get(path);
+			if (existing != null && existing.mDecodeOptions.mCancel) {
+				// being interrupted, its result will not be delivered
+				mRequests.remove(path);
+				existing = null;
+			}
+
+			if (existing != null) {
+				request = existing;
+				mJoinedCount++;
+			}
+			else {
+				request = new Request(this, path);
+				mRequests.put(path, request);
+				mQueue.addElement(request);
+				startThread();
+			}
+
+			request.mListeners.addElement(listener);
+			request.mOptions.addElement(opts != null ? (Object) opts : NO_OPTIONS);
+		}
+
+		if (opts != null) {
+			synchronized (opts) {
+				opts.mRequest = request;
+			}
+			if (opts.mCancel) {
+				onCancel(request);
+			}
+		}
+	}
+
+	/**
+	 * Decodes an image on the calling thread, unless it is being decoded
+	 * already: then waits for it. A queued request for the image is taken
+	 * from the queue and completed here. Either way this call counts as a
+	 * caller which never cancels, so the decode goes on even if the others
+	 * cancel.
+	 */
+	public Bitmap decodeNow(String path) {
+		Request request;
+		synchronized (this) {
+			request = (Request) mRequests.get(path);
+			if (request != null && request.mDecodeOptions.mCancel) {
+				// being interrupted, decoded again below
+				request = null;
+			}
+
+			if (request != null) {
+				// a caller which never cancels, and has no listener
+				request.mListeners.addElement(null);
+				request.mOptions.addElement(NO_OPTIONS);
+				mJoinedCount++;
+
+				if (!request.mStarted) {
+					mQueue.removeElement(request);
+					request.mStarted = true;
+				}
+				else {
+					while (!request.mDone) {
+						try {
+							wait();
+						}
+						catch (InterruptedException e) {
+							return null;
+						}
+					}
+					return request.mBitmap;
+				}
+			}
+		}
+
+		if (request == null) {
+			return BitmapFactory.decodeResource(path);
+		}
+
+		run(request);
+		return request.mBitmap;
+	}
+
+	/**
+	 * Number of images decoded, requests which joined a decode, and requests
+	 * dropped because they were canceled.
+	 */
+	public synchronized String getStats() {
+		return "decoded " + mDecodeCount + ", joined " + mJoinedCount + ", canceled " + mCanceledCount;
+	}
+
+	private synchronized void onCancel(Request request) {
+		if (request.mDone || !request.isCanceled()) {
+			return;
+		}
+
+		mCanceledCount++;
+		if (mRequests.get(request.mPath) == request) {
+			mRequests.remove(request.mPath);
+		}
+		if (!request.mStarted) {
+			mQueue.removeElement(request);
+		}
+		else {
+			// polled by the decode
+			request.mDecodeOptions.mCancel = true;
+		}
+	}
+
+	/**
+	 * Starts a thread if none is idle and the pool is not full, called with
+	 * the lock held.
+	 */
+	private void startThread() {
+		if (mIdleThreads > 0) {
+			notifyAll();
+			return;
+		}
+		if (mThreadCount >= mMaxThreads) {
+			return;
+		}
+
+		final Thread thread = new Thread(new Runnable() {
+			public void run() {
+				work();
+			}
+		}, TAG + "-" + mThreadCount);
+		thread.setDaemon(true);
+		thread.setPriority(Thread.NORM_PRIORITY - 1);
+		mThreadCount++;
+		thread.start();
+	}
+
+	private void work() {
+		try {
+			while (true) {
+				final Request request;
+				synchronized (this) {
+					mIdleThreads++;
+					while (mQueue.isEmpty()) {
+						try {
+							wait();
+						}
+						catch (InterruptedException e) {
+							// checked again
+						}
+					}
+					mIdleThreads--;
+
+					request = (Request) mQueue.elementAt(0);
+					mQueue.removeElementAt(0);
+					request.mStarted = true;
+				}
+
+				run(request);
+			}
+		}
+		finally {
+			// only reached if the thread dies, another one takes its place
+			synchronized (this) {
+				mThreadCount--;
+				if (!mQueue.isEmpty()) {
+					startThread();
+				}
+			}
+		}
+	}
+
+	private void run(final Request request) {
+		Bitmap bitmap = null;
+		try {
+			bitmap = BitmapFactory.decodeResource(request.mPath, request.mDecodeOptions);
+		}
+		catch (RuntimeException e) {
+			Log.e(TAG, "decoding " + request.mPath, e);
+		}
+		catch (Error e) {
+			// e.g. out of memory, the image is just not decoded
+			Log.e(TAG, "decoding " + request.mPath, e);
+		}
+		finally {
+			// decodeNow() may be waiting for it
+			synchronized (this) {
+				request.mBitmap = bitmap;
+				request.mDone = true;
+				if (mRequests.get(request.mPath) == request) {
+					mRequests.remove(request.mPath);
+				}
+				mDecodeCount++;
+				notifyAll();
+			}
+		}
+
+		if (request.mDecodeOptions.mCancel) {
+			return;
+		}
+
+		mHandler.post(new Runnable() {
+			public void run() {
+				deliver(request);
+			}
+		});
+	}
+
+	/**
+	 * Calls the listeners of the callers which did not cancel, on the UI
+	 * thread.
+	 */
+	private void deliver(Request request) {
+		for (int i = 0; i < request.mListeners.size(); i++) {
+			final Object listener = request.mListeners.elementAt(i);
+			if (listener == null) {
+				// decodeNow() got the bitmap already
+				continue;
+			}
+			final Object opts = request.mOptions.elementAt(i);
+			if (opts != NO_OPTIONS) {
+				final BitmapFactory.Options options = (BitmapFactory.Options) opts;
+				synchronized (options) {
+					options.mRequest = null;
+				}
+				if (options.mCancel) {
+					continue;
+				}
+				options.outWidth = request.mDecodeOptions.outWidth;
+				options.outHeight = request.mDecodeOptions.outHeight;
+			}
+			((BitmapFactory.OnDecodedListener) listener).onBitmapDecoded(request.mPath, request.mBitmap);
+		}
+	}
+}
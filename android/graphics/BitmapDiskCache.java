@@ -0,0 +1,417 @@
+/*
+ * Copyright (C) 2007 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.graphics;
+
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import android.util.Log;
+
+/**
+ * Keeps decoded images on disk in the format the panel shows, so that the
+ * next start maps them instead of inflating and converting the PNGs again.
+ * See {@link BitmapFactory#setDiskCache}.
+ *
+ * An image is stored in gray levels at its sampled size: 4 bits per pixel,
+ * the 16 levels of the e-ink panel, or 8 bits of gray and 8 bits of alpha
+ * when it has transparent pixels. The images returned on a miss are
+ * converted the same way, so they look the same on every start.
+ *
+ * A file is written to a temporary file, synced, then renamed over the
+ * entry: a crash leaves either the old entry or the new one. Entries of
+ * another format or cache version, or truncated, are deleted when read.
+ * Once the files go over the size limit, the least recently used are
+ * deleted.
+ *
+ * The gray images need color models and BufferedImage constructors which
+ * the Personal Basis Profile lacks, see {@link #isSupported()}. Entries are
+ * mapped where java.nio is available, read otherwise.
+ */
+public final class BitmapDiskCache {
+
+	private static final String TAG = "BitmapDiskCache";
+
+	public static final int DEFAULT_MAX_SIZE = 4 * 1024 * 1024;
+
+	/** 16 gray levels, 2 pixels per byte, rows padded to a byte */
+	public static final int CONFIG_GRAY_4 = 1;
+	/** gray and alpha, 8 bits each */
+	public static final int CONFIG_GRAY_ALPHA_8 = 2;
+
+	// "FMBC"
+	private static final int MAGIC = 0x464d4243;
+	// changes whenever the file layout does
+	private static final int FORMAT_VERSION = 1;
+
+	private static final String SUFFIX = ".bmc";
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	// whether the VM has what GrayImages and FileMapping need
+	private static final boolean sSupported;
+	private static final boolean sMapping;
+
+	static {
+		boolean supported;
+		try {
+			Class.forName("java.awt.color.ColorSpace");
+			Class.forName("java.awt.image.ComponentColorModel");
+			Class.forName("java.awt.image.DataBufferByte");
+			final Class indexColorModel = Class.forName("java.awt.image.IndexColorModel");
+			BufferedImage.class.getConstructor(new Class[] { int.class, int.class, int.class, indexColorModel });
+			supported = true;
+		}
+		catch (Exception e) {
+			supported = false;
+		}
+		sSupported = supported;
+
+		boolean mapping;
+		try {
+			Class.forName("java.nio.MappedByteBuffer");
+			RandomAccessFile.class.getMethod("getChannel", new Class[0]);
+			mapping = true;
+		}
+		catch (Exception e) {
+			mapping = false;
+		}
+		sMapping = mapping;
+	}
+
+	private final File mDirectory;
+	private final int mVersion;
+	private int mMaxSize = DEFAULT_MAX_SIZE;
+
+	// statistics
+	private int mHitCount = 0;
+	private int mMissCount = 0;
+	private int mWriteCount = 0;
+	private int mDeleteCount = 0;
+
+	/**
+	 * True if the VM can build the gray images of the entries. Otherwise no
+	 * cache can be created, and the images are decoded on every start.
+	 */
+	public static boolean isSupported() {
+		return sSupported;
+	}
+
+	/**
+	 * @param directory where the entries are kept, created if needed
+	 * @param version of the images, e.g. of the application jar: the
+	 *        entries of another version are deleted
+	 * @throws UnsupportedOperationException if not {@link #isSupported()}
+	 */
+	public BitmapDiskCache(File directory, int version) {
+		if (!sSupported) {
+			throw new UnsupportedOperationException("no gray images on this VM");
+		}
+		mDirectory = directory;
+		mVersion = version;
+
+		if (!directory.isDirectory() && !directory.mkdirs()) {
+			Log.w(TAG, "cannot create " + directory);
+		}
+		deleteTempFiles();
+	}
+
+	/**
+	 * Limit of the size of the entries, in bytes.
+	 */
+	public synchronized void setMaxSize(int maxSize) {
+		mMaxSize = maxSize < 0 ? 0 : maxSize;
+		trim();
+	}
+
+	public synchronized int getMaxSize() {
+		return mMaxSize;
+	}
+
+	/**
+	 * Maps or reads the entry of the image, or returns null if there is
+	 * none.
+	 */
+	public Image get(String resourcePathName, int sampleSize) {
+		final String key = getKey(resourcePathName, sampleSize);
+		final File file = getFile(key);
+		if (!file.isFile()) {
+			count(false);
+			return null;
+		}
+
+		try {
+			final Image image = read(file, key);
+			if (image == null) {
+				delete(file);
+				count(false);
+				return null;
+			}
+			// the least recently used are deleted first
+			file.setLastModified(System.currentTimeMillis());
+			count(true);
+			return image;
+		}
+		catch (IOException e) {
+			Log.w(TAG, "cannot read " + file, e);
+			delete(file);
+			count(false);
+			return null;
+		}
+	}
+
+	/**
+	 * Converts a decoded image to the stored format, sampled down by
+	 * sampleSize, and stores it. Returns the converted image, which is what
+	 * the next get() returns.
+	 */
+	public Image put(String resourcePathName, int sampleSize, Image source) {
+		final BufferedImage image = GrayImages.convert(source, sampleSize);
+		final String key = getKey(resourcePathName, sampleSize);
+		final File file = getFile(key);
+		final File temp = new File(mDirectory, file.getName() + "." + Thread.currentThread().hashCode()
+				+ System.currentTimeMillis() + TEMP_SUFFIX);
+
+		try {
+			write(temp, key, image);
+			// atomic on the file systems of the device, the old entry is
+			// replaced as a whole
+			if (!temp.renameTo(file)) {
+				file.delete();
+				if (!temp.renameTo(file)) {
+					throw new IOException("cannot rename " + temp + " to " + file);
+				}
+			}
+			synchronized (this) {
+				mWriteCount++;
+				trim();
+			}
+		}
+		catch (IOException e) {
+			Log.w(TAG, "cannot write " + file, e);
+			temp.delete();
+		}
+		return image;
+	}
+
+	/**
+	 * Deletes every entry.
+	 */
+	public synchronized void clear() {
+		final File[] files = mDirectory.listFiles();
+		if (files == null) {
+			return;
+		}
+		for (int i = 0; i < files.length; i++) {
+			if (files[i].getName().endsWith(SUFFIX)) {
+				delete(files[i]);
+			}
+		}
+	}
+
+	public synchronized String toString() {
+		return "BitmapDiskCache[" + mDirectory + ",hits=" + mHitCount + ",misses=" + mMissCount
+				+ ",writes=" + mWriteCount + ",deletes=" + mDeleteCount + "]";
+	}
+
+	private synchronized void count(boolean hit) {
+		if (hit) {
+			mHitCount++;
+		}
+		else {
+			mMissCount++;
+		}
+	}
+
+	private static String getKey(String resourcePathName, int sampleSize) {
+		return resourcePathName + "@" + Math.max(sampleSize, 1);
+	}
+
+	/**
+	 * The file of a key: its readable characters and its hash, the key
+	 * itself is checked against the one stored in the file.
+	 */
+	private File getFile(String key) {
+		final StringBuffer sb = new StringBuffer(key.length() + 16);
+		for (int i = 0; i < key.length(); i++) {
+			final char c = key.charAt(i);
+			if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '.' || c == '-') {
+				sb.append(c);
+			}
+			else {
+				sb.append('_');
+			}
+		}
+		sb.append('_').append(Integer.toHexString(key.hashCode())).append(SUFFIX);
+		return new File(mDirectory, sb.toString());
+	}
+
+	private Image read(File file, String key) throws IOException {
+		final RandomAccessFile in = new RandomAccessFile(file, "r");
+		try {
+			// magic, versions, key, config, size and length of the pixels
+			final byte[] header = new byte[14 + 2 * key.length() + 16];
+			final long size = in.length();
+			if (size < header.length) {
+				return null;
+			}
+			in.readFully(header);
+
+			final DataInputStream buffer = new DataInputStream(new ByteArrayInputStream(header));
+			if (buffer.readInt() != MAGIC || buffer.readInt() != FORMAT_VERSION || buffer.readInt() != mVersion) {
+				return null;
+			}
+
+			final int keyLength = buffer.readShort() & 0xffff;
+			if (keyLength != key.length()) {
+				return null;
+			}
+			final char[] chars = new char[keyLength];
+			for (int i = 0; i < keyLength; i++) {
+				chars[i] = buffer.readChar();
+			}
+			if (!key.equals(new String(chars))) {
+				// another key with the same file name
+				return null;
+			}
+
+			final int config = buffer.readInt();
+			final int width = buffer.readInt();
+			final int height = buffer.readInt();
+			final int length = buffer.readInt();
+			if (width <= 0 || height <= 0) {
+				return null;
+			}
+
+			final BufferedImage image = GrayImages.createImage(config, width, height);
+			if (image == null) {
+				return null;
+			}
+			final byte[] data = GrayImages.getData(image);
+			if (length != data.length || size - header.length != length) {
+				return null;
+			}
+
+			if (sMapping) {
+				FileMapping.read(in, header.length, data);
+			}
+			else {
+				in.readFully(data);
+			}
+			return image;
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	private void write(File file, String key, BufferedImage image) throws IOException {
+		final byte[] data = GrayImages.getData(image);
+		final int config = GrayImages.getConfig(image);
+
+		final FileOutputStream fos = new FileOutputStream(file);
+		try {
+			final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+			out.writeInt(MAGIC);
+			out.writeInt(FORMAT_VERSION);
+			out.writeInt(mVersion);
+			out.writeShort(key.length());
+			out.writeChars(key);
+			out.writeInt(config);
+			out.writeInt(image.getWidth());
+			out.writeInt(image.getHeight());
+			out.writeInt(data.length);
+			out.write(data);
+			out.flush();
+			// on disk before the rename makes it visible
+			fos.getFD().sync();
+		}
+		finally {
+			fos.close();
+		}
+	}
+
+	/**
+	 * Deletes the least recently used entries until the others fit in the
+	 * size limit.
+	 */
+	private void trim() {
+		final File[] files = mDirectory.listFiles();
+		if (files == null) {
+			return;
+		}
+
+		long size = 0;
+		int count = 0;
+		for (int i = 0; i < files.length; i++) {
+			if (files[i].getName().endsWith(SUFFIX)) {
+				files[count++] = files[i];
+				size += files[i].length();
+			}
+		}
+		if (size <= mMaxSize) {
+			return;
+		}
+
+		final long[] times = new long[count];
+		for (int i = 0; i < count; i++) {
+			times[i] = files[i].lastModified();
+		}
+
+		while (size > mMaxSize && count > 0) {
+			int oldest = 0;
+			for (int i = 1; i < count; i++) {
+				if (times[i] < times[oldest]) {
+					oldest = i;
+				}
+			}
+			size -= files[oldest].length();
+			delete(files[oldest]);
+
+			count--;
+			files[oldest] = files[count];
+			times[oldest] = times[count];
+		}
+	}
+
+	/**
+	 * Deletes what writes interrupted by a crash left behind.
+	 */
+	private void deleteTempFiles() {
+		final File[] files = mDirectory.listFiles();
+		if (files == null) {
+			return;
+		}
+		for (int i = 0; i < files.length; i++) {
+			if (files[i].getName().endsWith(TEMP_SUFFIX)) {
+				files[i].delete();
+			}
+		}
+	}
+
+	private synchronized void delete(File file) {
+		if (file.delete()) {
+			mDeleteCount++;
+		}
+	}
+}
@@ -112,7 +112,8 @@ public class BitmapFactory {
 		 */
 		public byte[] inTempStorage;
 
-		// private native void requestCancel();
+		// the asynchronous decode this object was passed to, if any
+		BitmapDecoder.Request mRequest;
 
 		/**
 		 * Flag to indicate that cancel has been called on this object. This is
@@ -131,11 +132,49 @@ public class BitmapFactory {
 		 * if inJustDecodeBounds is true, will set outWidth/outHeight to -1
 		 */
 		public void requestCancelDecode() {
-			mCancel = true;
-			// requestCancel();
+			final BitmapDecoder.Request request;
+			synchronized (this) {
+				mCancel = true;
+				request = mRequest;
+			}
+			if (request != null) {
+				request.onCancel();
+			}
 		}
 	}
 
+	/**
+	 * Receives the result of {@link BitmapFactory#decodeResourceAsync}, on
+	 * the UI thread.
+	 */
+	public interface OnDecodedListener {
+
+		/**
+		 * @param bitmap the decoded bitmap, or null if the image could not be
+		 *        decoded
+		 */
+		void onBitmapDecoded(String resourcePathName, Bitmap bitmap);
+	}
+
+	// how often a decode checks whether it was canceled, in milliseconds
+	private static final int CANCEL_POLL_INTERVAL = 50;
+
+	private static volatile BitmapDiskCache sDiskCache = null;
+
+	/**
+	 * Makes {@link #decodeResource(String, Options)} keep the decoded images
+	 * on disk in the format of the panel, or stop doing so when null. While
+	 * it is set, decoded images are converted to that format and
+	 * {@link Options#inSampleSize} is honored.
+	 */
+	public static void setDiskCache(BitmapDiskCache cache) {
+		sDiskCache = cache;
+	}
+
+	public static BitmapDiskCache getDiskCache() {
+		return sDiskCache;
+	}
+
 	/**
 	 * Decode a file path into a bitmap. If the specified file name is null, or
 	 * cannot be decoded into a bitmap, the function returns null.
@@ -199,74 +238,140 @@ public class BitmapFactory {
 	}
 	
 	public static Image getImage(String resourcePathName) {
-		
-		if (resourcePathName == null)
-			return null;
+		return loadImage(resourcePathName, null);
+	}
 
-		Toolkit toolkit = Toolkit.getDefaultToolkit();
+	/**
+	 * Decodes an image of the application jar, blocking until it is loaded.
+	 * See {@link #decodeResourceAsync} to decode off the UI thread.
+	 */
+	public static Bitmap decodeResource(String resourcePathName) {
+		return decodeResource(resourcePathName, null);
+	}
 
-		Image image;
+	/**
+	 * Decodes an image of the application jar, blocking until it is loaded
+	 * or {@link Options#requestCancelDecode()} was called. With a
+	 * {@link #setDiskCache disk cache}, the image is mapped from it when it
+	 * was decoded before.
+	 * 
+	 * @param opts
+	 *            null-ok; outWidth and outHeight are set to the size of the
+	 *            image, or -1 if it could not be decoded or was canceled.
+	 * @return The decoded bitmap, or null if the image could not be decoded
+	 *         or the decode was canceled
+	 */
+	public static Bitmap decodeResource(String resourcePathName, Options opts) {
+
+		final BitmapDiskCache diskCache = sDiskCache;
+		final int sampleSize = opts != null ? opts.inSampleSize : 1;
+
+		Image image = null;
+		if (diskCache != null && resourcePathName != null && (opts == null || !opts.mCancel)) {
+			image = diskCache.get(resourcePathName, sampleSize);
+			if (image != null && opts != null) {
+				opts.outWidth = image.getWidth(null);
+				opts.outHeight = image.getHeight(null);
+				opts.outMimeType = null;
+			}
+		}
 
+		if (image == null) {
+			image = loadImage(resourcePathName, opts);
+			if (image == null) {
+				return null;
+			}
+			if (diskCache != null) {
+				image = diskCache.put(resourcePathName, sampleSize, image);
+				if (opts != null) {
+					opts.outWidth = image.getWidth(null);
+					opts.outHeight = image.getHeight(null);
+				}
+			}
+		}
 
-		URL fileLoc = FlowDisplay.instance().getClass().getResource(resourcePathName);
-		
-		Log.i("resourcePathName" ,""+ fileLoc);
-		
-		image = toolkit.createImage(fileLoc);
-		
-		if(image == null) {
-			return null;
+		if (Log.isLoggable(TAG, Log.LEVEL_DEBUG)) {
+			Log.d(TAG, "decoded " + resourcePathName + " " + image.getWidth(null) + "x" + image.getHeight(null));
 		}
-		
-        MediaTracker tracker = new MediaTracker(FlowDisplay.instance());
-        tracker.addImage(image, 0);
-        try {
-            tracker.waitForID(0);
-            if (tracker.isErrorAny()) {
-                System.out.println("Error loading image " + resourcePathName);
-            }
-        } catch (Exception ex) { ex.printStackTrace(); }
-	
-		return image;	
+
+		return new Bitmap(image, false, null);
 	}
-	
-	
-	public static Bitmap decodeResource(String resourcePathName) {
 
-		if (resourcePathName == null)
+	/**
+	 * Decodes an image of the application jar on a decoder thread. The
+	 * listener is called on the UI thread, unless the decode was canceled
+	 * with {@link Options#requestCancelDecode()}. Decodes of the same image
+	 * requested before the first one completed share it.
+	 * 
+	 * @param opts
+	 *            null-ok; the options of a single request, to cancel it
+	 */
+	public static void decodeResourceAsync(String resourcePathName, Options opts, OnDecodedListener listener) {
+		BitmapDecoder.getInstance().decode(resourcePathName, opts, listener);
+	}
+
+	/**
+	 * Loads an image, polling opts for a cancel while waiting for it.
+	 */
+	private static Image loadImage(String resourcePathName, Options opts) {
+
+		if (opts != null) {
+			opts.outWidth = -1;
+			opts.outHeight = -1;
+			opts.outMimeType = null;
+		}
+
+		if (resourcePathName == null || (opts != null && opts.mCancel)) {
 			return null;
+		}
 
-		Toolkit toolkit = Toolkit.getDefaultToolkit();
+		final URL fileLoc = FlowDisplay.instance().getClass().getResource(resourcePathName);
 
-		Image image;
+		if (Log.isLoggable(TAG, Log.LEVEL_DEBUG)) {
+			Log.d(TAG, resourcePathName + " " + fileLoc);
+		}
 
+		if (fileLoc == null) {
+			Log.w(TAG, "no such image " + resourcePathName);
+			return null;
+		}
 
-		URL fileLoc = FlowDisplay.instance().getClass().getResource(resourcePathName);
-		
-		Log.i("resourcePathName" ,""+ fileLoc);
-		
-		image = toolkit.createImage(fileLoc);
-		
-		if(image == null) {
+		final Image image = Toolkit.getDefaultToolkit().createImage(fileLoc);
+		if (image == null) {
 			return null;
 		}
-		
-        MediaTracker tracker = new MediaTracker(FlowDisplay.instance());
-        tracker.addImage(image, 0);
-        try {
-            tracker.waitForID(0);
-            if (tracker.isErrorAny()) {
-                System.out.println("Error loading image " + resourcePathName);
-            }
-        } catch (Exception ex) { ex.printStackTrace(); }
-		
-		
-		Log.i("image", "bmp" + image.getWidth(null) + " " + image.getHeight(null));
-		
-		Bitmap bm = new Bitmap(image, false, null);
 
-		return bm;
+		final MediaTracker tracker = new MediaTracker(FlowDisplay.instance());
+		tracker.addImage(image, 0);
+		try {
+			if (opts == null) {
+				tracker.waitForID(0);
+			}
+			else {
+				while (!tracker.waitForID(0, CANCEL_POLL_INTERVAL)) {
+					if (opts.mCancel) {
+						tracker.removeImage(image);
+						image.flush();
+						return null;
+					}
+				}
+			}
+		}
+		catch (InterruptedException e) {
+			tracker.removeImage(image);
+			return null;
+		}
 
+		if (tracker.isErrorAny()) {
+			Log.w(TAG, "Error loading image " + resourcePathName);
+			return null;
+		}
+
+		if (opts != null) {
+			opts.outWidth = image.getWidth(null);
+			opts.outHeight = image.getHeight(null);
+		}
+		return image;
 	}
 
 	/**
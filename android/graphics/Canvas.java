@@ -47,10 +47,25 @@ public class Canvas {
 	private Graphics mNativeGraphics = null;
 	
 
-	private Rect[] mClipStack = new Rect[64]; 
+	private final static int MAX_SAVE_COUNT = 64;
+
+	/* clip of every save level, in device coordinates */
+	private Rect[] mClipStack = new Rect[MAX_SAVE_COUNT]; 
+
+	/* translation of every save level, in device coordinates */
+	private int[] mTranslateX = new int[MAX_SAVE_COUNT];
+	private int[] mTranslateY = new int[MAX_SAVE_COUNT];
+
+	/* false when the native graphics came without a clip */
+	private boolean mHasNativeClip;
 
 	private Point mOrigCoords = new Point();
 	
+	/* last color and font set on the native graphics, to skip redundant changes */
+	private int mNativeColor;
+	private boolean mNativeColorSet = false;
+	private Font mNativeFont = null;
+	
 	private int mCurrentStackPos = 0;
 	
     //private Bitmap  mBitmap;    // if not null, mGL must be null
@@ -72,17 +87,34 @@ public class Canvas {
 
     	mNativeGraphics = nativeGraphics;
     	
-    	mCurrentStackPos = 0;
+    	// state of the new graphics unknown
+    	mNativeColorSet = false;
+    	mNativeFont = null;
 
-    	mClipStack[0].left = mNativeGraphics.getClipBounds().x;
-    	mClipStack[0].bottom = mNativeGraphics.getClipBounds().y;
+    	java.awt.Rectangle clip = mNativeGraphics.getClipBounds();
     	
+    	mHasNativeClip = clip != null;
     	
-    	mClipStack[0].right = mClipStack[0].left + mNativeGraphics.getClipBounds().width;
-    	mClipStack[0].top = mClipStack[0].bottom + mNativeGraphics.getClipBounds().height;
+    	if(mHasNativeClip) {
+    		resetState(clip.x, clip.y, clip.x + clip.width, clip.y + clip.height);
+    	}
+    	else {
+    		resetState(0, 0, Integer.MAX_VALUE >> 1, Integer.MAX_VALUE >> 1);
+    	}
 
     	//Log.i(TAG, "setNativeGraphics mClipStack " +mClipStack);
     }
+    
+    /**
+     * Drops every save level, the clip of the bottom level being set to the
+     * given bounds.
+     */
+    void resetState(int left, int top, int right, int bottom) {
+    	mCurrentStackPos = 0;
+    	mTranslateX[0] = 0;
+    	mTranslateY[0] = 0;
+    	mClipStack[0].set(left, top, right, bottom);
+    }
 
 /*    *//**
      * Construct a canvas with the specified bitmap to draw into. The bitmap
@@ -227,13 +259,11 @@ public class Canvas {
     		mClipStack[mCurrentStackPos+1] = new Rect(mClipStack[mCurrentStackPos]);
     	}
     	else {
-    		mClipStack[mCurrentStackPos+1].left = mClipStack[mCurrentStackPos].left;
-    		mClipStack[mCurrentStackPos+1].right  = mClipStack[mCurrentStackPos].right;
-    		mClipStack[mCurrentStackPos+1].top = mClipStack[mCurrentStackPos].top;
-    		mClipStack[mCurrentStackPos+1].bottom = mClipStack[mCurrentStackPos].bottom;
+    		mClipStack[mCurrentStackPos+1].set(mClipStack[mCurrentStackPos]);
     	}
     	
-    
+    	mTranslateX[mCurrentStackPos+1] = mTranslateX[mCurrentStackPos];
+    	mTranslateY[mCurrentStackPos+1] = mTranslateY[mCurrentStackPos];
     	
     	mCurrentStackPos++;
     	
@@ -349,17 +379,21 @@ public class Canvas {
     	if(saveCount>=0 && saveCount<=mCurrentStackPos) {
     		
     		
-    		int dx =  mClipStack[saveCount].left - mClipStack[mCurrentStackPos].left;
-    		int dy = mClipStack[saveCount].bottom - mClipStack[mCurrentStackPos].bottom ;
+    		int dx = mTranslateX[saveCount] - mTranslateX[mCurrentStackPos];
+    		int dy = mTranslateY[saveCount] - mTranslateY[mCurrentStackPos];
     		
+    		boolean clipChanged = !mClipStack[saveCount].equals(mClipStack[mCurrentStackPos]);
     		
     		mCurrentStackPos = saveCount;
     		
+    		if((dx | dy) != 0) {
+    			nativeTranslate(dx, dy);
+    		}
     		
-    		
-    		
-    		nativeTranslate(dx, dy);
-    		updateClippingPlane();
+    		// the native clip is set in device space, translation alone doesn't change it
+    		if(clipChanged) {
+    			updateClippingPlane();
+    		}
     	}
     	
     }
@@ -380,13 +414,16 @@ public class Canvas {
     */
     public void translate(int dx, int dy) {
     	//Log.i(TAG, "translate " + dx + " " + dy);
-    	getCurrentBound().offset(dx, dy);
+    	mTranslateX[mCurrentStackPos] += dx;
+    	mTranslateY[mCurrentStackPos] += dy;
     	nativeTranslate(dx, dy);
     }
     
     private void nativeTranslate(int dx, int dy) {
     	//Log.i(TAG, "nativeTranslate " + dx + " " + dy);
-    	mNativeGraphics.translate(dx,dy);
+    	if(mNativeGraphics != null) {
+    		mNativeGraphics.translate(dx,dy);
+    	}
     }
 
     /**
@@ -566,15 +603,17 @@ public class Canvas {
     	//Log.i(TAG, "clipRect current "+getCurrentBound());
     	//Log.i(TAG, "to "+left+" "+top+" "+right+" "+bottom);
     	
-    	int x = getOriginCoords().x;
-    	int y = getOriginCoords().y;
+    	final int x = mTranslateX[mCurrentStackPos];
+    	final int y = mTranslateY[mCurrentStackPos];
     	
-    	getCurrentBound().intersect(left, top, right, bottom);
+    	if(!getCurrentBound().intersect(left + x, top + y, right + x, bottom + y)) {
+    		getCurrentBound().setEmpty();
+    	}
     	
     	//Log.i(TAG, "result "+getCurrentBound());
     	
     	updateClippingPlane();
-		return getCurrentBound().isEmpty();
+		return !getCurrentBound().isEmpty();
 
     }
     
@@ -725,6 +764,31 @@ public class Canvas {
         return native_quickReject(mNativeCanvas, left, top, right, bottom, type.nativeInt);
     }
 
+    /**
+     * Return true if the specified rectangle, after being transformed by the
+     * current matrix, would lie completely outside of the current clip. Call
+     * this to check if an area you intend to draw into is clipped out (and
+     * therefore you can skip making the draw calls). This is a couple of
+     * integer compares and never allocates.
+     *
+     * @param left   The left side of the rectangle to compare with the
+     *               current clip
+     * @param top    The top of the rectangle to compare with the current
+     *               clip
+     * @param right  The right side of the rectangle to compare with the
+     *               current clip
+     * @param bottom The bottom of the rectangle to compare with the
+     *               current clip
+     * @return       true if the rect (transformed by the canvas' matrix)
+     *               does not intersect with the canvas' clip
+     */
+    public boolean quickReject(int left, int top, int right, int bottom) {
+    	final int x = mTranslateX[mCurrentStackPos];
+    	final int y = mTranslateY[mCurrentStackPos];
+    	
+    	return !getCurrentBound().intersects(left + x, top + y, right + x, bottom + y);
+    }
+
     /**
      * Retrieve the clip bounds, returning true if they are non-empty.
      *
@@ -733,14 +797,16 @@ public class Canvas {
      * @return true if the current clip is non-empty.
      */
     
-    // XXX
     public boolean getClipBounds(Rect bounds) {
 
-	   if(bounds!=null) {
-	    	bounds.set(getClipBounds());
-	   }
+    	final Rect clip = getCurrentBound();
+    	
+    	if(bounds!=null) {
+    		bounds.set(clip);
+    		bounds.offset(-mTranslateX[mCurrentStackPos], -mTranslateY[mCurrentStackPos]);
+    	}
     
-	   return getClipBounds().isEmpty();
+    	return !clip.isEmpty();
     }
     
     
@@ -788,13 +854,7 @@ public class Canvas {
      * @param color the color to draw onto the canvas
      */
     public void drawColor(int color) {
-    	
-  
-    	mNativeGraphics.setColor(new java.awt.Color(color));
-    	
-        mNativeGraphics.fillRect(0, 0, 
-				        		getCurrentBound().width(),
-				        		getCurrentBound().height());
+    	nativeDrawColor(color);
     }
 
     /**
@@ -861,12 +921,7 @@ public class Canvas {
      * @param paint  The paint used to draw the line
      */
     public void drawLine(int startX, int startY, int stopX, int stopY, Paint paint) {
-    
-      	
-    	mNativeGraphics.setColor(new java.awt.Color(paint.getColor()));
-    	
-    	
-    	mNativeGraphics.drawLine(startX, startY, stopX, stopY);
+    	nativeDrawLine(startX, startY, stopX, stopY, paint.getColor());
     }
 
     /**
@@ -925,16 +980,7 @@ public class Canvas {
      * @param paint  The paint used to draw the rect
      */
     public void drawRect(int left, int top, int right, int bottom, Paint paint) {
-
-    	mNativeGraphics.setColor(new java.awt.Color(paint.getColor()));
-    	
-   		if(paint.getStyle() == Paint.STROKE) {
-   			mNativeGraphics.drawRect(left, top, right-left, bottom-top);
-   		}
-   		else {
-   			/*Paint.FILL or Paint.FILL_AND_STROKE*/
-   			mNativeGraphics.drawRect(left, top, right-left, bottom-top);
-   		}
+    	nativeDrawRect(left, top, right, bottom, paint.getColor(), paint.getStyle());
     }
     
     
@@ -951,23 +997,7 @@ public class Canvas {
     public void drawRoundRect(int left, int top, int right, int bottom, int arcWidth, int arcHeight, Paint paint) {
 
 
-    	Log.i(TAG, "drawRoundRect "  + paint.getColor());
-    	
-    	mNativeGraphics.setColor(new java.awt.Color(paint.getColor()));
-    	
-   		if(paint.getStyle() == Paint.FILL) {
-   			mNativeGraphics.fillRoundRect(left, top, right-left, bottom-top,arcWidth ,arcHeight);
-   		}
-   		else if(paint.getStyle() == Paint.STROKE) {
-   			mNativeGraphics.drawRoundRect(left, top, right-left, bottom-top,arcWidth ,arcHeight);
-
-   		}
-   		else
-   		{
-   			mNativeGraphics.fillRoundRect(left, top, right-left, bottom-top,arcWidth ,arcHeight);
-   		//	mNativeGraphics.fillRoundRect(left+2, top+2, right-left-4, bottom-top-4, arcWidth, arcHeight);
-   			
-   		}
+    	nativeDrawRoundRect(left, top, right, bottom, arcWidth, arcHeight, paint.getColor(), paint.getStyle());
     }
 
     /**
@@ -1074,7 +1104,7 @@ public class Canvas {
         //native_drawBitmap(mNativeCanvas, bitmap.ni(), left, top, paint != null ? paint.mNativePaint : 0);
     
 
-    	mNativeGraphics.drawImage(bitmap.getNativeBitmap(), left, top, null);
+    	nativeDrawImage(bitmap.getNativeBitmap(), left, top);
     }
 
     /**
@@ -1131,7 +1161,7 @@ public class Canvas {
         	return;
         }
     	
-        mNativeGraphics.drawImage(bitmap.getNativeBitmap(), dst.left, dst.top, null);
+        nativeDrawImage(nativeBitmap, dst.left, dst.top);
     
     }
     
@@ -1365,14 +1395,11 @@ public class Canvas {
 
         Font nativeFont = paint.getCurrentNativeTypeface();
         if(nativeFont != null) {
-        	java.awt.Color nativeColor = new java.awt.Color(paint.getColor());
-        	mNativeGraphics.setColor(nativeColor);
-        	mNativeGraphics.setFont(nativeFont);
         	
         	//Log.i(TAG, "paint.getColor() " + paint.getColor());
         	//Log.i(TAG, "drawString " + text.substring(start, end-start) + " " + x + " " + y);
         	
-        	mNativeGraphics.drawString(text.substring(start, end-start), x, y);
+        	nativeDrawText(text.substring(start, end), x, y, paint.getColor(), nativeFont);
         }
         
 
@@ -1496,12 +1523,14 @@ public class Canvas {
      * save/restore.
      * 
      * @param picture  The picture to be drawn
-     
+     */
     public void drawPicture(Picture picture) {
         picture.endRecording();
-        native_drawPicture(mNativeCanvas, picture.ni());
+        
+        final int sc = save();
+        picture.draw(this);
+        restoreToCount(sc);
     }
-    */
     
     /**
      * Draw the picture, stretched to fit into the dst rectangle.
@@ -1519,41 +1548,129 @@ public class Canvas {
     */
     
     /**
-     * Draw the picture, stretched to fit into the dst rectangle.
-    
+     * Draw the picture, with its origin at the top left corner of the dst 
+     * rectangle and clipped to it. The canvas has no scale, the picture is 
+     * not stretched.
+     */
     public void drawPicture(Picture picture, Rect dst) {
-        save();
+        final int sc = save();
         translate(dst.left, dst.top);
-        if (picture.getWidth() > 0 && picture.getHeight() > 0) {
-            scale((float)dst.width() / picture.getWidth(),
-                  (float)dst.height() / picture.getHeight());
-        }
+        clipRect(0, 0, dst.width(), dst.height());
         drawPicture(picture);
-        restore();
+        restoreToCount(sc);
     }
-     */
 
     public Rect getCurrentBound() {
     	return mClipStack[mCurrentStackPos];
     }
     
     public Point getOriginCoords() {
-    	mOrigCoords.set(getCurrentBound().left, getCurrentBound().bottom);
+    	mOrigCoords.set(mTranslateX[mCurrentStackPos], mTranslateY[mCurrentStackPos]);
     	return mOrigCoords;
     }
     
-    private void updateClippingPlane() {
+    // ---------------------------------------------------------------------------
+    // primitive drawing operations, the paint already resolved. A recording 
+    // canvas overrides them to build a Picture.
+    
+    /**
+     * Fills the current clip with the color.
+     */
+    void nativeDrawColor(int color) {
+    	
+    	setNativeColor(color);
+    	
+    	final Rect clip = getCurrentBound();
+    	
+        mNativeGraphics.fillRect(clip.left - mTranslateX[mCurrentStackPos], 
+        						clip.top - mTranslateY[mCurrentStackPos], 
+				        		clip.width(),
+				        		clip.height());
+    }
+    
+    void nativeDrawLine(int startX, int startY, int stopX, int stopY, int color) {
+    	setNativeColor(color);
+    	mNativeGraphics.drawLine(startX, startY, stopX, stopY);
+    }
+    
+    void nativeDrawRect(int left, int top, int right, int bottom, int color, int style) {
 
+    	setNativeColor(color);
     	
-    	//Log.d(TAG, "updateClippingPlane");
-    	//Log.t(TAG, "currentbound "+clip);
-    	//Log.t(TAG, "offset "+mCoordsStack[mCurrentStackPos]);
+   		if(style == Paint.STROKE) {
+   			mNativeGraphics.drawRect(left, top, right-left, bottom-top);
+   		}
+   		else {
+   			/*Paint.FILL or Paint.FILL_AND_STROKE*/
+   			mNativeGraphics.drawRect(left, top, right-left, bottom-top);
+   		}
+    }
+    
+    void nativeDrawRoundRect(int left, int top, int right, int bottom, int arcWidth, int arcHeight, int color, int style) {
+    	
+    	setNativeColor(color);
     	
-    	//int x = mCoordsStack[mCurrentStackPos].x;
-    	//int y = mCoordsStack[mCurrentStackPos].y;
+   		if(style == Paint.FILL) {
+   			mNativeGraphics.fillRoundRect(left, top, right-left, bottom-top,arcWidth ,arcHeight);
+   		}
+   		else if(style == Paint.STROKE) {
+   			mNativeGraphics.drawRoundRect(left, top, right-left, bottom-top,arcWidth ,arcHeight);
 
-    	//Rect clip = getCurrentBound();
-    	//mNativeGraphics.setClip(clip.left, clip.top, clip.width(), clip.height());
+   		}
+   		else
+   		{
+   			mNativeGraphics.fillRoundRect(left, top, right-left, bottom-top,arcWidth ,arcHeight);
+   		//	mNativeGraphics.fillRoundRect(left+2, top+2, right-left-4, bottom-top-4, arcWidth, arcHeight);
+   			
+   		}
+    }
+    
+    void nativeDrawImage(Image image, int left, int top) {
+    	mNativeGraphics.drawImage(image, left, top, null);
+    }
+    
+    void nativeDrawText(String text, int x, int y, int color, Font font) {
+    	setNativeColor(color);
+    	
+    	if(font != mNativeFont) {
+    		mNativeGraphics.setFont(font);
+    		mNativeFont = font;
+    	}
+    	
+    	mNativeGraphics.drawString(text, x, y);
+    }
+    
+    private void setNativeColor(int color) {
+    	if(!mNativeColorSet || color != mNativeColor) {
+    		mNativeGraphics.setColor(NativeColorCache.get(color));
+    		mNativeColor = color;
+    		mNativeColorSet = true;
+    	}
+    }
+    
+    /**
+     * Pushes the clip of the current save level to the native graphics. 
+     * The native clip is expressed in the translated coordinate space.
+     */
+    private void updateClippingPlane() {
+
+    	//Log.d(TAG, "updateClippingPlane");
+    	
+    	if(mNativeGraphics == null) {
+    		return;
+    	}
+    	
+    	if(mCurrentStackPos == 0 && !mHasNativeClip) {
+    		mNativeGraphics.setClip(null);
+    		return;
+    	}
+    	
+    	final Rect clip = getCurrentBound();
+    	
+    	mNativeGraphics.setClip(clip.left - mTranslateX[mCurrentStackPos], 
+    							clip.top - mTranslateY[mCurrentStackPos], 
+    							clip.width(), 
+    							clip.height());
     }
     
 
@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2007 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.graphics;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads files through a memory mapping. Kept apart because java.nio is
+ * missing from the Personal Basis Profile: this class is only loaded once
+ * {@link BitmapDiskCache} found it.
+ */
+final class FileMapping {
+
+	private FileMapping() {
+	}
+
+	/**
+	 * Fills data from the file at position.
+	 */
+	static void read(RandomAccessFile file, long position, byte[] data) throws IOException {
+		final FileChannel channel = file.getChannel();
+		final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, data.length);
+		buffer.get(data);
+	}
+}
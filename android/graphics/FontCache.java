@@ -0,0 +1,264 @@
+/*
+ * Copyright (C) 2006 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.graphics;
+
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.util.Hashtable;
+
+import com.flowme.FlowDisplay;
+
+/**
+ * Process wide cache of the native fonts and their metrics, keyed by (face,
+ * style, size). Creating a Font and querying its metrics is expensive on the
+ * device, and every Paint (so every TextView) needs one; the paints sharing
+ * the same text attributes share the same entry.
+ *
+ * Entries are looked up from the UI thread, but text may be measured with
+ * them from any thread (see LineBreaker).
+ */
+final class FontCache {
+
+	// Entry by key, see keyOf()
+	private static final Hashtable sEntries = new Hashtable();
+
+	private static int sHits = 0;
+	private static int sMisses = 0;
+
+	/**
+	 * A native font with its metrics, converted once to the Android sign
+	 * convention (distances above the baseline are negative), and the advance
+	 * widths of its glyphs filled as they are measured: a dense table for
+	 * Latin-1, an open addressed one for the other characters. Entries are
+	 * shared and their metrics must not be modified.
+	 */
+	static final class Entry {
+
+		private final static int LATIN1_SIZE = 256;
+		private final static short UNKNOWN = -1;
+
+		private final static int SPARSE_INITIAL_CAPACITY = 64; // power of two
+
+		final Font font;
+		final FontMetrics metrics;
+
+		final int size;
+		final int ascent;
+		final int descent;
+		final int leading;
+		final int top;
+		final int bottom;
+
+		/**
+		 * Recommended distance between two baselines.
+		 */
+		final int spacing;
+
+		// advances of the Latin-1 characters, UNKNOWN until measured
+		private final short[] mLatin1;
+
+		// advances of the other characters, a 0 key marks a free slot (0 is
+		// in the Latin-1 range)
+		private char[] mSparseKeys = new char[SPARSE_INITIAL_CAPACITY];
+		private short[] mSparseAdvances = new short[SPARSE_INITIAL_CAPACITY];
+		private int mSparseSize = 0;
+
+		Entry(Font font, FontMetrics metrics) {
+			this.font = font;
+			this.metrics = metrics;
+
+			size = font.getSize();
+			ascent = -metrics.getAscent();
+			descent = metrics.getDescent();
+			leading = metrics.getLeading();
+			top = -Math.max(metrics.getMaxAscent(), metrics.getAscent());
+			bottom = Math.max(metrics.getMaxDescent(), metrics.getDescent());
+			spacing = metrics.getHeight();
+
+			mLatin1 = new short[LATIN1_SIZE];
+			for (int i = 0; i < LATIN1_SIZE; i++) {
+				mLatin1[i] = UNKNOWN;
+			}
+		}
+
+		/**
+		 * Advance width of the character.
+		 */
+		int advance(char c) {
+			if (c < LATIN1_SIZE) {
+				int advance = mLatin1[c];
+				if (advance == UNKNOWN) {
+					// racing threads store the same value
+					advance = metrics.charWidth(c);
+					mLatin1[c] = (short) advance;
+				}
+				return advance;
+			}
+			return sparseAdvance(c);
+		}
+
+		/**
+		 * Sum of the advances of text[start, end).
+		 */
+		int measure(char[] text, int start, int end) {
+			final short[] latin1 = mLatin1;
+			int width = 0;
+			for (int i = start; i < end; i++) {
+				final char c = text[i];
+				final int advance;
+				if (c < LATIN1_SIZE && (advance = latin1[c]) != UNKNOWN) {
+					width += advance;
+				}
+				else {
+					width += advance(c);
+				}
+			}
+			return width;
+		}
+
+		/**
+		 * Sum of the advances of text[start, end).
+		 */
+		int measure(String text, int start, int end) {
+			final short[] latin1 = mLatin1;
+			int width = 0;
+			for (int i = start; i < end; i++) {
+				final char c = text.charAt(i);
+				final int advance;
+				if (c < LATIN1_SIZE && (advance = latin1[c]) != UNKNOWN) {
+					width += advance;
+				}
+				else {
+					width += advance(c);
+				}
+			}
+			return width;
+		}
+
+		private synchronized int sparseAdvance(char c) {
+
+			char[] keys = mSparseKeys;
+			int mask = keys.length - 1;
+			int i = hash(c) & mask;
+
+			char k;
+			while ((k = keys[i]) != 0) {
+				if (k == c) {
+					return mSparseAdvances[i];
+				}
+				i = (i + 1) & mask;
+			}
+
+			if ((mSparseSize + 1) * 4 > keys.length * 3) {
+				growSparse();
+				keys = mSparseKeys;
+				mask = keys.length - 1;
+				i = hash(c) & mask;
+				while (keys[i] != 0) {
+					i = (i + 1) & mask;
+				}
+			}
+
+			final int advance = metrics.charWidth(c);
+			keys[i] = c;
+			mSparseAdvances[i] = (short) advance;
+			mSparseSize++;
+
+			return advance;
+		}
+
+		private static int hash(char c) {
+			return (c * 0x9E3779B9) >>> 16;
+		}
+
+		private void growSparse() {
+			final char[] oldKeys = mSparseKeys;
+			final short[] oldAdvances = mSparseAdvances;
+
+			final char[] keys = new char[oldKeys.length * 2];
+			final short[] advances = new short[keys.length];
+			final int mask = keys.length - 1;
+
+			for (int j = 0; j < oldKeys.length; j++) {
+				final char c = oldKeys[j];
+				if (c != 0) {
+					int i = hash(c) & mask;
+					while (keys[i] != 0) {
+						i = (i + 1) & mask;
+					}
+					keys[i] = c;
+					advances[i] = oldAdvances[j];
+				}
+			}
+
+			mSparseKeys = keys;
+			mSparseAdvances = advances;
+		}
+	}
+
+	private FontCache() {
+	}
+
+	/**
+	 * Returns the entry for the font, creating it on the first request.
+	 *
+	 * @param face native font face name
+	 * @param style native style, combination of Font.BOLD and Font.ITALIC
+	 * @param size point size
+	 */
+	static Entry get(String face, int style, int size) {
+
+		final String key = keyOf(face, style, size);
+
+		Entry entry = (Entry) sEntries.get(key);
+		if (entry != null) {
+			sHits++;
+			return entry;
+		}
+
+		sMisses++;
+
+		final Font font = new Font(face, style, size);
+		entry = new Entry(font, FlowDisplay.instance().getFontMetrics(font));
+		sEntries.put(key, entry);
+
+		return entry;
+	}
+
+	private static String keyOf(String face, int style, int size) {
+		return face + '-' + style + '-' + size;
+	}
+
+	static int getHitCount() {
+		return sHits;
+	}
+
+	static int getMissCount() {
+		return sMisses;
+	}
+
+	static int size() {
+		return sEntries.size();
+	}
+
+	/**
+	 * Forgets every entry, the paints holding one keep it.
+	 */
+	static void clear() {
+		sEntries.clear();
+	}
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright (C) 2007 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.graphics;
+
+import java.awt.Graphics2D;
+import java.awt.Image;
+import java.awt.Transparency;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+
+/**
+ * The gray images of {@link BitmapDiskCache}. Kept apart because the color
+ * models and the BufferedImage constructors it needs are missing from the
+ * Personal Basis Profile: this class is only loaded once
+ * {@link BitmapDiskCache#isSupported()} found them.
+ */
+final class GrayImages {
+
+	private static final IndexColorModel GRAY_4_MODEL;
+
+	static {
+		final byte[] levels = new byte[16];
+		for (int i = 0; i < 16; i++) {
+			levels[i] = (byte) (i * 17);
+		}
+		GRAY_4_MODEL = new IndexColorModel(4, 16, levels, levels, levels);
+	}
+
+	private GrayImages() {
+	}
+
+	/**
+	 * An image of the config, null if the config is unknown.
+	 */
+	static BufferedImage createImage(int config, int width, int height) {
+		switch (config) {
+		case BitmapDiskCache.CONFIG_GRAY_4:
+			return new BufferedImage(width, height, BufferedImage.TYPE_BYTE_BINARY, GRAY_4_MODEL);
+
+		case BitmapDiskCache.CONFIG_GRAY_ALPHA_8:
+			final ComponentColorModel model = new ComponentColorModel(ColorSpace.getInstance(ColorSpace.CS_GRAY),
+					true, false, Transparency.TRANSLUCENT, DataBuffer.TYPE_BYTE);
+			return new BufferedImage(model, model.createCompatibleWritableRaster(width, height), false, null);
+		}
+		return null;
+	}
+
+	static int getConfig(BufferedImage image) {
+		return image.getType() == BufferedImage.TYPE_BYTE_BINARY ? BitmapDiskCache.CONFIG_GRAY_4
+				: BitmapDiskCache.CONFIG_GRAY_ALPHA_8;
+	}
+
+	/**
+	 * The pixels of an image made by {@link #createImage}.
+	 */
+	static byte[] getData(BufferedImage image) {
+		return ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+	}
+
+	/**
+	 * Draws the image at its sampled size into the stored format, gray and
+	 * alpha if it has transparent pixels, 16 levels of gray otherwise.
+	 */
+	static BufferedImage convert(Image source, int sampleSize) {
+		sampleSize = Math.max(sampleSize, 1);
+		final int width = Math.max((source.getWidth(null) + sampleSize - 1) / sampleSize, 1);
+		final int height = Math.max((source.getHeight(null) + sampleSize - 1) / sampleSize, 1);
+
+		final BufferedImage argb = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+		Graphics2D g = argb.createGraphics();
+		g.drawImage(source, 0, 0, width, height, null);
+		g.dispose();
+
+		boolean translucent = false;
+		final int[] row = new int[width];
+		for (int y = 0; y < height && !translucent; y++) {
+			argb.getRGB(0, y, width, 1, row, 0, width);
+			for (int x = 0; x < width; x++) {
+				if ((row[x] >>> 24) != 0xff) {
+					translucent = true;
+					break;
+				}
+			}
+		}
+
+		final BufferedImage image = createImage(translucent ? BitmapDiskCache.CONFIG_GRAY_ALPHA_8
+				: BitmapDiskCache.CONFIG_GRAY_4, width, height);
+		g = image.createGraphics();
+		g.drawImage(argb, 0, 0, null);
+		g.dispose();
+		return image;
+	}
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2006 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.graphics;
+
+/**
+ * Interns the java.awt.Color instances used by the canvas, keyed by the ARGB
+ * value, so drawing doesn't allocate one per primitive. An open addressed
+ * table with linear probing; the panel only shows 16 grays so a few
+ * gradients and themes fit easily, and the table is simply emptied if it
+ * ever fills up.
+ *
+ * Only used from the thread drawing, it is not synchronized.
+ */
+final class NativeColorCache {
+
+	private final static int CAPACITY = 256; // power of two
+	private final static int MAX_SIZE = CAPACITY * 3 / 4;
+
+	private static final int[] sKeys = new int[CAPACITY];
+	private static final java.awt.Color[] sColors = new java.awt.Color[CAPACITY];
+	private static int sSize = 0;
+
+	private NativeColorCache() {
+	}
+
+	static java.awt.Color get(int color) {
+
+		final int mask = CAPACITY - 1;
+		int i = (color * 0x9E3779B9) >>> 24 & mask;
+
+		java.awt.Color c;
+		while ((c = sColors[i]) != null) {
+			if (sKeys[i] == color) {
+				return c;
+			}
+			i = (i + 1) & mask;
+		}
+
+		if (sSize >= MAX_SIZE) {
+			clear();
+			i = (color * 0x9E3779B9) >>> 24 & mask;
+		}
+
+		c = new java.awt.Color(color);
+		sKeys[i] = color;
+		sColors[i] = c;
+		sSize++;
+
+		return c;
+	}
+
+	static void clear() {
+		for (int i = 0; i < CAPACITY; i++) {
+			sColors[i] = null;
+		}
+		sSize = 0;
+	}
+}
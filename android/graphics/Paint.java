@@ -19,9 +19,7 @@ package android.graphics;
 import java.awt.Font;
 
 
-import com.flowme.FlowDisplay;
 import com.flowme.util.Color;
-import android.util.Log;
 
 
 /**
@@ -71,6 +69,9 @@ public class Paint {
     // we use this when we first create a paint
     private static final int DEFAULT_PAINT_FLAGS = DEV_KERN_TEXT_FLAG;
 
+    // text size of a new paint
+    private static final int DEFAULT_TEXT_SIZE = 20;
+
     private int 		  mColor;
     private int			  mAlpha = 255;	
 
@@ -79,6 +80,8 @@ public class Paint {
    
     private int 		  mStyle;
     
+    // shared with the other paints using the same text attributes
+    private FontCache.Entry mFontEntry = null;
     private Font mNativeFont = null;
     private java.awt.FontMetrics mNativeFontMentrics = null;
     private int mFlags = 0;
@@ -122,7 +125,7 @@ public class Paint {
      *              new paint.
      */
     public Paint(Paint paint) {
-    	// TODO
+        set(paint);
     }
 
     /** Restores the paint to its default settings. */
@@ -139,7 +142,12 @@ public class Paint {
         if (this != src) {
 
             // copy over our java settings
-        	setTypeface(src.mTypeface);
+        	mColor = src.mColor;
+        	mAlpha = src.mAlpha;
+        	mStyle = src.mStyle;
+        	mFlags = src.mFlags;
+        	mTypeface = src.mTypeface;
+        	setFontEntry(src.mFontEntry);
         	
         	/*
             mColorFilter    = src.mColorFilter;
@@ -706,12 +714,17 @@ public class Paint {
         	nativeFace = "Monospaced";//Font.MONOSPACED;
         }
 
-        
-		mNativeFont = new Font(nativeFace, nativeStyle, 20);
-		mNativeFontMentrics = FlowDisplay.instance().getFontMetrics(mNativeFont);
+        final int textSize = mFontEntry != null ? mFontEntry.size : DEFAULT_TEXT_SIZE;
+        setFontEntry(FontCache.get(nativeFace, nativeStyle, textSize));
 		
         return typeface;
     }
+    
+    private void setFontEntry(FontCache.Entry entry) {
+    	mFontEntry = entry;
+    	mNativeFont = entry != null ? entry.font : null;
+    	mNativeFontMentrics = entry != null ? entry.metrics : null;
+    }
         
     /**
      * Get the paint's rasterizer (or null).
@@ -790,11 +803,7 @@ public class Paint {
      * @return the paint's text size.
      */
     public int getTextSize() {
-    	
-    	return mNativeFontMentrics.getHeight();
-    	
-    	//return (int)mNativeFont.getMaxCharBounds(nativeRenderContext).getWidth();
-    
+    	return mFontEntry.size;
     }
 
     /**
@@ -803,15 +812,10 @@ public class Paint {
      * @param textSize set the paint's text size.
      */
     public void setTextSize(int textSize) {
-    	
-		mNativeFont = new Font(mNativeFont.getName(), mNativeFont.getSize(), textSize);
-		mNativeFontMentrics = FlowDisplay.instance().getFontMetrics(mNativeFont);
-
-		String font = mNativeFont.getName()+"-"+mNativeFont.getStyle()+"-"+textSize;
-		
-		mNativeFont = Font.getFont(font, mNativeFont);
-		
-    	//mNativeFont = mNativeFont.deriveFont((float)textSize);
+    	if (textSize <= 0 || textSize == mFontEntry.size) {
+    		return;
+    	}
+    	setFontEntry(FontCache.get(mNativeFont.getName(), mNativeFont.getStyle(), textSize));
     }
 
     /**
@@ -907,17 +911,17 @@ public class Paint {
      */
     public float getFontMetrics(FontMetrics metrics) {
     	
-    	if(metrics == null) {
-    		throw new NullPointerException();
-    	}
+    	final FontCache.Entry entry = mFontEntry;
     	
-    	metrics.top = 0;
-    	metrics.ascent = 0;
-    	metrics.descent = 0;
-    	metrics.bottom = 0;
-    	metrics.leading = 0;
+    	if(metrics != null) {
+    		metrics.top = entry.top;
+    		metrics.ascent = entry.ascent;
+    		metrics.descent = entry.descent;
+    		metrics.bottom = entry.bottom;
+    		metrics.leading = entry.leading;
+    	}
     	
-    	return 0;
+    	return entry.spacing;
     }
     
     
@@ -963,23 +967,17 @@ public class Paint {
     
     public int getFontMetricsInt(FontMetricsInt fmi) {
     	
+    	final FontCache.Entry entry = mFontEntry;
     	
-    	if(fmi == null) {
-    		return mNativeFontMentrics.getHeight();
+    	if(fmi != null) {
+    		fmi.top = entry.top;
+    		fmi.ascent = entry.ascent;
+    		fmi.descent = entry.descent;
+    		fmi.bottom = entry.bottom;
+    		fmi.leading = entry.leading;
     	}
     	
-    	 
-    	
-    	
-    	fmi.top = (int) mNativeFontMentrics.getAscent();
-    	fmi.bottom = (int) mNativeFontMentrics.getDescent();
-    	fmi.leading = (int) mNativeFontMentrics.getLeading();
-    	fmi.descent = (int) mNativeFontMentrics.getDescent();
-    	
-    	return mNativeFontMentrics.getHeight();
-   
- 
-    	
+    	return entry.spacing;
     }
 
     public FontMetricsInt getFontMetricsInt() {
@@ -1010,16 +1008,11 @@ public class Paint {
      */
     public float measureText(char[] text, int index, int count) {
     	
-    	int textWidth = 0;
-    	
-    	if(mNativeFont != null) {
-    		
-    		textWidth = mNativeFontMentrics.charsWidth(text, index, count);
-       		
-    		Log.i(TAG, "textWidth " + textWidth);
+    	if ((index | count) < 0 || index + count > text.length) {
+    		throw new ArrayIndexOutOfBoundsException();
     	}
     	
-    	return textWidth;
+    	return mFontEntry.measure(text, index, index + count);
     }
 
     /**
@@ -1032,19 +1025,11 @@ public class Paint {
      */
     public int measureText(String text, int start, int end) {
     	
-    
-    	int textWidth = 0;
-
-    	if(mNativeFont != null) {
-
-    		
-    		textWidth = mNativeFontMentrics.stringWidth(text.substring(start, end));
-    		
-        	Log.i(TAG, "! measureText " + text);
-        	Log.i(TAG, "textWidth " + textWidth);
+    	if ((start | end | (end - start) | (text.length() - end)) < 0) {
+    		throw new IndexOutOfBoundsException();
     	}
-
-    	return textWidth;
+    	
+    	return mFontEntry.measure(text, start, end);
     }
 
     /**
@@ -1103,78 +1088,44 @@ public class Paint {
      */
     public int breakText(char[] text, int index, int count, float maxWidth, float[] measuredWidth) {
     	
-    	if(text == null || text.length==0) {
-    		return 0;
-    	}
+    	final int length = count < 0 ? -count : count;
     	
-     	if(measuredWidth != null && text.length>measuredWidth.length) {
-    		return 0;
+    	if (index < 0 || index + length > text.length) {
+    		throw new ArrayIndexOutOfBoundsException();
     	}
     	
-
-     	boolean measureForwards = true;
-     	
-     	if(count<0) {
-     		measureForwards = false;
-     	}
-
-    	int charsMeasured = 0;
-    	
+    	final FontCache.Entry entry = mFontEntry;
     	
-    	if(mNativeFont != null) {
+    	int width = 0;
+    	int measured = 0;
     	
-			int currentCharIdx = index;
-			int currentCharWidth = 0;
-    		
-    		if(measureForwards) {
-
-    			do
-    			{
-    				currentCharIdx = index;
-    				currentCharWidth = (int) mNativeFontMentrics.charWidth(text[currentCharIdx]);
-    				
-    				if(measuredWidth != null) {
-    					measuredWidth[currentCharIdx] = currentCharWidth;
-    				}
-    				
-    				currentCharIdx++;
-    				
+    	if (count >= 0) {
+    		for (int i = index; measured < length; i++) {
+    			final int w = width + entry.advance(text[i]);
+    			if (w > maxWidth) {
+    				break;
     			}
-    			while(currentCharIdx<index+count && currentCharWidth<maxWidth);
-    			
-    	
-    			
+    			width = w;
+    			measured++;
     		}
-    		else {
-    			
-
-    			do
-    			{
-    				currentCharWidth = (int) mNativeFontMentrics.charWidth(text[currentCharIdx]);
-    				
-    				
-    				// XXX currentCharWidth = mCurrentNativeTypeface.charWidth(text[currentCharIdx]);
-    				
-    				if(measuredWidth != null) {
-    					measuredWidth[currentCharIdx-1] = currentCharWidth; // XXX ???
-    				}
-    				
-    				currentCharIdx--;
-    				
+    	}
+    	else {
+    		// the last characters of the slice
+    		for (int i = index + length - 1; measured < length; i--) {
+    			final int w = width + entry.advance(text[i]);
+    			if (w > maxWidth) {
+    				break;
     			}
-    			while(currentCharIdx>index+count && currentCharWidth<maxWidth);
-    			
-    			
+    			width = w;
+    			measured++;
     		}
-    		
-    		
-    		
-    		
     	}
-
-    	return charsMeasured;
     	
+    	if (measuredWidth != null) {
+    		measuredWidth[0] = width;
+    	}
     	
+    	return measured;
     }
 
     /**
@@ -1231,65 +1182,38 @@ public class Paint {
      */
     public int breakText(String text, boolean measureForwards,  float maxWidth, float[] measuredWidth) {
     	
-    	if(text == null || text.length()==0) {
-    		return 0;
-    	}
+    	final FontCache.Entry entry = mFontEntry;
+    	final int length = text.length();
     	
-     	if(measuredWidth != null && text.length()>measuredWidth.length) {
-    		return 0;
-    	}
+    	int width = 0;
+    	int measured = 0;
     	
-
-    	int charsMeasured = 0;
-    	
-    	if(mNativeFont != null) {
-    	
-			int currentCharIdx = 0;
-			int currentCharWidth = 0;
-    		
-    		if(measureForwards) {
-
-    			do
-    			{
-    				currentCharWidth = (int) mNativeFontMentrics.charWidth(text.charAt(currentCharIdx));
-    				
-    				
-    				// XXX currentCharWidth = mCurrentNativeTypeface.charWidth(text.charAt(currentCharIdx));
-    				
-    				if(measuredWidth != null) {
-    					measuredWidth[currentCharIdx] = currentCharWidth;
-    				}
-    				
-    				currentCharIdx++;
-    				
+    	if (measureForwards) {
+    		for (int i = 0; i < length; i++) {
+    			final int w = width + entry.advance(text.charAt(i));
+    			if (w > maxWidth) {
+    				break;
     			}
-    			while(currentCharIdx<text.length() && currentCharWidth<maxWidth);
+    			width = w;
+    			measured++;
     		}
-    		else {
-    			
-    			currentCharIdx = text.length()-1;
-    			
-    			do
-    			{
-    				currentCharWidth = (int) mNativeFontMentrics.charWidth(text.charAt(currentCharIdx));
-    				
-    				// XXX currentCharWidth = mCurrentNativeTypeface.charWidth(text.charAt(currentCharIdx));
-    				
-    				if(measuredWidth != null) {
-    					measuredWidth[currentCharIdx-1] = currentCharWidth; // XXX ???
-    				}
-    				
-    				currentCharIdx--;
-    				
+    	}
+    	else {
+    		for (int i = length - 1; i >= 0; i--) {
+    			final int w = width + entry.advance(text.charAt(i));
+    			if (w > maxWidth) {
+    				break;
     			}
-    			while(currentCharIdx>0 && currentCharWidth<maxWidth);
- 
+    			width = w;
+    			measured++;
     		}
     	}
     	
-    	return charsMeasured;
-   
-    
+    	if (measuredWidth != null) {
+    		measuredWidth[0] = width;
+    	}
+    	
+    	return measured;
     }
 
     /**
@@ -1309,10 +1233,9 @@ public class Paint {
             throw new ArrayIndexOutOfBoundsException();
         }
         
-        if(mNativeFont != null) {
-        	for(int i=index; i<index+count; i++) {
-        		widths[i-index]  = mNativeFontMentrics.charWidth(text[i]);
-        	}
+        final FontCache.Entry entry = mFontEntry;
+        for(int i=index; i<index+count; i++) {
+        	widths[i-index]  = entry.advance(text[i]);
         }
         
         return count;
@@ -1368,13 +1291,9 @@ public class Paint {
             throw new ArrayIndexOutOfBoundsException();
         }
         
-        if(mNativeFont != null) {
-        	for(int i=start; i<end; i++) {
-        		
-        		widths[i-start]  = mNativeFontMentrics.charWidth(text.charAt(i));
-        		
-        
-        	}
+        final FontCache.Entry entry = mFontEntry;
+        for(int i=start; i<end; i++) {
+        	widths[i-start]  = entry.advance(text.charAt(i));
         }
         
         return end-start;
@@ -1458,7 +1377,7 @@ public class Paint {
         if(mNativeFont != null) {
         	
         	
-        	int w = mNativeFontMentrics.stringWidth(text.substring(start, end));
+        	int w = mFontEntry.measure(text, start, end);
         	int h = mNativeFontMentrics.getHeight();
         	
  
@@ -1487,7 +1406,7 @@ public class Paint {
     	if ((index | count) < 0 || index + count > text.length) {
             throw new ArrayIndexOutOfBoundsException();
         }
-    	getTextBounds(new String(text), index, index+count, bounds);
+    	getTextBounds(new String(text, index, count), 0, count, bounds);
     }
     
 
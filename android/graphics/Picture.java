@@ -0,0 +1,410 @@
+/*
+ * Copyright (C) 2007 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.graphics;
+
+import java.awt.Font;
+import java.awt.Image;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A picture records drawing calls (via the canvas returned by beginRecording)
+ * and can then play them back (via picture.draw(canvas) or
+ * canvas.drawPicture). Playing back skips everything the recorded code did
+ * besides drawing: measuring text, resolving paints and drawable states...
+ *
+ * The operations are kept as opcodes and their arguments in a single int
+ * array; strings, fonts and images go to a small object table referenced by
+ * index. A picture can be written to a stream and read back, images are not
+ * serialized (they are skipped when such a picture is drawn).
+ */
+public class Picture {
+
+	// opcodes, followed by their arguments in mOps
+	static final int OP_SAVE = 1;				//
+	static final int OP_RESTORE_TO_COUNT = 2;	// count
+	static final int OP_TRANSLATE = 3;			// dx, dy
+	static final int OP_CLIP_RECT = 4;			// left, top, right, bottom
+	static final int OP_DRAW_COLOR = 5;			// color
+	static final int OP_DRAW_LINE = 6;			// startX, startY, stopX, stopY, color
+	static final int OP_DRAW_RECT = 7;			// left, top, right, bottom, color, style
+	static final int OP_DRAW_ROUND_RECT = 8;	// left, top, right, bottom, arcWidth, arcHeight, color, style
+	static final int OP_DRAW_IMAGE = 9;			// image, left, top
+	static final int OP_DRAW_TEXT = 10;			// text, x, y, color, font
+
+	private static final int STREAM_MAGIC = 0x46444c31; // "FDL1"
+
+	private static final int OBJECT_NULL = 0;
+	private static final int OBJECT_STRING = 1;
+	private static final int OBJECT_FONT = 2;
+	private static final int OBJECT_IMAGE = 3;
+
+	private int[] mOps = new int[32];
+	private int mOpsLength = 0;
+
+	private Object[] mObjects = new Object[8];
+	private int mObjectCount = 0;
+
+	private int mWidth;
+	private int mHeight;
+
+	private RecordingCanvas mRecordingCanvas = null;
+	private boolean mRecording = false;
+
+	public Picture() {
+	}
+
+	/**
+	 * To record a picture, call beginRecording() and then draw into the Canvas
+	 * that is returned. Nothing drawn there appears on screen, but all of the draw
+	 * commands (e.g. drawRect(...)) will be recorded. To stop recording, call
+	 * endRecording(). The previous content of the picture is dropped.
+	 */
+	public Canvas beginRecording(int width, int height) {
+		mWidth = width;
+		mHeight = height;
+
+		mOpsLength = 0;
+		for (int i = 0; i < mObjectCount; i++) {
+			mObjects[i] = null;
+		}
+		mObjectCount = 0;
+
+		if (mRecordingCanvas == null) {
+			mRecordingCanvas = new RecordingCanvas(this);
+		}
+		mRecordingCanvas.reset();
+		mRecording = true;
+
+		return mRecordingCanvas;
+	}
+
+	/**
+	 * Call endRecording when the picture is built. After this call, the
+	 * picture can be drawn, but the canvas that was returned by
+	 * beginRecording must not be used anymore. This is automatically called
+	 * if {@link Picture#draw} or {@link Canvas#drawPicture(Picture)} is called.
+	 */
+	public void endRecording() {
+		mRecording = false;
+	}
+
+	/**
+	 * Get the width of the picture as passed to beginRecording. This does not
+	 * reflect (per se) the content of the picture.
+	 */
+	public int getWidth() {
+		return mWidth;
+	}
+
+	/**
+	 * Get the height of the picture as passed to beginRecording. This does
+	 * not reflect (per se) the content of the picture.
+	 */
+	public int getHeight() {
+		return mHeight;
+	}
+
+	/**
+	 * Number of ints used by the recorded operations.
+	 */
+	public int getOpsLength() {
+		return mOpsLength;
+	}
+
+	/**
+	 * Draw this picture on the canvas. The picture's save levels are balanced,
+	 * the canvas is left in the state it was.
+	 *
+	 * @param canvas The picture is drawn to this canvas
+	 */
+	public void draw(Canvas canvas) {
+
+		endRecording();
+
+		final int base = canvas.getSaveCount();
+		final int[] ops = mOps;
+		final Object[] objects = mObjects;
+		final int length = mOpsLength;
+
+		int i = 0;
+		while (i < length) {
+			switch (ops[i++]) {
+			case OP_SAVE:
+				canvas.save();
+				break;
+			case OP_RESTORE_TO_COUNT:
+				canvas.restoreToCount(base + ops[i++]);
+				break;
+			case OP_TRANSLATE:
+				canvas.translate(ops[i], ops[i + 1]);
+				i += 2;
+				break;
+			case OP_CLIP_RECT:
+				canvas.clipRect(ops[i], ops[i + 1], ops[i + 2], ops[i + 3]);
+				i += 4;
+				break;
+			case OP_DRAW_COLOR:
+				canvas.nativeDrawColor(ops[i++]);
+				break;
+			case OP_DRAW_LINE:
+				canvas.nativeDrawLine(ops[i], ops[i + 1], ops[i + 2], ops[i + 3], ops[i + 4]);
+				i += 5;
+				break;
+			case OP_DRAW_RECT:
+				canvas.nativeDrawRect(ops[i], ops[i + 1], ops[i + 2], ops[i + 3], ops[i + 4], ops[i + 5]);
+				i += 6;
+				break;
+			case OP_DRAW_ROUND_RECT:
+				canvas.nativeDrawRoundRect(ops[i], ops[i + 1], ops[i + 2], ops[i + 3], ops[i + 4], ops[i + 5],
+						ops[i + 6], ops[i + 7]);
+				i += 8;
+				break;
+			case OP_DRAW_IMAGE: {
+				final Image image = (Image) objects[ops[i]];
+				if (image != null) {
+					canvas.nativeDrawImage(image, ops[i + 1], ops[i + 2]);
+				}
+				i += 3;
+				break;
+			}
+			case OP_DRAW_TEXT: {
+				final Font font = (Font) objects[ops[i + 4]];
+				if (font != null) {
+					canvas.nativeDrawText((String) objects[ops[i]], ops[i + 1], ops[i + 2], ops[i + 3], font);
+				}
+				i += 5;
+				break;
+			}
+			default:
+				throw new IllegalStateException("bad opcode " + ops[i - 1] + " at " + (i - 1));
+			}
+		}
+
+		canvas.restoreToCount(base);
+	}
+
+	// ---------------------------------------------------------------------------------
+	// recording
+
+	void addOp(int op) {
+		ensureOps(1);
+		mOps[mOpsLength++] = op;
+	}
+
+	void addOp(int op, int a) {
+		ensureOps(2);
+		final int[] ops = mOps;
+		int n = mOpsLength;
+		ops[n++] = op;
+		ops[n++] = a;
+		mOpsLength = n;
+	}
+
+	void addOp(int op, int a, int b) {
+		ensureOps(3);
+		final int[] ops = mOps;
+		int n = mOpsLength;
+		ops[n++] = op;
+		ops[n++] = a;
+		ops[n++] = b;
+		mOpsLength = n;
+	}
+
+	void addOp(int op, int a, int b, int c) {
+		ensureOps(4);
+		final int[] ops = mOps;
+		int n = mOpsLength;
+		ops[n++] = op;
+		ops[n++] = a;
+		ops[n++] = b;
+		ops[n++] = c;
+		mOpsLength = n;
+	}
+
+	void addOp(int op, int a, int b, int c, int d) {
+		ensureOps(5);
+		final int[] ops = mOps;
+		int n = mOpsLength;
+		ops[n++] = op;
+		ops[n++] = a;
+		ops[n++] = b;
+		ops[n++] = c;
+		ops[n++] = d;
+		mOpsLength = n;
+	}
+
+	/**
+	 * Appends an argument to the operation added last.
+	 */
+	void addArg(int a) {
+		ensureOps(1);
+		mOps[mOpsLength++] = a;
+	}
+
+	/**
+	 * Appends arguments to the operation added last.
+	 */
+	void addArgs(int a, int b, int c, int d) {
+		ensureOps(4);
+		final int[] ops = mOps;
+		int n = mOpsLength;
+		ops[n++] = a;
+		ops[n++] = b;
+		ops[n++] = c;
+		ops[n++] = d;
+		mOpsLength = n;
+	}
+
+	/**
+	 * Returns the index of the object in the object table, adding it if
+	 * needed. Fonts and images are shared between operations.
+	 */
+	int addObject(Object object) {
+		if (!(object instanceof String)) {
+			for (int i = mObjectCount - 1; i >= 0; i--) {
+				if (mObjects[i] == object) {
+					return i;
+				}
+			}
+		}
+
+		if (mObjectCount == mObjects.length) {
+			Object[] objects = new Object[mObjectCount * 2];
+			System.arraycopy(mObjects, 0, objects, 0, mObjectCount);
+			mObjects = objects;
+		}
+
+		mObjects[mObjectCount] = object;
+		return mObjectCount++;
+	}
+
+	boolean isRecording() {
+		return mRecording;
+	}
+
+	private void ensureOps(int count) {
+		if (mOpsLength + count > mOps.length) {
+			int[] ops = new int[Math.max(mOps.length * 2, mOpsLength + count)];
+			System.arraycopy(mOps, 0, ops, 0, mOpsLength);
+			mOps = ops;
+		}
+	}
+
+	// ---------------------------------------------------------------------------------
+	// serialization
+
+	/**
+	 * Write the picture contents to a stream. The data can be used to
+	 * recreate the picture with {@link #createFromStream(InputStream)},
+	 * without the images.
+	 */
+	public void writeToStream(OutputStream stream) throws IOException {
+
+		endRecording();
+
+		final DataOutputStream out = new DataOutputStream(stream);
+
+		out.writeInt(STREAM_MAGIC);
+		out.writeInt(mWidth);
+		out.writeInt(mHeight);
+
+		out.writeInt(mOpsLength);
+		for (int i = 0; i < mOpsLength; i++) {
+			out.writeInt(mOps[i]);
+		}
+
+		out.writeInt(mObjectCount);
+		for (int i = 0; i < mObjectCount; i++) {
+			final Object object = mObjects[i];
+			if (object instanceof String) {
+				out.writeByte(OBJECT_STRING);
+				out.writeUTF((String) object);
+			}
+			else if (object instanceof Font) {
+				final Font font = (Font) object;
+				out.writeByte(OBJECT_FONT);
+				out.writeUTF(font.getName());
+				out.writeInt(font.getStyle());
+				out.writeInt(font.getSize());
+			}
+			else if (object instanceof Image) {
+				final Image image = (Image) object;
+				out.writeByte(OBJECT_IMAGE);
+				out.writeInt(image.getWidth(null));
+				out.writeInt(image.getHeight(null));
+			}
+			else {
+				out.writeByte(OBJECT_NULL);
+			}
+		}
+
+		out.flush();
+	}
+
+	/**
+	 * Create a new picture from the data written by
+	 * {@link #writeToStream(OutputStream)}.
+	 */
+	public static Picture createFromStream(InputStream stream) throws IOException {
+
+		final DataInputStream in = new DataInputStream(stream);
+
+		if (in.readInt() != STREAM_MAGIC) {
+			throw new IOException("not a picture stream");
+		}
+
+		final Picture picture = new Picture();
+		picture.mWidth = in.readInt();
+		picture.mHeight = in.readInt();
+
+		final int length = in.readInt();
+		picture.mOps = new int[Math.max(length, 1)];
+		for (int i = 0; i < length; i++) {
+			picture.mOps[i] = in.readInt();
+		}
+		picture.mOpsLength = length;
+
+		final int count = in.readInt();
+		picture.mObjects = new Object[Math.max(count, 1)];
+		for (int i = 0; i < count; i++) {
+			switch (in.readByte()) {
+			case OBJECT_STRING:
+				picture.mObjects[i] = in.readUTF();
+				break;
+			case OBJECT_FONT:
+				picture.mObjects[i] = new Font(in.readUTF(), in.readInt(), in.readInt());
+				break;
+			case OBJECT_IMAGE:
+				// pixels are not serialized, only the size for reference
+				in.readInt();
+				in.readInt();
+				picture.mObjects[i] = null;
+				break;
+			default:
+				picture.mObjects[i] = null;
+				break;
+			}
+		}
+		picture.mObjectCount = count;
+
+		return picture;
+	}
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2007 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.graphics;
+
+import java.awt.Font;
+import java.awt.Image;
+
+/**
+ * The canvas returned by {@link Picture#beginRecording(int, int)}. It keeps
+ * track of the save levels, translation and clip like any canvas, so that
+ * quickReject() and getClipBounds() keep working for the recorded code, but
+ * instead of drawing it appends every operation to the picture.
+ *
+ * The clip starts unbounded: the clip of the canvas the picture is played
+ * into is not known while recording.
+ */
+final class RecordingCanvas extends Canvas {
+
+	private final static int UNBOUNDED = Integer.MAX_VALUE >> 2;
+
+	private final Picture mPicture;
+
+	RecordingCanvas(Picture picture) {
+		mPicture = picture;
+		reset();
+	}
+
+	void reset() {
+		resetState(-UNBOUNDED, -UNBOUNDED, UNBOUNDED, UNBOUNDED);
+	}
+
+	public int save() {
+		if (mPicture.isRecording()) {
+			mPicture.addOp(Picture.OP_SAVE);
+		}
+		return super.save();
+	}
+
+	public void restoreToCount(int saveCount) {
+		if (mPicture.isRecording() && saveCount >= 0 && saveCount < getSaveCount()) {
+			mPicture.addOp(Picture.OP_RESTORE_TO_COUNT, saveCount);
+		}
+		super.restoreToCount(saveCount);
+	}
+
+	public void translate(int dx, int dy) {
+		if (mPicture.isRecording() && (dx | dy) != 0) {
+			mPicture.addOp(Picture.OP_TRANSLATE, dx, dy);
+		}
+		super.translate(dx, dy);
+	}
+
+	public boolean clipRect(int left, int top, int right, int bottom) {
+		if (mPicture.isRecording()) {
+			mPicture.addOp(Picture.OP_CLIP_RECT, left, top, right, bottom);
+		}
+		return super.clipRect(left, top, right, bottom);
+	}
+
+	void nativeDrawColor(int color) {
+		if (mPicture.isRecording()) {
+			mPicture.addOp(Picture.OP_DRAW_COLOR, color);
+		}
+	}
+
+	void nativeDrawLine(int startX, int startY, int stopX, int stopY, int color) {
+		if (mPicture.isRecording()) {
+			mPicture.addOp(Picture.OP_DRAW_LINE, startX, startY, stopX, stopY);
+			mPicture.addArg(color);
+		}
+	}
+
+	void nativeDrawRect(int left, int top, int right, int bottom, int color, int style) {
+		if (mPicture.isRecording()) {
+			mPicture.addOp(Picture.OP_DRAW_RECT, left, top, right, bottom);
+			mPicture.addArg(color);
+			mPicture.addArg(style);
+		}
+	}
+
+	void nativeDrawRoundRect(int left, int top, int right, int bottom, int arcWidth, int arcHeight, int color,
+			int style) {
+		if (mPicture.isRecording()) {
+			mPicture.addOp(Picture.OP_DRAW_ROUND_RECT, left, top, right, bottom);
+			mPicture.addArgs(arcWidth, arcHeight, color, style);
+		}
+	}
+
+	void nativeDrawImage(Image image, int left, int top) {
+		if (mPicture.isRecording()) {
+			mPicture.addOp(Picture.OP_DRAW_IMAGE, mPicture.addObject(image), left, top);
+		}
+	}
+
+	void nativeDrawText(String text, int x, int y, int color, Font font) {
+		if (mPicture.isRecording()) {
+			mPicture.addOp(Picture.OP_DRAW_TEXT, mPicture.addObject(text), x, y, color);
+			mPicture.addArg(mPicture.addObject(font));
+		}
+	}
+}
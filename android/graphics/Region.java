@@ -0,0 +1,267 @@
+/*
+ * Copyright (C) 2006 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.graphics;
+
+/**
+ * A small region made of a bounded number of rectangles. Unlike a single
+ * bounding box, two far apart areas stay separated, so they can be repainted
+ * (and refreshed on the e-ink panel) independently. When the rectangle budget
+ * is exhausted the two rectangles whose union wastes the least area are
+ * merged.
+ *
+ * The region never allocates once created.
+ */
+public class Region {
+
+	public final static int DEFAULT_MAX_RECTS = 8;
+
+	private final Rect[] mRects;
+	private final int mMaxRects;
+	private int mCount;
+
+	private final Rect mBounds = new Rect();
+
+	/**
+	 * Create an empty region holding at most {@link #DEFAULT_MAX_RECTS}
+	 * rectangles.
+	 */
+	public Region() {
+		this(DEFAULT_MAX_RECTS);
+	}
+
+	/**
+	 * Create an empty region holding at most maxRects rectangles.
+	 */
+	public Region(int maxRects) {
+		if (maxRects < 1) {
+			throw new IllegalArgumentException("maxRects must be >= 1");
+		}
+
+		// one spare slot for the rectangle being merged in
+		mMaxRects = maxRects;
+		mRects = new Rect[maxRects + 1];
+		for (int i = 0; i < mRects.length; i++) {
+			mRects[i] = new Rect();
+		}
+		mCount = 0;
+	}
+
+	/**
+	 * Return true if this region is empty
+	 */
+	public boolean isEmpty() {
+		return mCount == 0;
+	}
+
+	/**
+	 * Set the region to the empty region
+	 */
+	public void setEmpty() {
+		mCount = 0;
+		mBounds.setEmpty();
+	}
+
+	/**
+	 * Return the number of rectangles the region is made of.
+	 */
+	public int getRectCount() {
+		return mCount;
+	}
+
+	/**
+	 * Copy the rectangle at the given index into outRect.
+	 */
+	public void getRect(int index, Rect outRect) {
+		if (index < 0 || index >= mCount) {
+			throw new IndexOutOfBoundsException();
+		}
+		outRect.set(mRects[index]);
+	}
+
+	/**
+	 * Return a new Rect set to the bounds of the region. If the region is
+	 * empty, the Rect will be set to [0, 0, 0, 0]
+	 */
+	public Rect getBounds() {
+		Rect r = new Rect();
+		getBounds(r);
+		return r;
+	}
+
+	/**
+	 * Set the Rect to the bounds of the region. If the region is empty, the
+	 * Rect will be set to [0, 0, 0, 0]
+	 *
+	 * @return true if the region is non-empty
+	 */
+	public boolean getBounds(Rect r) {
+		r.set(mBounds);
+		return mCount != 0;
+	}
+
+	/**
+	 * Add the rectangle to the region.
+	 */
+	public void union(Rect r) {
+		union(r.left, r.top, r.right, r.bottom);
+	}
+
+	/**
+	 * Add the rectangle (left, top, right, bottom) to the region.
+	 */
+	public void union(int left, int top, int right, int bottom) {
+
+		if (left >= right || top >= bottom) {
+			return;
+		}
+
+		final Rect[] rects = mRects;
+
+		// already covered, or covering others
+		for (int i = mCount - 1; i >= 0; i--) {
+			final Rect r = rects[i];
+			if (r.contains(left, top, right, bottom)) {
+				return;
+			}
+			if (left <= r.left && top <= r.top && right >= r.right && bottom >= r.bottom) {
+				removeAt(i);
+			}
+		}
+
+		rects[mCount++].set(left, top, right, bottom);
+		mBounds.union(left, top, right, bottom);
+
+		// merge while it doesn't grow the area or we are over budget
+		int index = mCount - 1;
+		while (mCount > 1) {
+			int best = -1;
+			int bestWaste = Integer.MAX_VALUE;
+			for (int i = 0; i < mCount; i++) {
+				if (i != index) {
+					int waste = mergeWaste(rects[i], rects[index]);
+					if (waste < bestWaste) {
+						bestWaste = waste;
+						best = i;
+					}
+				}
+			}
+
+			if (bestWaste > 0 && mCount <= mMaxRects) {
+				break;
+			}
+
+			rects[best].union(rects[index]);
+			removeAt(index);
+			index = best < index ? best : best - 1;
+		}
+	}
+
+	/**
+	 * Add all rectangles of the other region, offset by (dx, dy).
+	 */
+	public void union(Region region, int dx, int dy) {
+		for (int i = 0; i < region.mCount; i++) {
+			final Rect r = region.mRects[i];
+			union(r.left + dx, r.top + dy, r.right + dx, r.bottom + dy);
+		}
+	}
+
+	/**
+	 * Translate the region by [dx, dy].
+	 */
+	public void translate(int dx, int dy) {
+		for (int i = 0; i < mCount; i++) {
+			mRects[i].offset(dx, dy);
+		}
+		if (mCount != 0) {
+			mBounds.offset(dx, dy);
+		}
+	}
+
+	/**
+	 * Return true if the region doesn't intersect the rectangle (left, top,
+	 * right, bottom).
+	 */
+	public boolean quickReject(int left, int top, int right, int bottom) {
+		if (mCount == 0 || !mBounds.intersects(left, top, right, bottom)) {
+			return true;
+		}
+		for (int i = 0; i < mCount; i++) {
+			if (mRects[i].intersects(left, top, right, bottom)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Remove every rectangle entirely contained in (left, top, right, bottom).
+	 * Used once an area has been repainted.
+	 */
+	public void subtractContained(int left, int top, int right, int bottom) {
+		boolean removed = false;
+		for (int i = mCount - 1; i >= 0; i--) {
+			final Rect r = mRects[i];
+			if (left <= r.left && top <= r.top && right >= r.right && bottom >= r.bottom) {
+				removeAt(i);
+				removed = true;
+			}
+		}
+
+		if (removed) {
+			mBounds.setEmpty();
+			for (int i = 0; i < mCount; i++) {
+				mBounds.union(mRects[i]);
+			}
+		}
+	}
+
+	private void removeAt(int index) {
+		final Rect[] rects = mRects;
+		final Rect removed = rects[index];
+		mCount--;
+		for (int i = index; i < mCount; i++) {
+			rects[i] = rects[i + 1];
+		}
+		// keep the instance for later reuse
+		rects[mCount] = removed;
+	}
+
+	/**
+	 * Area added by replacing a and b with their union.
+	 */
+	private static int mergeWaste(Rect a, Rect b) {
+		final int l = Math.min(a.left, b.left);
+		final int t = Math.min(a.top, b.top);
+		final int r = Math.max(a.right, b.right);
+		final int bt = Math.max(a.bottom, b.bottom);
+
+		return (r - l) * (bt - t) - a.width() * a.height() - b.width() * b.height();
+	}
+
+	public String toString() {
+		StringBuffer sb = new StringBuffer("Region(");
+		for (int i = 0; i < mCount; i++) {
+			if (i > 0) {
+				sb.append(", ");
+			}
+			sb.append(mRects[i].toString());
+		}
+		sb.append(')');
+		return sb.toString();
+	}
+}
@@ -16,7 +16,7 @@
 
 package android.graphics.drawable;
 
-import android.util.Log;
+import android.view.Choreographer;
 
 /**
  * 
@@ -54,8 +54,12 @@ import android.util.Log;
  * // Start the animation (looped playback by default).
  * frameAnimation.start()
  * </pre>
+ *
+ * <p>The frames are advanced by {@link Choreographer} frame callbacks. When
+ * the choreographer collapses animations, a one shot animation shows its last
+ * frame right away and a looping one stays on its current frame.</p>
  */
-public class AnimationDrawable extends DrawableContainer implements Runnable {
+public class AnimationDrawable extends DrawableContainer implements Runnable, Choreographer.FrameCallback {
     public AnimationDrawable() {
         this(null);
     }
@@ -121,9 +125,18 @@ public class AnimationDrawable extends DrawableContainer implements Runnable {
         nextFrame(false);
     }
 
+    /**
+     * <p>This method exists for implementation purpose only and should not be
+     * called directly. Invoke {@link #start()} instead.</p>
+     */
+    public void doFrame(long frameTimeMillis) {
+        nextFrame(false);
+    }
+
     // Override
     public void unscheduleSelf(Runnable what) {
         mCurFrame = -1;
+        Choreographer.getInstance().removeFrameCallback(this);
         super.unscheduleSelf(what);
     }
 
@@ -186,11 +199,19 @@ public class AnimationDrawable extends DrawableContainer implements Runnable {
     }
 
     private void setFrame(int frame, boolean unschedule, boolean animate) {
-
-    	
-    	if (frame >= mAnimationState.getChildCount()) {
+        final int N = mAnimationState.getChildCount();
+        if (frame >= N) {
             return;
         }
+
+        final Choreographer choreographer = Choreographer.getInstance();
+        if (animate && choreographer.isCollapsingAnimations()) {
+            if (mAnimationState.mOneShot) {
+                frame = N - 1;
+            }
+            animate = false;
+        }
+
         mCurFrame = frame;
         selectDrawable(frame);
 
@@ -198,7 +219,7 @@ public class AnimationDrawable extends DrawableContainer implements Runnable {
             unscheduleSelf(this);
         }
         if (animate) {
-            scheduleSelf(this, /*XXX SystemClock.uptimeMillis()*/  System.currentTimeMillis() + mAnimationState.mDurations[frame]);
+            choreographer.postFrameCallbackDelayed(this, mAnimationState.mDurations[frame]);
         }
     }
 
@@ -48,6 +48,29 @@ public class BitmapDrawable extends Drawable {
         }
     }
 
+    /**
+     * Draws the placeholder, null-ok, until the image of the application jar
+     * is decoded off the UI thread; the decoded bitmap then replaces it and
+     * only the bounds of the drawable are invalidated. The view is not laid
+     * out again, the placeholder should have the size of the image.
+     *
+     * @param opts null-ok; {@link BitmapFactory.Options#requestCancelDecode()}
+     *        keeps the placeholder
+     */
+    public BitmapDrawable(final String resourcePathName, Bitmap placeholder, BitmapFactory.Options opts) {
+        this(new BitmapState(placeholder));
+        BitmapFactory.decodeResourceAsync(resourcePathName, opts, new BitmapFactory.OnDecodedListener() {
+            public void onBitmapDecoded(String path, Bitmap bitmap) {
+                if (bitmap != null) {
+                    setBitmap(bitmap);
+                }
+                else {
+                    android.util.Log.w("BitmapDrawable", "BitmapDrawable cannot decode " + path);
+                }
+            }
+        });
+    }
+
     public BitmapDrawable(java.io.InputStream is) {
         this(new BitmapState(BitmapFactory.decodeStream(is)));
         if (mBitmap == null) {
@@ -62,6 +85,13 @@ public class BitmapDrawable extends Drawable {
     public final Bitmap getBitmap() {
         return mBitmap;
     }
+
+    private void setBitmap(Bitmap bitmap) {
+        mBitmapState.mBitmap = bitmap;
+        mBitmap = bitmap;
+        mApplyGravity = true;
+        invalidateSelf();
+    }
     
     /** Get the gravity used to position/stretch the bitmap within its bounds.
         See android.view.Gravity
@@ -923,7 +923,7 @@ public class GradientDrawable extends Drawable {
     
     protected boolean onStateChange(int[] state) { 
     	
-    	Log.i("GradientDrawable", "onStateChange");
+    	Log.d("GradientDrawable", "onStateChange");
     	
     	return false;
     	}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2006 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.os;
+
+/**
+ * Sends messages and Runnables to the queue of a {@link Looper} and handles
+ * them on its thread. Times are in the {@link System#currentTimeMillis()}
+ * time base, the one {@link android.graphics.drawable.Drawable#scheduleSelf}
+ * callers use.
+ */
+public class Handler {
+
+	/**
+	 * Handles the messages instead of a Handler subclass.
+	 */
+	public interface Callback {
+		public boolean handleMessage(Message msg);
+	}
+
+	private final Looper mLooper;
+	private final MessageQueue mQueue;
+	private final Callback mCallback;
+
+	/**
+	 * A handler of the main looper, there is no other.
+	 */
+	public Handler() {
+		this(Looper.getMainLooper(), null);
+	}
+
+	public Handler(Callback callback) {
+		this(Looper.getMainLooper(), callback);
+	}
+
+	public Handler(Looper looper) {
+		this(looper, null);
+	}
+
+	public Handler(Looper looper, Callback callback) {
+		mLooper = looper;
+		mQueue = looper.getQueue();
+		mCallback = callback;
+	}
+
+	/**
+	 * Subclasses handle the messages sent without a Runnable here.
+	 */
+	public void handleMessage(Message msg) {
+	}
+
+	public void dispatchMessage(Message msg) {
+		if (msg.callback != null) {
+			msg.callback.run();
+		}
+		else if (mCallback == null || !mCallback.handleMessage(msg)) {
+			handleMessage(msg);
+		}
+	}
+
+	public final Looper getLooper() {
+		return mLooper;
+	}
+
+	public final Message obtainMessage() {
+		return Message.obtain(this);
+	}
+
+	public final Message obtainMessage(int what) {
+		return Message.obtain(this, what);
+	}
+
+	public final Message obtainMessage(int what, Object obj) {
+		return Message.obtain(this, what, obj);
+	}
+
+	public final Message obtainMessage(int what, int arg1, int arg2, Object obj) {
+		return Message.obtain(this, what, arg1, arg2, obj);
+	}
+
+	/**
+	 * Runs r on the looper thread, after the messages already due.
+	 */
+	public final boolean post(Runnable r) {
+		return sendMessageAtTime(Message.obtain(this, r, null), System.currentTimeMillis());
+	}
+
+	public final boolean postDelayed(Runnable r, long delayMillis) {
+		return sendMessageDelayed(Message.obtain(this, r, null), delayMillis);
+	}
+
+	public final boolean postAtTime(Runnable r, long uptimeMillis) {
+		return sendMessageAtTime(Message.obtain(this, r, null), uptimeMillis);
+	}
+
+	/**
+	 * Runs r at the given time, token allowing to remove it with
+	 * {@link #removeCallbacksAndMessages}.
+	 */
+	public final boolean postAtTime(Runnable r, Object token, long uptimeMillis) {
+		return sendMessageAtTime(Message.obtain(this, r, token), uptimeMillis);
+	}
+
+	public final void removeCallbacks(Runnable r) {
+		mQueue.removeCallbacks(this, r, null);
+	}
+
+	public final void removeCallbacks(Runnable r, Object token) {
+		mQueue.removeCallbacks(this, r, token);
+	}
+
+	public final boolean sendMessage(Message msg) {
+		return sendMessageAtTime(msg, System.currentTimeMillis());
+	}
+
+	public final boolean sendEmptyMessage(int what) {
+		return sendMessage(obtainMessage(what));
+	}
+
+	public final boolean sendEmptyMessageDelayed(int what, long delayMillis) {
+		return sendMessageDelayed(obtainMessage(what), delayMillis);
+	}
+
+	public final boolean sendMessageDelayed(Message msg, long delayMillis) {
+		if (delayMillis < 0) {
+			delayMillis = 0;
+		}
+		return sendMessageAtTime(msg, System.currentTimeMillis() + delayMillis);
+	}
+
+	public boolean sendMessageAtTime(Message msg, long uptimeMillis) {
+		msg.target = this;
+		return mQueue.enqueueMessage(msg, uptimeMillis);
+	}
+
+	public final void removeMessages(int what) {
+		mQueue.removeMessages(this, what, null);
+	}
+
+	public final void removeMessages(int what, Object object) {
+		mQueue.removeMessages(this, what, object);
+	}
+
+	/**
+	 * Removes the callbacks and messages whose object is token, all of them
+	 * if token is null.
+	 */
+	public final void removeCallbacksAndMessages(Object token) {
+		mQueue.removeCallbacksAndMessages(this, token);
+	}
+
+	public final boolean hasMessages(int what) {
+		return mQueue.hasMessages(this, what, null);
+	}
+
+	public final boolean hasMessages(int what, Object object) {
+		return mQueue.hasMessages(this, what, object);
+	}
+
+	public String toString() {
+		return "Handler{" + Integer.toHexString(System.identityHashCode(this)) + "}";
+	}
+}
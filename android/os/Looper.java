@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2006 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.os;
+
+import java.awt.EventQueue;
+
+/**
+ * The message loop of the user interface thread. Unlike Android there is a
+ * single looper, backed by the AWT event thread the display runs on: its
+ * messages are dispatched from the AWT event queue, there is no loop() to
+ * call.
+ */
+public final class Looper {
+
+	private static Looper sMainLooper = null;
+
+	private final MessageQueue mQueue = new MessageQueue();
+
+	private Looper() {
+	}
+
+	/**
+	 * The looper of the user interface thread.
+	 */
+	public static synchronized Looper getMainLooper() {
+		if (sMainLooper == null) {
+			sMainLooper = new Looper();
+		}
+		return sMainLooper;
+	}
+
+	/**
+	 * The looper of the calling thread, null unless it is the AWT event
+	 * thread.
+	 */
+	public static Looper myLooper() {
+		return EventQueue.isDispatchThread() ? getMainLooper() : null;
+	}
+
+	public MessageQueue getQueue() {
+		return mQueue;
+	}
+
+	public String toString() {
+		return "Looper{" + Integer.toHexString(System.identityHashCode(this)) + "}";
+	}
+}
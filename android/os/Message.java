@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2006 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.os;
+
+/**
+ * A message sent to a {@link Handler}, holding either a Runnable to run or
+ * a code and arguments for {@link Handler#handleMessage}. Get them from
+ * {@link #obtain()} or {@link Handler#obtainMessage()}, they are recycled
+ * once handled.
+ */
+public final class Message {
+
+	private final static int MAX_POOL_SIZE = 32;
+
+	private static final Object sPoolLock = new Object();
+	private static Message sPool = null;
+	private static int sPoolSize = 0;
+
+	/**
+	 * User-defined message code.
+	 */
+	public int what;
+
+	public int arg1;
+
+	public int arg2;
+
+	public Object obj;
+
+	// set by the handler sending it
+	Handler target;
+	Runnable callback;
+
+	// due time, and order of arrival for equal times
+	long when;
+	long seq;
+
+	// position in the queue heap, -1 when not queued
+	int heapIndex = -1;
+
+	private Message next;
+
+	public Message() {
+	}
+
+	/**
+	 * Returns a message from the pool, or a new one if it is empty.
+	 */
+	public static Message obtain() {
+		synchronized (sPoolLock) {
+			if (sPool != null) {
+				final Message m = sPool;
+				sPool = m.next;
+				m.next = null;
+				sPoolSize--;
+				return m;
+			}
+		}
+		return new Message();
+	}
+
+	public static Message obtain(Handler h) {
+		final Message m = obtain();
+		m.target = h;
+		return m;
+	}
+
+	public static Message obtain(Handler h, int what) {
+		final Message m = obtain(h);
+		m.what = what;
+		return m;
+	}
+
+	public static Message obtain(Handler h, int what, Object obj) {
+		final Message m = obtain(h, what);
+		m.obj = obj;
+		return m;
+	}
+
+	public static Message obtain(Handler h, int what, int arg1, int arg2, Object obj) {
+		final Message m = obtain(h, what, obj);
+		m.arg1 = arg1;
+		m.arg2 = arg2;
+		return m;
+	}
+
+	static Message obtain(Handler h, Runnable callback, Object token) {
+		final Message m = obtain(h, 0, token);
+		m.callback = callback;
+		return m;
+	}
+
+	/**
+	 * Gives the message back to the pool. It must not be used afterwards.
+	 */
+	public void recycle() {
+		what = 0;
+		arg1 = 0;
+		arg2 = 0;
+		obj = null;
+		target = null;
+		callback = null;
+		when = 0;
+		seq = 0;
+		heapIndex = -1;
+
+		synchronized (sPoolLock) {
+			if (sPoolSize < MAX_POOL_SIZE) {
+				next = sPool;
+				sPool = this;
+				sPoolSize++;
+			}
+		}
+	}
+
+	public Handler getTarget() {
+		return target;
+	}
+
+	public void setTarget(Handler target) {
+		this.target = target;
+	}
+
+	public Runnable getCallback() {
+		return callback;
+	}
+
+	/**
+	 * The time the message is due, in the {@link System#currentTimeMillis()}
+	 * time base.
+	 */
+	public long getWhen() {
+		return when;
+	}
+
+	/**
+	 * Sends the message to its target handler.
+	 */
+	public void sendToTarget() {
+		target.sendMessage(this);
+	}
+
+	public String toString() {
+		return "{ what=" + what + " when=" + when
+				+ (callback != null ? " callback=" + callback : "")
+				+ (obj != null ? " obj=" + obj : "") + " }";
+	}
+}
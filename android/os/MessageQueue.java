@@ -0,0 +1,325 @@
+/*
+ * Copyright (C) 2006 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.os;
+
+import java.awt.EventQueue;
+import java.util.Hashtable;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.Vector;
+
+/**
+ * The messages of a {@link Looper}, in a binary heap ordered by due time,
+ * messages due at the same time keeping their order of arrival. Adding a
+ * message and removing the ones posting a given Runnable take O(log n).
+ *
+ * The messages are run on the AWT event thread: when a message is due, a
+ * single drain is posted to the AWT event queue and runs every message due
+ * by then. A single timer thread waits for the next due time.
+ */
+public final class MessageQueue {
+
+	private Message[] mHeap = new Message[16];
+	private int mSize = 0;
+	private long mNextSeq = 0;
+
+	// Runnable -> Vector of the queued messages running it
+	private final Hashtable mCallbacks = new Hashtable();
+
+	private Timer mTimer = null;
+	private TimerTask mWakeTask = null;
+	private long mWakeTime = Long.MAX_VALUE;
+	private boolean mDrainPosted = false;
+
+	private final Runnable mDrain = new Runnable() {
+		public void run() {
+			drain();
+		}
+	};
+
+	MessageQueue() {
+	}
+
+	synchronized boolean enqueueMessage(Message msg, long when) {
+		if (msg.heapIndex >= 0) {
+			throw new IllegalStateException(msg + " is already queued");
+		}
+
+		msg.when = when;
+		msg.seq = mNextSeq++;
+
+		if (mSize == mHeap.length) {
+			final Message[] heap = new Message[mSize * 2];
+			System.arraycopy(mHeap, 0, heap, 0, mSize);
+			mHeap = heap;
+		}
+		mHeap[mSize] = msg;
+		msg.heapIndex = mSize;
+		mSize++;
+		siftUp(msg.heapIndex);
+
+		if (msg.callback != null) {
+			Vector messages = (Vector) mCallbacks.get(msg.callback);
+			if (messages == null) {
+				messages = new Vector(1);
+				mCallbacks.put(msg.callback, messages);
+			}
+			messages.addElement(msg);
+		}
+
+		if (mHeap[0] == msg) {
+			scheduleWake();
+		}
+		return true;
+	}
+
+	/**
+	 * Number of queued messages.
+	 */
+	public synchronized int size() {
+		return mSize;
+	}
+
+	synchronized boolean hasMessages(Handler h, int what, Object object) {
+		for (int i = 0; i < mSize; i++) {
+			final Message msg = mHeap[i];
+			if (msg.target == h && msg.callback == null && msg.what == what
+					&& (object == null || msg.obj == object)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Removes the messages of h running r, with the given token unless it is
+	 * null.
+	 */
+	synchronized void removeCallbacks(Handler h, Runnable r, Object token) {
+		final Vector messages = (Vector) mCallbacks.get(r);
+		if (messages == null) {
+			return;
+		}
+
+		for (int i = messages.size() - 1; i >= 0; i--) {
+			final Message msg = (Message) messages.elementAt(i);
+			if (msg.target == h && (token == null || msg.obj == token)) {
+				remove(msg);
+				msg.recycle();
+			}
+		}
+	}
+
+	/**
+	 * Removes the messages of h with the code what, and the given object
+	 * unless it is null. This scans the whole queue.
+	 */
+	synchronized void removeMessages(Handler h, int what, Object object) {
+		final Message[] matches = new Message[mSize];
+		int count = 0;
+		for (int i = 0; i < mSize; i++) {
+			final Message msg = mHeap[i];
+			if (msg.target == h && msg.callback == null && msg.what == what
+					&& (object == null || msg.obj == object)) {
+				matches[count++] = msg;
+			}
+		}
+		removeAll(matches, count);
+	}
+
+	/**
+	 * Removes the messages and callbacks of h whose object is token, or all
+	 * of them if token is null. This scans the whole queue.
+	 */
+	synchronized void removeCallbacksAndMessages(Handler h, Object token) {
+		final Message[] matches = new Message[mSize];
+		int count = 0;
+		for (int i = 0; i < mSize; i++) {
+			final Message msg = mHeap[i];
+			if (msg.target == h && (token == null || msg.obj == token)) {
+				matches[count++] = msg;
+			}
+		}
+		removeAll(matches, count);
+	}
+
+	/**
+	 * Removes messages found by a scan, a removal moving the others in the
+	 * heap.
+	 */
+	private void removeAll(Message[] messages, int count) {
+		for (int i = 0; i < count; i++) {
+			remove(messages[i]);
+			messages[i].recycle();
+		}
+	}
+
+	/**
+	 * Runs the messages due when it starts, on the AWT event thread. The
+	 * messages they send are left to the next drain, even those due now.
+	 */
+	void drain() {
+		final long now = System.currentTimeMillis();
+		final long lastSeq;
+
+		synchronized (this) {
+			mDrainPosted = false;
+			lastSeq = mNextSeq;
+		}
+
+		try {
+			while (true) {
+				final Message msg;
+				synchronized (this) {
+					if (mSize == 0 || mHeap[0].when > now || mHeap[0].seq >= lastSeq) {
+						break;
+					}
+					msg = mHeap[0];
+					remove(msg);
+				}
+
+				msg.target.dispatchMessage(msg);
+				msg.recycle();
+			}
+		}
+		finally {
+			synchronized (this) {
+				scheduleWake();
+			}
+		}
+	}
+
+	private void remove(Message msg) {
+		final int index = msg.heapIndex;
+		mSize--;
+		if (index != mSize) {
+			final Message last = mHeap[mSize];
+			mHeap[index] = last;
+			last.heapIndex = index;
+			siftDown(index);
+			siftUp(last.heapIndex);
+		}
+		mHeap[mSize] = null;
+		msg.heapIndex = -1;
+
+		if (msg.callback != null) {
+			final Vector messages = (Vector) mCallbacks.get(msg.callback);
+			if (messages != null) {
+				messages.removeElement(msg);
+				if (messages.isEmpty()) {
+					mCallbacks.remove(msg.callback);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Makes sure a drain runs when the first message is due.
+	 */
+	private void scheduleWake() {
+		if (mSize == 0) {
+			cancelWake();
+			return;
+		}
+
+		final long when = mHeap[0].when;
+		final long delay = when - System.currentTimeMillis();
+
+		if (delay <= 0) {
+			cancelWake();
+			postDrain();
+			return;
+		}
+
+		if (mWakeTask != null && mWakeTime <= when) {
+			return;
+		}
+
+		cancelWake();
+		if (mTimer == null) {
+			mTimer = new Timer(true);
+		}
+		mWakeTask = new TimerTask() {
+			public void run() {
+				synchronized (MessageQueue.this) {
+					if (mWakeTask == this) {
+						mWakeTask = null;
+						mWakeTime = Long.MAX_VALUE;
+						postDrain();
+					}
+				}
+			}
+		};
+		mWakeTime = when;
+		mTimer.schedule(mWakeTask, delay);
+	}
+
+	private void cancelWake() {
+		if (mWakeTask != null) {
+			mWakeTask.cancel();
+			mWakeTask = null;
+			mWakeTime = Long.MAX_VALUE;
+		}
+	}
+
+	private void postDrain() {
+		if (!mDrainPosted) {
+			mDrainPosted = true;
+			EventQueue.invokeLater(mDrain);
+		}
+	}
+
+	private boolean isBefore(Message a, Message b) {
+		return a.when < b.when || (a.when == b.when && a.seq < b.seq);
+	}
+
+	private void siftUp(int index) {
+		final Message msg = mHeap[index];
+		while (index > 0) {
+			final int parent = (index - 1) / 2;
+			if (!isBefore(msg, mHeap[parent])) {
+				break;
+			}
+			mHeap[index] = mHeap[parent];
+			mHeap[index].heapIndex = index;
+			index = parent;
+		}
+		mHeap[index] = msg;
+		msg.heapIndex = index;
+	}
+
+	private void siftDown(int index) {
+		final Message msg = mHeap[index];
+		while (true) {
+			int child = 2 * index + 1;
+			if (child >= mSize) {
+				break;
+			}
+			if (child + 1 < mSize && isBefore(mHeap[child + 1], mHeap[child])) {
+				child++;
+			}
+			if (!isBefore(mHeap[child], msg)) {
+				break;
+			}
+			mHeap[index] = mHeap[child];
+			mHeap[index].heapIndex = index;
+			index = child;
+		}
+		mHeap[index] = msg;
+		msg.heapIndex = index;
+	}
+}
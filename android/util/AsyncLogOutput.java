@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) 2006 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Logs through another output from a background thread. The calling thread
+ * only stores the level, the tag, the message object and the time in a
+ * bounded ring buffer: the message is converted to a string and written by
+ * the background thread.
+ *
+ * When the buffer is full the new records are dropped and counted, the
+ * number of records lost is logged once there is room again.
+ *
+ * A message object is formatted after the call returned, it should not be
+ * changed afterwards.
+ */
+public class AsyncLogOutput implements LogOutput, Runnable {
+
+	private final static String TAG = "AsyncLogOutput";
+
+	public final static int DEFAULT_CAPACITY = 512;
+
+	// records formatted per lock of the buffer by the background thread
+	private final static int BATCH_SIZE = 32;
+
+	private final LogOutput mTarget;
+	private final int mCapacity;
+
+	// the records, mCount of them from mHead
+	private final int[] mLevels;
+	private final String[] mTags;
+	private final Object[] mMessages;
+	private final Throwable[] mThrowables;
+	private final long[] mTimes;
+	private int mHead = 0;
+	private int mCount = 0;
+
+	// dropped since the last report, and since the output was created
+	private int mDropped = 0;
+	private int mTotalDropped = 0;
+
+	// the background thread is writing records taken from the buffer
+	private boolean mWriting = false;
+	private boolean mClosed = false;
+
+	private final long mStartTime = System.currentTimeMillis();
+	private final Thread mThread;
+
+	public AsyncLogOutput(LogOutput target) {
+		this(target, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param target the output the records are written to, only called from
+	 *        the background thread
+	 * @param capacity number of records the buffer holds
+	 */
+	public AsyncLogOutput(LogOutput target, int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacity " + capacity);
+		}
+
+		mTarget = target;
+		mCapacity = capacity;
+		mLevels = new int[capacity];
+		mTags = new String[capacity];
+		mMessages = new Object[capacity];
+		mThrowables = new Throwable[capacity];
+		mTimes = new long[capacity];
+
+		mThread = new Thread(this, TAG);
+		mThread.setDaemon(true);
+		mThread.setPriority(Thread.MIN_PRIORITY);
+		mThread.start();
+	}
+
+	public void log(int logLevel, String TAG, Object message, Throwable t) {
+		enqueue(logLevel, TAG, message, t);
+	}
+
+	public void log(int logLevel, String TAG, Object message) {
+		enqueue(logLevel, TAG, message, null);
+	}
+
+	private void enqueue(int logLevel, String tag, Object message, Throwable t) {
+		final long time = System.currentTimeMillis();
+
+		synchronized (this) {
+			if (mClosed) {
+				return;
+			}
+
+			if (mCount == mCapacity) {
+				mDropped++;
+				mTotalDropped++;
+				return;
+			}
+
+			final int index = (mHead + mCount) % mCapacity;
+			mLevels[index] = logLevel;
+			mTags[index] = tag;
+			mMessages[index] = message;
+			mThrowables[index] = t;
+			mTimes[index] = time;
+
+			// the background thread only waits on an empty buffer
+			if (mCount++ == 0) {
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Number of records dropped because the buffer was full.
+	 */
+	public synchronized int getDroppedCount() {
+		return mTotalDropped;
+	}
+
+	/**
+	 * Waits until every record logged so far was written.
+	 */
+	public synchronized void flush() throws InterruptedException {
+		while ((mCount > 0 || mWriting) && mThread.isAlive()) {
+			wait();
+		}
+	}
+
+	/**
+	 * Writes the records left and stops the background thread, the records
+	 * logged afterwards are dropped.
+	 */
+	public void close() throws InterruptedException {
+		synchronized (this) {
+			mClosed = true;
+			notifyAll();
+		}
+		mThread.join();
+	}
+
+	public void run() {
+		final int[] levels = new int[BATCH_SIZE];
+		final String[] tags = new String[BATCH_SIZE];
+		final Object[] messages = new Object[BATCH_SIZE];
+		final Throwable[] throwables = new Throwable[BATCH_SIZE];
+		final long[] times = new long[BATCH_SIZE];
+		final StringBuffer sb = new StringBuffer();
+
+		while (true) {
+			int count;
+			int dropped;
+
+			synchronized (this) {
+				mWriting = false;
+				notifyAll();
+
+				while (mCount == 0 && !mClosed) {
+					try {
+						wait();
+					}
+					catch (InterruptedException e) {
+						// checked again
+					}
+				}
+
+				if (mCount == 0) {
+					return;
+				}
+
+				count = Math.min(mCount, BATCH_SIZE);
+				for (int i = 0; i < count; i++) {
+					final int index = (mHead + i) % mCapacity;
+					levels[i] = mLevels[index];
+					tags[i] = mTags[index];
+					messages[i] = mMessages[index];
+					throwables[i] = mThrowables[index];
+					times[i] = mTimes[index];
+
+					// not kept alive by the buffer
+					mMessages[index] = null;
+					mThrowables[index] = null;
+				}
+				mHead = (mHead + count) % mCapacity;
+				mCount -= count;
+
+				dropped = mDropped;
+				mDropped = 0;
+				mWriting = true;
+			}
+
+			for (int i = 0; i < count; i++) {
+				try {
+					sb.setLength(0);
+					appendTime(sb, times[i] - mStartTime);
+					sb.append(messages[i]);
+
+					if (throwables[i] != null) {
+						mTarget.log(levels[i], tags[i], sb.toString(), throwables[i]);
+					}
+					else {
+						mTarget.log(levels[i], tags[i], sb.toString());
+					}
+				}
+				catch (RuntimeException e) {
+					// a failing toString() or output doesn't stop the others
+				}
+
+				messages[i] = null;
+				throwables[i] = null;
+			}
+
+			if (dropped > 0) {
+				mTarget.log(Log.LEVEL_WARN, TAG, dropped + " records dropped, the log buffer was full");
+			}
+		}
+	}
+
+	/**
+	 * Appends seconds.milliseconds and a space.
+	 */
+	private static void appendTime(StringBuffer sb, long millis) {
+		sb.append(millis / 1000).append('.');
+		final long rest = millis % 1000;
+		if (rest < 100) {
+			sb.append('0');
+		}
+		if (rest < 10) {
+			sb.append('0');
+		}
+		sb.append(rest).append(' ');
+	}
+
+	public InputStream getInputStream() throws IOException {
+		return mTarget.getInputStream();
+	}
+
+	public void releaseInputStream() throws IOException {
+		mTarget.releaseInputStream();
+	}
+}
@@ -1,5 +1,7 @@
 package android.util;
 
+import java.util.Hashtable;
+
 /**
  * file..........: Log.java
  * package.......: pl.polidea.flow.log
@@ -51,6 +53,11 @@ public final class Log {
 													 // usage : if(LOG_LEVEL>LEVEL_DEBUG) Log.d(TAG, "debug log")
 	
 	private static LogOutput mInstance = null;
+
+	// runtime level, never below LOG_LEVEL
+	private static volatile int sLevel = Config.DEBUG ? LEVEL_TRACE : LEVEL_INFO;
+	// String -> Integer, levels of the tags set apart, null if none
+	private static volatile Hashtable sTagLevels = null;
 	
 	private Log() {
 	}
@@ -66,58 +73,117 @@ public final class Log {
 		if(logOutput != null) mInstance = logOutput;
 	}
 
+	/**
+	 * Sets the lowest level logged for the tags without a level of their
+	 * own. Messages below {@link #LOG_LEVEL} are never logged.
+	 */
+	public final static void setLevel(int level) {
+		sLevel = level;
+	}
+
+	public final static int getLevel() {
+		return sLevel;
+	}
+
+	/**
+	 * Sets the lowest level logged for a tag, whatever the global level.
+	 */
+	public final static synchronized void setLevel(String TAG, int level) {
+		final Hashtable tagLevels = sTagLevels != null ? (Hashtable) sTagLevels.clone() : new Hashtable();
+		tagLevels.put(TAG, new Integer(level));
+		sTagLevels = tagLevels;
+	}
+
+	/**
+	 * Goes back to the global level for a tag.
+	 */
+	public final static synchronized void clearLevel(String TAG) {
+		if (sTagLevels != null && sTagLevels.containsKey(TAG)) {
+			final Hashtable tagLevels = (Hashtable) sTagLevels.clone();
+			tagLevels.remove(TAG);
+			sTagLevels = tagLevels.isEmpty() ? null : tagLevels;
+		}
+	}
+
+	/**
+	 * Whether a message of the given level and tag would be logged. Test it
+	 * before building a message which is costly to format, in code run on
+	 * every frame for instance:
+	 *
+	 * <pre>
+	 * if (Log.isLoggable(TAG, Log.LEVEL_DEBUG)) {
+	 *     Log.d(TAG, "layout " + left + " " + top);
+	 * }
+	 * </pre>
+	 */
+	public final static boolean isLoggable(String TAG, int level) {
+		if (level < LOG_LEVEL) {
+			return false;
+		}
+
+		final Hashtable tagLevels = sTagLevels;
+		if (tagLevels != null && TAG != null) {
+			final Integer tagLevel = (Integer) tagLevels.get(TAG);
+			if (tagLevel != null) {
+				return level >= tagLevel.intValue();
+			}
+		}
+
+		return level >= sLevel;
+	}
+
 	public final static void d(String TAG, Object message) {
-		if(LOG_LEVEL<=LEVEL_DEBUG) instance().log(LEVEL_DEBUG, TAG, message);
+		if(isLoggable(TAG, LEVEL_DEBUG)) instance().log(LEVEL_DEBUG, TAG, message);
 	}
 	
 	public final static void d(String TAG, Object message, Throwable t) {
-		if(LOG_LEVEL<=LEVEL_DEBUG) instance().log(LEVEL_DEBUG, TAG, message);
+		if(isLoggable(TAG, LEVEL_DEBUG)) instance().log(LEVEL_DEBUG, TAG, message);
 	}
 	
 	
 	public final static void w(String TAG, Object message) {
-		if(LOG_LEVEL<=LEVEL_WARN) instance().log(LEVEL_WARN, TAG, message);
+		if(isLoggable(TAG, LEVEL_WARN)) instance().log(LEVEL_WARN, TAG, message);
 	}
 	
 	public final static void w(String TAG, Object message, Throwable t) {
-		if(LOG_LEVEL<=LEVEL_WARN) instance().log(LEVEL_DEBUG, TAG, message, t);
+		if(isLoggable(TAG, LEVEL_WARN)) instance().log(LEVEL_DEBUG, TAG, message, t);
 	}
 	
 	
 	public final static void i(String TAG, Object message) {
-		if(LOG_LEVEL<=LEVEL_INFO) instance().log(LEVEL_INFO, TAG, message);
+		if(isLoggable(TAG, LEVEL_INFO)) instance().log(LEVEL_INFO, TAG, message);
 	}
 	
 	public final static void i(String TAG, Object message, Throwable t) {
-		if(LOG_LEVEL<=LEVEL_INFO) instance().log(LEVEL_INFO, TAG, message, t);
+		if(isLoggable(TAG, LEVEL_INFO)) instance().log(LEVEL_INFO, TAG, message, t);
 	}
 	
 	
 	public final static void e(String TAG, Object message) {
-		if(LOG_LEVEL<=LEVEL_ERROR) instance().log(LEVEL_ERROR, TAG, message);
+		if(isLoggable(TAG, LEVEL_ERROR)) instance().log(LEVEL_ERROR, TAG, message);
 	}
 	
 	
 	public final static void e(String TAG, Object message, Throwable t) {
-		if(LOG_LEVEL<=LEVEL_ERROR) instance().log(LEVEL_ERROR, TAG, message, t);
+		if(isLoggable(TAG, LEVEL_ERROR)) instance().log(LEVEL_ERROR, TAG, message, t);
 	}
 	
 	
 	public final static void f(String TAG, Object message) {
-		if(LOG_LEVEL<=LEVEL_FATAL) instance().log(LEVEL_FATAL, TAG, message);
+		if(isLoggable(TAG, LEVEL_FATAL)) instance().log(LEVEL_FATAL, TAG, message);
 	}
 	
 	public final static void f(String TAG, Object message, Throwable t) {
-		if(LOG_LEVEL<=LEVEL_FATAL) instance().log(LEVEL_ERROR, TAG, message, t);
+		if(isLoggable(TAG, LEVEL_FATAL)) instance().log(LEVEL_ERROR, TAG, message, t);
 	}
 	
 	
 	public final static void t(String TAG, Object message) {
-		if(LOG_LEVEL<=LEVEL_TRACE) instance().log(LEVEL_TRACE, TAG, message);
+		if(isLoggable(TAG, LEVEL_TRACE)) instance().log(LEVEL_TRACE, TAG, message);
 	}
 	
 	public final static void t(String TAG, Object message, Throwable t) {
-		if(LOG_LEVEL<=LEVEL_TRACE) instance().log(LEVEL_TRACE, TAG, message, t);
+		if(isLoggable(TAG, LEVEL_TRACE)) instance().log(LEVEL_TRACE, TAG, message, t);
 	}
 
 }
@@ -0,0 +1,300 @@
+/*
+ * Copyright (C) 2006 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.view;
+
+import java.util.Vector;
+
+import android.os.Handler;
+
+/**
+ * Drives the animations from the frames. An animation registers a
+ * {@link FrameCallback}, the callbacks due are run at the start of the next
+ * frame, all of them with the same frame time, and the views they invalidate
+ * are redrawn by the traversal of that frame.
+ *
+ * The frame time comes from a {@link Clock}, the system clock unless
+ * {@link #setClock} replaced it, e.g. by a {@link VirtualClock} to run
+ * animations in virtual time. It never goes backwards.
+ *
+ * On an e-ink panel every intermediate frame of an animation costs a
+ * refresh: when {@link #setCollapsingAnimations collapsing}, the animations
+ * go straight to their final frame.
+ *
+ * Only to be used from the UI thread.
+ */
+public final class Choreographer {
+
+	/**
+	 * Called at the start of a frame.
+	 */
+	public interface FrameCallback {
+
+		/**
+		 * @param frameTimeMillis time of the frame, the same for every
+		 *        callback of the frame
+		 */
+		void doFrame(long frameTimeMillis);
+	}
+
+	/**
+	 * Time base of the frames, in milliseconds.
+	 */
+	public interface Clock {
+		long currentTimeMillis();
+	}
+
+	public final static Clock SYSTEM_CLOCK = new Clock() {
+		public long currentTimeMillis() {
+			return System.currentTimeMillis();
+		}
+	};
+
+	/**
+	 * A clock which only moves when told to.
+	 */
+	public static class VirtualClock implements Clock {
+
+		private long mTime;
+
+		public VirtualClock(long time) {
+			mTime = time;
+		}
+
+		public synchronized long currentTimeMillis() {
+			return mTime;
+		}
+
+		public synchronized void setTime(long time) {
+			mTime = time;
+		}
+
+		public synchronized void advance(long millis) {
+			mTime += millis;
+		}
+	}
+
+	private final static class CallbackRecord {
+		FrameCallback callback;
+		long dueTime;
+	}
+
+	private static Choreographer sInstance = null;
+
+	private Clock mClock = SYSTEM_CLOCK;
+	private Runnable mFrameRequester = null;
+	private boolean mCollapsingAnimations = false;
+
+	// CallbackRecord, the callbacks waiting for a frame
+	private final Vector mCallbacks = new Vector();
+	// CallbackRecord, the callbacks of the frame being run
+	private final Vector mRunning = new Vector();
+
+	private boolean mInFrame = false;
+	private long mFrameTime = Long.MIN_VALUE;
+	private long mLastFrameTime = Long.MIN_VALUE;
+	private int mFrameCount = 0;
+
+	private Handler mHandler = null;
+	private long mWakeTime = Long.MAX_VALUE;
+	private final Runnable mWake = new Runnable() {
+		public void run() {
+			mWakeTime = Long.MAX_VALUE;
+			scheduleFrame();
+		}
+	};
+
+	private Choreographer() {
+	}
+
+	public static synchronized Choreographer getInstance() {
+		if (sInstance == null) {
+			sInstance = new Choreographer();
+		}
+		return sInstance;
+	}
+
+	/**
+	 * Replaces the time base of the frames, null for the system clock. The
+	 * frame time still never goes backwards.
+	 */
+	public void setClock(Clock clock) {
+		mClock = clock != null ? clock : SYSTEM_CLOCK;
+	}
+
+	public Clock getClock() {
+		return mClock;
+	}
+
+	/**
+	 * Sets what asks for a frame when a callback is due, nothing asks for
+	 * one when it is null and the frames have to be run by hand.
+	 */
+	public void setFrameRequester(Runnable requester) {
+		mFrameRequester = requester;
+	}
+
+	/**
+	 * When true, animations show their final frame right away instead of
+	 * their intermediate frames. Looping animations stay where they are.
+	 */
+	public void setCollapsingAnimations(boolean collapsing) {
+		mCollapsingAnimations = collapsing;
+	}
+
+	public boolean isCollapsingAnimations() {
+		return mCollapsingAnimations;
+	}
+
+	/**
+	 * The time of the frame being run, or the current time of the clock
+	 * between frames, never less than the time of the last frame. Animations
+	 * measure their progress against it.
+	 */
+	public long getFrameTime() {
+		if (mInFrame) {
+			return mFrameTime;
+		}
+		return Math.max(mClock.currentTimeMillis(), mLastFrameTime);
+	}
+
+	/**
+	 * Number of frames run so far.
+	 */
+	public int getFrameCount() {
+		return mFrameCount;
+	}
+
+	/**
+	 * Runs the callback at the start of the next frame. A callback posted
+	 * during a frame waits for the following one.
+	 */
+	public void postFrameCallback(FrameCallback callback) {
+		postFrameCallbackDelayed(callback, 0);
+	}
+
+	/**
+	 * Runs the callback at the start of the first frame after the delay.
+	 */
+	public void postFrameCallbackDelayed(FrameCallback callback, long delayMillis) {
+		if (callback == null) {
+			throw new IllegalArgumentException("callback must not be null");
+		}
+
+		final CallbackRecord record = new CallbackRecord();
+		record.callback = callback;
+		record.dueTime = getFrameTime() + Math.max(delayMillis, 0);
+		mCallbacks.addElement(record);
+
+		if (!mInFrame) {
+			scheduleFrame();
+		}
+	}
+
+	/**
+	 * Removes every pending post of the callback, including the ones of the
+	 * frame being run which did not run yet.
+	 */
+	public void removeFrameCallback(FrameCallback callback) {
+		removeCallback(mCallbacks, callback);
+		removeCallback(mRunning, callback);
+	}
+
+	public boolean hasFrameCallbacks() {
+		return !mCallbacks.isEmpty();
+	}
+
+	/**
+	 * Starts a frame: the frame time is taken from the clock and the
+	 * callbacks due by then are run. The traversal of the frame has to
+	 * follow, then {@link #endFrame()}.
+	 */
+	public void beginFrame() {
+		mFrameTime = Math.max(mClock.currentTimeMillis(), mLastFrameTime);
+		mLastFrameTime = mFrameTime;
+		mInFrame = true;
+		mFrameCount++;
+
+		for (int i = mCallbacks.size() - 1; i >= 0; i--) {
+			final CallbackRecord record = (CallbackRecord) mCallbacks.elementAt(i);
+			if (record.dueTime <= mFrameTime) {
+				mCallbacks.removeElementAt(i);
+				mRunning.insertElementAt(record, 0);
+			}
+		}
+
+		// in the order they were posted
+		while (!mRunning.isEmpty()) {
+			final CallbackRecord record = (CallbackRecord) mRunning.elementAt(0);
+			mRunning.removeElementAt(0);
+			record.callback.doFrame(mFrameTime);
+		}
+	}
+
+	/**
+	 * Ends the frame started by {@link #beginFrame()}, asks for the next one
+	 * if callbacks were posted meanwhile.
+	 */
+	public void endFrame() {
+		mInFrame = false;
+		mRunning.removeAllElements();
+		scheduleFrame();
+	}
+
+	public boolean isInFrame() {
+		return mInFrame;
+	}
+
+	/**
+	 * Asks for a frame now if a callback is due, or once the first one is.
+	 */
+	private void scheduleFrame() {
+		if (mCallbacks.isEmpty()) {
+			return;
+		}
+
+		long dueTime = Long.MAX_VALUE;
+		for (int i = 0; i < mCallbacks.size(); i++) {
+			dueTime = Math.min(dueTime, ((CallbackRecord) mCallbacks.elementAt(i)).dueTime);
+		}
+
+		final long delay = dueTime - getFrameTime();
+		if (delay <= 0) {
+			if (mFrameRequester != null) {
+				mFrameRequester.run();
+			}
+			return;
+		}
+
+		if (dueTime >= mWakeTime) {
+			return;
+		}
+		if (mHandler == null) {
+			mHandler = new Handler();
+		}
+		mHandler.removeCallbacks(mWake);
+		mHandler.postDelayed(mWake, delay);
+		mWakeTime = dueTime;
+	}
+
+	private static void removeCallback(Vector records, FrameCallback callback) {
+		for (int i = records.size() - 1; i >= 0; i--) {
+			if (((CallbackRecord) records.elementAt(i)).callback == callback) {
+				records.removeElementAt(i);
+			}
+		}
+	}
+}
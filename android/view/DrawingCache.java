@@ -0,0 +1,193 @@
+/*
+ * Copyright (C) 2006 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.view;
+
+import java.awt.Image;
+import java.util.Vector;
+
+import com.flowme.FlowDisplay;
+
+import android.graphics.Bitmap;
+import android.util.Log;
+
+/**
+ * Bookkeeping of the view drawing caches. All the caches share a global
+ * memory budget; when a new cache doesn't fit, the least recently drawn ones
+ * are destroyed until it does.
+ *
+ * In automatic mode, a view which has been redrawn a few times in a row
+ * without being invalidated (it only happened to lie in a damaged area) gets
+ * a drawing cache, dropped again as soon as the view is invalidated.
+ */
+public final class DrawingCache {
+
+	private final static String TAG = "DrawingCache";
+
+	/**
+	 * Default memory budget, in bytes.
+	 */
+	public final static int DEFAULT_BUDGET = 2 * 1024 * 1024;
+
+	/**
+	 * Bytes accounted per cached pixel, the worst case of a 32 bits image.
+	 */
+	public final static int BYTES_PER_PIXEL = 4;
+
+	/**
+	 * Number of consecutive redraws without invalidation before a view gets
+	 * an automatic cache.
+	 */
+	public final static int AUTO_CACHE_CLEAN_DRAWS = 3;
+
+	/**
+	 * Views smaller than this (in pixels) are cheaper to redraw than to cache.
+	 */
+	public final static int AUTO_CACHE_MIN_AREA = 64 * 64;
+
+	// views owning a cache, least recently drawn first
+	private static final Vector sViews = new Vector();
+
+	private static int sBudget = DEFAULT_BUDGET;
+	private static int sUsed = 0;
+	private static boolean sAutoCacheEnabled = false;
+
+	// statistics
+	private static int sHits = 0;
+	private static int sBuilds = 0;
+	private static int sEvictions = 0;
+
+	private DrawingCache() {
+	}
+
+	public static void setBudget(int bytes) {
+		sBudget = bytes < 0 ? 0 : bytes;
+		trimTo(sBudget);
+	}
+
+	public static int getBudget() {
+		return sBudget;
+	}
+
+	/**
+	 * Bytes currently held by the drawing caches.
+	 */
+	public static int getUsed() {
+		return sUsed;
+	}
+
+	public static void setAutoCacheEnabled(boolean enabled) {
+		sAutoCacheEnabled = enabled;
+	}
+
+	public static boolean isAutoCacheEnabled() {
+		return sAutoCacheEnabled;
+	}
+
+	public static int getHitCount() {
+		return sHits;
+	}
+
+	public static int getBuildCount() {
+		return sBuilds;
+	}
+
+	public static int getEvictionCount() {
+		return sEvictions;
+	}
+
+	/**
+	 * Destroys every drawing cache.
+	 */
+	public static void clear() {
+		trimTo(0);
+	}
+
+	static int sizeOf(int width, int height) {
+		return width * height * BYTES_PER_PIXEL;
+	}
+
+	/**
+	 * Allocates a cache image for the view, evicting older caches to make
+	 * room for it. The view's previous cache must have been released.
+	 *
+	 * @return null if the image is bigger than the whole budget
+	 */
+	static Bitmap allocate(View view, int width, int height, boolean translucent) {
+
+		final int size = sizeOf(width, height);
+		if (size > sBudget) {
+			return null;
+		}
+
+		trimTo(sBudget - size);
+
+		final Image image = FlowDisplay.instance().createCompatibleImage(width, height, translucent);
+		if (image == null) {
+			return null;
+		}
+
+		sViews.addElement(view);
+		sUsed += size;
+
+		return new Bitmap(image, true, null);
+	}
+
+	/**
+	 * Forgets about the view's cache, called by the view when it drops it.
+	 */
+	static void release(View view, Bitmap cache) {
+		if (sViews.removeElement(view)) {
+			sUsed -= sizeOf(cache.getWidth(), cache.getHeight());
+		}
+	}
+
+	/**
+	 * The view has just been drawn from its cache.
+	 */
+	static void hit(View view) {
+		sHits++;
+		touch(view);
+	}
+
+	/**
+	 * The view's cache has just been (re)built.
+	 */
+	static void built(View view) {
+		sBuilds++;
+		touch(view);
+	}
+
+	private static void touch(View view) {
+		// most recently drawn last
+		final int last = sViews.size() - 1;
+		if (last >= 0 && sViews.elementAt(last) != view && sViews.removeElement(view)) {
+			sViews.addElement(view);
+		}
+	}
+
+	private static void trimTo(int bytes) {
+		while (sUsed > bytes && !sViews.isEmpty()) {
+			final View view = (View) sViews.firstElement();
+			view.destroyDrawingCache();
+			sEvictions++;
+
+			if (Log.isLoggable(TAG, Log.LEVEL_DEBUG)) {
+				Log.d(TAG, "evicted " + view + ", " + sUsed + "/" + sBudget + " bytes used");
+			}
+		}
+	}
+}
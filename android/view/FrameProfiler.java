@@ -0,0 +1,508 @@
+/*
+ * Copyright (C) 2006 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.view;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+/**
+ * Records when each frame of a {@link ViewRoot} reached its steps, from the
+ * input which caused it to the screen update, into a ring buffer of the last
+ * frames. See {@link ViewRoot#setFrameProfilingEnabled}.
+ *
+ * A frame starts with a traversal and ends when it is flushed to the
+ * screen, or when the next one starts for frames which drew nothing. The
+ * durations between the steps are summarized as percentiles, drawn as an
+ * overlay on top of the views or written to a text file.
+ */
+public final class FrameProfiler {
+
+	/** The first input event delivered since the last frame. */
+	public final static int MARK_INPUT = 0;
+	public final static int MARK_TRAVERSAL_START = 1;
+	public final static int MARK_MEASURE_END = 2;
+	public final static int MARK_LAYOUT_END = 3;
+	/** The last draw of the views during the frame. */
+	public final static int MARK_DRAW_END = 4;
+	/** The rendered area was copied to the screen. */
+	public final static int MARK_FLUSH = 5;
+
+	private final static int MARK_COUNT = 6;
+
+	/** Traversal start to measure end, frames which measured only. */
+	public final static int INTERVAL_MEASURE = 0;
+	/** Measure end to layout end. */
+	public final static int INTERVAL_LAYOUT = 1;
+	/** Traversal or layout end to draw end, frames which drew only. */
+	public final static int INTERVAL_DRAW = 2;
+	/** Draw end to flush. */
+	public final static int INTERVAL_FLUSH = 3;
+	/** Traversal start to the last step reached. */
+	public final static int INTERVAL_FRAME = 4;
+	/** Input to flush, frames caused by an input event only. */
+	public final static int INTERVAL_LATENCY = 5;
+
+	private final static int INTERVAL_COUNT = 6;
+	private final static String[] INTERVAL_NAMES = {
+		"measure", "layout", "draw", "flush", "frame", "latency"
+	};
+
+	private final static int[] PERCENTILES = { 50, 90, 99 };
+
+	// upper bounds of the histogram buckets, in milliseconds
+	private final static int[] HISTOGRAM_BOUNDS = { 1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000 };
+	private final static int HISTOGRAM_WIDTH = 40;
+
+	public final static int DEFAULT_CAPACITY = 256;
+
+	/** Time of the steps a frame didn't reach. */
+	public final static long NOT_REACHED = Long.MIN_VALUE;
+
+	// MARK_COUNT marks per frame
+	private final long[] mFrames;
+	private final int mCapacity;
+	// frames committed so far, the next one goes to mFrameCount % mCapacity
+	private int mFrameCount = 0;
+
+	private final long[] mCurrent = new long[MARK_COUNT];
+	private boolean mFrameOpen = false;
+	// the frame was drawn, its steps are over until it is flushed
+	private boolean mWaitingForFlush = false;
+	private long mPendingInput = NOT_REACHED;
+
+	// overlay, recomputed after a frame was committed
+	private final Paint mOverlayPaint = new Paint();
+	private final Paint.FontMetricsInt mOverlayMetrics = new Paint.FontMetricsInt();
+	private final Rect mOverlayBounds = new Rect();
+	// what the overlay covered when last drawn, empty before
+	private final Rect mDrawnOverlayBounds = new Rect();
+	private String[] mOverlayLines = null;
+
+	public FrameProfiler() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param capacity number of frames kept, the oldest ones are dropped
+	 */
+	public FrameProfiler(int capacity) {
+		if (capacity <= 0) {
+			throw new IllegalArgumentException("capacity " + capacity);
+		}
+		mCapacity = capacity;
+		mFrames = new long[capacity * MARK_COUNT];
+	}
+
+	void markInput() {
+		if (mPendingInput == NOT_REACHED) {
+			mPendingInput = TraversalStats.now();
+		}
+	}
+
+	/**
+	 * Starts a frame, unless the current one was drawn and waits to be
+	 * flushed: the traversal is then the one run by the display before
+	 * flushing it, and what it does is left out.
+	 */
+	void beginFrame() {
+		if (mFrameOpen) {
+			if (mCurrent[MARK_DRAW_END] != NOT_REACHED) {
+				mWaitingForFlush = true;
+				return;
+			}
+			commitFrame();
+		}
+
+		for (int i = 0; i < MARK_COUNT; i++) {
+			mCurrent[i] = NOT_REACHED;
+		}
+		mCurrent[MARK_INPUT] = mPendingInput;
+		mCurrent[MARK_TRAVERSAL_START] = TraversalStats.now();
+		mPendingInput = NOT_REACHED;
+		mFrameOpen = true;
+	}
+
+	/**
+	 * Records a step of the current frame, ignored between frames.
+	 */
+	void mark(int mark) {
+		if (mFrameOpen && !mWaitingForFlush) {
+			mCurrent[mark] = TraversalStats.now();
+		}
+	}
+
+	void markFlush() {
+		if (mFrameOpen) {
+			mCurrent[MARK_FLUSH] = TraversalStats.now();
+			commitFrame();
+		}
+	}
+
+	private void commitFrame() {
+		System.arraycopy(mCurrent, 0, mFrames, (mFrameCount % mCapacity) * MARK_COUNT, MARK_COUNT);
+		mFrameCount++;
+		mFrameOpen = false;
+		mWaitingForFlush = false;
+		mOverlayLines = null;
+	}
+
+	/**
+	 * Number of frames recorded since the profiler was created or reset,
+	 * only the last {@link #getCapacity()} ones are kept.
+	 */
+	public int getFrameCount() {
+		return mFrameCount;
+	}
+
+	public int getCapacity() {
+		return mCapacity;
+	}
+
+	/**
+	 * Drops every recorded frame.
+	 */
+	public void reset() {
+		mFrameCount = 0;
+		mFrameOpen = false;
+		mWaitingForFlush = false;
+		mPendingInput = NOT_REACHED;
+		mOverlayLines = null;
+	}
+
+	/**
+	 * The time a kept frame reached a step, in nanoseconds from an arbitrary
+	 * origin, {@link #NOT_REACHED} if it didn't.
+	 *
+	 * @param frame 0 for the oldest kept frame
+	 */
+	public long getMark(int frame, int mark) {
+		return mFrames[getFrameOffset(frame) + mark];
+	}
+
+	/**
+	 * Number of kept frames.
+	 */
+	public int getKeptFrameCount() {
+		return Math.min(mFrameCount, mCapacity);
+	}
+
+	/**
+	 * The given percentile of an interval over the kept frames, in
+	 * nanoseconds, -1 if no kept frame has the interval.
+	 *
+	 * @param percentile from 1 to 100
+	 */
+	public long getPercentile(int interval, int percentile) {
+		final long[] durations = getSortedDurations(interval);
+		if (durations.length == 0) {
+			return -1;
+		}
+		return durations[percentileIndex(durations.length, percentile)];
+	}
+
+	/**
+	 * Duration of an interval of a kept frame, in nanoseconds, -1 if the frame
+	 * has no such interval.
+	 *
+	 * @param frame 0 for the oldest kept frame
+	 */
+	public long getDuration(int frame, int interval) {
+		final int offset = getFrameOffset(frame);
+		final long[] frames = mFrames;
+		long from = NOT_REACHED;
+		long to = NOT_REACHED;
+
+		switch (interval) {
+		case INTERVAL_MEASURE:
+			from = frames[offset + MARK_TRAVERSAL_START];
+			to = frames[offset + MARK_MEASURE_END];
+			break;
+		case INTERVAL_LAYOUT:
+			from = frames[offset + MARK_MEASURE_END];
+			to = frames[offset + MARK_LAYOUT_END];
+			break;
+		case INTERVAL_DRAW:
+			from = frames[offset + MARK_LAYOUT_END];
+			if (from == NOT_REACHED) {
+				from = frames[offset + MARK_TRAVERSAL_START];
+			}
+			to = frames[offset + MARK_DRAW_END];
+			break;
+		case INTERVAL_FLUSH:
+			from = frames[offset + MARK_DRAW_END];
+			to = frames[offset + MARK_FLUSH];
+			break;
+		case INTERVAL_FRAME:
+			from = frames[offset + MARK_TRAVERSAL_START];
+			for (int mark = MARK_FLUSH; mark > MARK_TRAVERSAL_START && to == NOT_REACHED; mark--) {
+				to = frames[offset + mark];
+			}
+			if (to == NOT_REACHED) {
+				to = from;
+			}
+			break;
+		case INTERVAL_LATENCY:
+			from = frames[offset + MARK_INPUT];
+			to = frames[offset + MARK_FLUSH];
+			break;
+		default:
+			throw new IllegalArgumentException("interval " + interval);
+		}
+
+		if (from == NOT_REACHED || to == NOT_REACHED) {
+			return -1;
+		}
+		return to - from;
+	}
+
+	/**
+	 * Writes the percentiles and the histogram of every interval, then the
+	 * steps of each kept frame, in milliseconds.
+	 */
+	public void dump(Writer out) throws IOException {
+		final StringBuffer sb = new StringBuffer();
+		final int kept = getKeptFrameCount();
+
+		sb.append("frames: ").append(mFrameCount).append(", kept: ").append(kept).append('\n');
+		sb.append('\n');
+
+		TraversalStats.append(sb, "interval", 10, false);
+		TraversalStats.append(sb, "count", 8, true);
+		for (int i = 0; i < PERCENTILES.length; i++) {
+			TraversalStats.append(sb, "p" + PERCENTILES[i], 10, true);
+		}
+		TraversalStats.append(sb, "max", 10, true);
+		sb.append('\n');
+
+		for (int interval = 0; interval < INTERVAL_COUNT; interval++) {
+			final long[] durations = getSortedDurations(interval);
+			TraversalStats.append(sb, INTERVAL_NAMES[interval], 10, false);
+			TraversalStats.append(sb, String.valueOf(durations.length), 8, true);
+			for (int i = 0; i < PERCENTILES.length; i++) {
+				TraversalStats.append(sb, durations.length > 0 ? formatMillis(durations[percentileIndex(durations.length, PERCENTILES[i])]) : "-", 10, true);
+			}
+			TraversalStats.append(sb, durations.length > 0 ? formatMillis(durations[durations.length - 1]) : "-", 10, true);
+			sb.append('\n');
+		}
+
+		for (int interval = 0; interval < INTERVAL_COUNT; interval++) {
+			final long[] durations = getSortedDurations(interval);
+			if (durations.length == 0) {
+				continue;
+			}
+			sb.append('\n').append(INTERVAL_NAMES[interval]).append(" histogram (ms)\n");
+			appendHistogram(sb, durations);
+		}
+
+		out.write(sb.toString());
+		sb.setLength(0);
+
+		sb.append("\nframes (ms from traversal start): input measure layout draw flush\n");
+		for (int frame = 0; frame < kept; frame++) {
+			final int offset = getFrameOffset(frame);
+			final long start = mFrames[offset + MARK_TRAVERSAL_START];
+			for (int mark = 0; mark < MARK_COUNT; mark++) {
+				if (mark == MARK_TRAVERSAL_START) {
+					continue;
+				}
+				final long time = mFrames[offset + mark];
+				TraversalStats.append(sb, time == NOT_REACHED ? "-" : formatMillis(time - start), 10, true);
+			}
+			sb.append('\n');
+
+			// keeps the buffer small with a large capacity
+			if (sb.length() > 4096) {
+				out.write(sb.toString());
+				sb.setLength(0);
+			}
+		}
+
+		out.write(sb.toString());
+		out.flush();
+	}
+
+	/**
+	 * Writes {@link #dump(Writer)} to a text file, replacing it.
+	 */
+	public void dump(String path) throws IOException {
+		final Writer out = new FileWriter(path);
+		try {
+			dump(out);
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Draws the percentiles of the frame and latency intervals in the top
+	 * left corner.
+	 */
+	void drawOverlay(Canvas canvas) {
+		final String[] lines = getOverlayLines();
+		final Paint paint = mOverlayPaint;
+		final Paint.FontMetricsInt metrics = mOverlayMetrics;
+		final int spacing = paint.getFontMetricsInt(metrics);
+
+		final Rect bounds = mOverlayBounds;
+		getTextBounds(bounds);
+		mDrawnOverlayBounds.set(bounds);
+
+		final int saveCount = canvas.save();
+		canvas.clipRect(bounds);
+		canvas.drawColor(0xffffffff);
+
+		paint.setColor(0xff000000);
+		int y = -metrics.ascent;
+		for (int i = 0; i < lines.length; i++) {
+			canvas.drawText(lines[i], 0, y, paint);
+			y += spacing;
+		}
+		canvas.restoreToCount(saveCount);
+	}
+
+	/**
+	 * The area to invalidate on each frame for the overlay: what it covers
+	 * now and what it covered when last drawn, which the views have to
+	 * repaint where the overlay shrank.
+	 */
+	void getOverlayBounds(Rect outBounds) {
+		getTextBounds(outBounds);
+		outBounds.union(mDrawnOverlayBounds);
+	}
+
+	private void getTextBounds(Rect outBounds) {
+		final String[] lines = getOverlayLines();
+		int width = 0;
+		for (int i = 0; i < lines.length; i++) {
+			width = Math.max(width, mOverlayPaint.measureText(lines[i]));
+		}
+		outBounds.set(0, 0, width, lines.length * mOverlayPaint.getFontMetricsInt(null));
+	}
+
+	private String[] getOverlayLines() {
+		if (mOverlayLines == null) {
+			final int[] intervals = { INTERVAL_FRAME, INTERVAL_DRAW, INTERVAL_LATENCY };
+			final String[] lines = new String[intervals.length + 1];
+			final StringBuffer sb = new StringBuffer();
+
+			for (int i = 0; i < intervals.length; i++) {
+				final long[] durations = getSortedDurations(intervals[i]);
+				sb.setLength(0);
+				sb.append(INTERVAL_NAMES[intervals[i]]);
+				for (int p = 0; p < PERCENTILES.length; p++) {
+					sb.append(" p").append(PERCENTILES[p]).append(' ');
+					sb.append(durations.length > 0 ? formatMillis(durations[percentileIndex(durations.length, PERCENTILES[p])]) : "-");
+				}
+				sb.append(" ms");
+				lines[i] = sb.toString();
+			}
+
+			final int kept = getKeptFrameCount();
+			lines[intervals.length] = "last " + (kept > 0 ? formatMillis(getDuration(kept - 1, INTERVAL_FRAME)) : "-") + " ms, " + mFrameCount + " frames";
+			mOverlayLines = lines;
+		}
+		return mOverlayLines;
+	}
+
+	private int getFrameOffset(int frame) {
+		final int kept = getKeptFrameCount();
+		if (frame < 0 || frame >= kept) {
+			throw new IndexOutOfBoundsException("frame " + frame + ", kept " + kept);
+		}
+		final int first = mFrameCount - kept;
+		return ((first + frame) % mCapacity) * MARK_COUNT;
+	}
+
+	private long[] getSortedDurations(int interval) {
+		final int kept = getKeptFrameCount();
+		long[] durations = new long[kept];
+		int count = 0;
+		for (int frame = 0; frame < kept; frame++) {
+			final long duration = getDuration(frame, interval);
+			if (duration >= 0) {
+				durations[count++] = duration;
+			}
+		}
+
+		if (count < kept) {
+			final long[] valid = new long[count];
+			System.arraycopy(durations, 0, valid, 0, count);
+			durations = valid;
+		}
+
+		sort(durations);
+		return durations;
+	}
+
+	/**
+	 * Nearest rank.
+	 */
+	private static int percentileIndex(int count, int percentile) {
+		final int rank = (count * percentile + 99) / 100;
+		return Math.min(Math.max(rank, 1), count) - 1;
+	}
+
+	private static void appendHistogram(StringBuffer sb, long[] sortedDurations) {
+		final int[] counts = new int[HISTOGRAM_BOUNDS.length + 1];
+		int bucket = 0;
+		int max = 0;
+		for (int i = 0; i < sortedDurations.length; i++) {
+			while (bucket < HISTOGRAM_BOUNDS.length && sortedDurations[i] >= HISTOGRAM_BOUNDS[bucket] * 1000000L) {
+				bucket++;
+			}
+			counts[bucket]++;
+			max = Math.max(max, counts[bucket]);
+		}
+
+		for (int i = 0; i < counts.length; i++) {
+			TraversalStats.append(sb, i < HISTOGRAM_BOUNDS.length ? "< " + HISTOGRAM_BOUNDS[i] : ">= " + HISTOGRAM_BOUNDS[i - 1], 8, true);
+			TraversalStats.append(sb, String.valueOf(counts[i]), 8, true);
+			sb.append(' ');
+			final int bar = max > 0 ? (counts[i] * HISTOGRAM_WIDTH + max - 1) / max : 0;
+			for (int j = 0; j < bar; j++) {
+				sb.append('#');
+			}
+			sb.append('\n');
+		}
+	}
+
+	private static void sort(long[] values) {
+		for (int i = 1; i < values.length; i++) {
+			final long value = values[i];
+			int j = i - 1;
+			while (j >= 0 && values[j] > value) {
+				values[j + 1] = values[j];
+				j--;
+			}
+			values[j + 1] = value;
+		}
+	}
+
+	/**
+	 * Nanoseconds as milliseconds with one decimal.
+	 */
+	private static String formatMillis(long nanos) {
+		final long tenths = (Math.abs(nanos) + 50000) / 100000;
+		return (nanos < 0 ? "-" : "") + (tenths / 10) + "." + (tenths % 10);
+	}
+}
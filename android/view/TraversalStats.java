@@ -0,0 +1,342 @@
+/*
+ * Copyright (C) 2006 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.view;
+
+import java.util.Enumeration;
+import java.util.Hashtable;
+
+import android.graphics.Canvas;
+
+/**
+ * Counts the {@link View#onMeasure}, {@link View#onLayout} and
+ * {@link View#draw} calls of a view hierarchy and the time spent in them,
+ * per view and per view class. See {@link ViewRoot#setTraversalStatsEnabled}.
+ *
+ * The times are self times, in nanoseconds: what the children spent in the
+ * same or another phase is not part of their parent's time. Counts and times
+ * are kept for the last traversal and, per view class, summed over all the
+ * traversals since the stats were enabled or reset. The views are only held
+ * until the next traversal.
+ *
+ * The times come from the millisecond clock, this source level has no
+ * System.nanoTime(): a single call mostly shows as 0 or 1 ms, the sums over
+ * many traversals are what to look at.
+ */
+public final class TraversalStats {
+
+	public final static int MEASURE = 0;
+	public final static int LAYOUT = 1;
+	public final static int DRAW = 2;
+
+	private final static int PHASE_COUNT = 3;
+	private final static String[] PHASE_NAMES = { "measure", "layout", "draw" };
+
+	/**
+	 * Counts and times of a view or a view class.
+	 */
+	public final static class Entry {
+
+		private final String mName;
+
+		final int[] mCounts = new int[PHASE_COUNT];
+		final long[] mTimes = new long[PHASE_COUNT];
+		final int[] mTotalCounts = new int[PHASE_COUNT];
+		final long[] mTotalTimes = new long[PHASE_COUNT];
+
+		Entry(String name) {
+			mName = name;
+		}
+
+		public String getName() {
+			return mName;
+		}
+
+		/**
+		 * Number of calls during the last traversal.
+		 */
+		public int getCount(int phase) {
+			return mCounts[phase];
+		}
+
+		/**
+		 * Nanoseconds spent during the last traversal.
+		 */
+		public long getTime(int phase) {
+			return mTimes[phase];
+		}
+
+		public int getTotalCount(int phase) {
+			return mTotalCounts[phase];
+		}
+
+		public long getTotalTime(int phase) {
+			return mTotalTimes[phase];
+		}
+
+		void reset() {
+			for (int i = 0; i < PHASE_COUNT; i++) {
+				mCounts[i] = 0;
+				mTimes[i] = 0;
+			}
+		}
+
+		void record(int phase, long time) {
+			mCounts[phase]++;
+			mTimes[phase] += time;
+			mTotalCounts[phase]++;
+			mTotalTimes[phase] += time;
+		}
+	}
+
+	// View -> Entry, the views of the last traversal only
+	private final Hashtable mViewEntries = new Hashtable();
+	// Class -> Entry
+	private final Hashtable mClassEntries = new Hashtable();
+
+	private int mTraversalCount = 0;
+
+	// time spent in the children of the calls being timed, per depth
+	private long[] mChildTimes = new long[32];
+	private int mDepth = -1;
+
+	/**
+	 * Starts a new traversal, the counts and times of the last one are
+	 * cleared and its views forgotten.
+	 */
+	void beginTraversal() {
+		mTraversalCount++;
+		mViewEntries.clear();
+		resetEntries(mClassEntries);
+	}
+
+	void onMeasure(View view, int widthMeasureSpec, int heightMeasureSpec) {
+		final long start = enter();
+		try {
+			view.onMeasure(widthMeasureSpec, heightMeasureSpec);
+		}
+		finally {
+			leave(view, MEASURE, start);
+		}
+	}
+
+	void onLayout(View view, boolean changed, int left, int top, int right, int bottom) {
+		final long start = enter();
+		try {
+			view.onLayout(changed, left, top, right, bottom);
+		}
+		finally {
+			leave(view, LAYOUT, start);
+		}
+	}
+
+	void draw(View view, Canvas canvas) {
+		final long start = enter();
+		try {
+			view.performDraw(canvas);
+		}
+		finally {
+			leave(view, DRAW, start);
+		}
+	}
+
+	/**
+	 * Number of traversals since the stats were enabled or reset.
+	 */
+	public int getTraversalCount() {
+		return mTraversalCount;
+	}
+
+	/**
+	 * The entries of the views drawn, measured or laid out during the last
+	 * traversal, their totals are the ones of that traversal.
+	 */
+	public Entry[] getViewEntries() {
+		return toArray(mViewEntries);
+	}
+
+	public Entry[] getClassEntries() {
+		return toArray(mClassEntries);
+	}
+
+	/**
+	 * Nanoseconds spent in the given phase during the last traversal.
+	 */
+	public long getTime(int phase) {
+		long time = 0;
+		for (Enumeration e = mClassEntries.elements(); e.hasMoreElements();) {
+			time += ((Entry) e.nextElement()).mTimes[phase];
+		}
+		return time;
+	}
+
+	/**
+	 * Forgets about every view and every traversal.
+	 */
+	public void reset() {
+		mViewEntries.clear();
+		mClassEntries.clear();
+		mTraversalCount = 0;
+	}
+
+	/**
+	 * Formats the entries as a table, one line per view class, or per view
+	 * when byView is true, sorted by the total time spent. Times are in
+	 * microseconds.
+	 *
+	 * @param total true for the sums over all traversals, false for the
+	 *        last traversal; ignored by view, views are only kept for the
+	 *        last traversal
+	 */
+	public String dump(boolean byView, boolean total) {
+		if (byView) {
+			total = false;
+		}
+		final Entry[] entries = toArray(byView ? mViewEntries : mClassEntries);
+		sort(entries, total);
+
+		final StringBuffer sb = new StringBuffer();
+		sb.append(total ? "traversals: " + mTraversalCount : "last traversal").append('\n');
+
+		append(sb, byView ? "view" : "class", 40, false);
+		for (int phase = 0; phase < PHASE_COUNT; phase++) {
+			append(sb, PHASE_NAMES[phase], 10, true);
+			append(sb, "us", 10, true);
+		}
+		sb.append('\n');
+
+		for (int i = 0; i < entries.length; i++) {
+			final Entry entry = entries[i];
+			append(sb, entry.mName, 40, false);
+			for (int phase = 0; phase < PHASE_COUNT; phase++) {
+				append(sb, String.valueOf(total ? entry.mTotalCounts[phase] : entry.mCounts[phase]), 10, true);
+				append(sb, String.valueOf((total ? entry.mTotalTimes[phase] : entry.mTimes[phase]) / 1000), 10, true);
+			}
+			sb.append('\n');
+		}
+
+		return sb.toString();
+	}
+
+	private long enter() {
+		mDepth++;
+		if (mDepth == mChildTimes.length) {
+			final long[] childTimes = new long[mChildTimes.length * 2];
+			System.arraycopy(mChildTimes, 0, childTimes, 0, mChildTimes.length);
+			mChildTimes = childTimes;
+		}
+		mChildTimes[mDepth] = 0;
+		return now();
+	}
+
+	private void leave(View view, int phase, long start) {
+		final long elapsed = now() - start;
+		final long self = elapsed - mChildTimes[mDepth];
+
+		mDepth--;
+		if (mDepth >= 0) {
+			mChildTimes[mDepth] += elapsed;
+		}
+
+		getEntry(mViewEntries, view, view).record(phase, self);
+		getEntry(mClassEntries, view.getClass(), null).record(phase, self);
+	}
+
+	private static Entry getEntry(Hashtable entries, Object key, View view) {
+		Entry entry = (Entry) entries.get(key);
+		if (entry == null) {
+			final String name;
+			if (view != null) {
+				name = shortName(view.getClass()) + "@" + Integer.toHexString(System.identityHashCode(view));
+			}
+			else {
+				name = shortName((Class) key);
+			}
+			entry = new Entry(name);
+			entries.put(key, entry);
+		}
+		return entry;
+	}
+
+	private static String shortName(Class c) {
+		final String name = c.getName();
+		return name.substring(name.lastIndexOf('.') + 1);
+	}
+
+	private static void resetEntries(Hashtable entries) {
+		for (Enumeration e = entries.elements(); e.hasMoreElements();) {
+			((Entry) e.nextElement()).reset();
+		}
+	}
+
+	private static Entry[] toArray(Hashtable entries) {
+		final Entry[] array = new Entry[entries.size()];
+		int i = 0;
+		for (Enumeration e = entries.elements(); e.hasMoreElements();) {
+			array[i++] = (Entry) e.nextElement();
+		}
+		return array;
+	}
+
+	/**
+	 * Insertion sort, by decreasing time summed over the phases.
+	 */
+	private static void sort(Entry[] entries, boolean total) {
+		for (int i = 1; i < entries.length; i++) {
+			final Entry entry = entries[i];
+			final long time = sumTimes(entry, total);
+			int j = i - 1;
+			while (j >= 0 && sumTimes(entries[j], total) < time) {
+				entries[j + 1] = entries[j];
+				j--;
+			}
+			entries[j + 1] = entry;
+		}
+	}
+
+	private static long sumTimes(Entry entry, boolean total) {
+		final long[] times = total ? entry.mTotalTimes : entry.mTimes;
+		long sum = 0;
+		for (int i = 0; i < PHASE_COUNT; i++) {
+			sum += times[i];
+		}
+		return sum;
+	}
+
+	static void append(StringBuffer sb, String text, int width, boolean alignRight) {
+		if (text.length() >= width) {
+			text = text.substring(0, width - 1);
+		}
+		final int padding = width - text.length();
+		if (!alignRight) {
+			sb.append(text);
+		}
+		for (int i = 0; i < padding; i++) {
+			sb.append(' ');
+		}
+		if (alignRight) {
+			sb.append(text);
+		}
+	}
+
+	/**
+	 * Nanoseconds from an arbitrary origin, at the resolution of the
+	 * millisecond clock.
+	 */
+	static long now() {
+		return System.currentTimeMillis() * 1000000L;
+	}
+}
@@ -17,17 +17,16 @@
 package android.view;
 
 import java.util.Hashtable;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.Vector;
 
 import com.android.internal.R;
 import com.android.internal.view.menu.MenuBuilder;
 
-import com.flowme.FlowDisplay;
 import com.flowme.util.Color;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Paint;
+import android.graphics.Picture;
 import android.graphics.Point;
 import android.graphics.Rect;
 import android.graphics.drawable.AnimationDrawable;
@@ -36,6 +35,8 @@ import android.graphics.drawable.Drawable;
 
 import android.graphics.drawable.ShapeDrawable;
 import android.graphics.drawable.shapes.RoundRectShape;
+import android.os.Handler;
+import android.os.Message;
 import android.util.Log;
 import android.view.ContextMenu.ContextMenuInfo;
 import android.widget.ScrollBarDrawable;
@@ -45,6 +46,12 @@ public class View implements Drawable.Callback, KeyEvent.Callback {
     
 	private static final boolean DBG = false;
 	protected static final boolean DBG_DRAW_EXTENDS = false;
+
+	/**
+	 * Stats of the view root running a traversal with its stats enabled, null
+	 * otherwise. See {@link ViewRoot#setTraversalStatsEnabled}.
+	 */
+	static TraversalStats sTraversalStats = null;
 	
     protected static final String VIEW_LOG_TAG = "View";
 
@@ -77,7 +84,10 @@ public class View implements Drawable.Callback, KeyEvent.Callback {
 
 
     static final int CLICKABLE = 0x00004000;
+    static final int DRAWING_CACHE_ENABLED = 0x00008000;
+    static final int WILL_NOT_CACHE_DRAWING = 0x00020000;
     static final int FOCUSABLE_IN_TOUCH_MODE = 0x00040000;
+    static final int DISPLAY_LIST_ENABLED = 0x00100000;
 
     static final int DUPLICATE_PARENT_STATE = 0x00400000;
 
@@ -176,6 +186,11 @@ public class View implements Drawable.Callback, KeyEvent.Callback {
     static final int FORCE_LAYOUT                   = 0x00001000;
     private static final int LAYOUT_REQUIRED        = 0x00002000;
     private static final int PRESSED                = 0x00004000;
+    static final int DRAWING_CACHE_VALID            = 0x00008000;
+    static final int DISPLAY_LIST_VALID             = 0x00010000;
+    // measured dimension taken from the measure cache, onMeasure() must run
+    // with the last specs before layout so the children match it
+    private static final int MEASURE_NEEDED_BEFORE_LAYOUT = 0x00020000;
 
 
     protected ViewParent mParent;
@@ -227,6 +242,25 @@ public class View implements Drawable.Callback, KeyEvent.Callback {
     private int mOldWidthMeasureSpec = Integer.MIN_VALUE;
     private int mOldHeightMeasureSpec = Integer.MIN_VALUE;
 
+    /**
+     * Number of (width spec, height spec) pairs remembered by the measure
+     * cache.
+     */
+    private static final int MEASURE_CACHE_SIZE = 4;
+
+    /**
+     * Measured dimensions for the last specs this view was measured with
+     * since it or one of its descendants last requested a layout:
+     * (specs, dimensions) pairs of longs, each packing two ints. Allocated on
+     * the first miss.
+     */
+    private long[] mMeasureCache;
+    private int mMeasureCacheCount;
+    // next entry replaced once the cache is full
+    private int mMeasureCacheNext;
+    // specs of the last onMeasure() call
+    private long mMeasuredSpecs = Long.MIN_VALUE;
+
     private Drawable mBGDrawable;
     private int[] mDrawableState = null;
     private boolean mBackgroundSizeChanged;
@@ -239,6 +273,29 @@ public class View implements Drawable.Callback, KeyEvent.Callback {
     private OnKeyListener mOnKeyListener;
     private OnTouchListener mOnTouchListener;
     private ScrollabilityCache mScrollCache;
+
+    /**
+     * Posted by {@link #postInvalidateOnAnimation()}, created on first use
+     */
+    private Choreographer.FrameCallback mInvalidateOnAnimation;
+    
+    /**
+     * Retained rendering of the view, see {@link #setDrawingCacheEnabled(boolean)}
+     */
+    private Bitmap mDrawingCache;
+    private Rect mDrawingCacheDirty;
+    private int mDrawingCacheBackgroundColor = 0;
+    
+    /**
+     * Number of times in a row the view has been drawn while nothing in it
+     * was invalidated.
+     */
+    private int mCleanDraws = 0;
+    
+    /**
+     * Recorded background and content, see {@link #setDisplayListEnabled(boolean)}
+     */
+    private Picture mDisplayList;
     
 
     /**
@@ -1036,22 +1093,225 @@ public class View implements Drawable.Callback, KeyEvent.Callback {
      *
      * @param willNotCacheDrawing true if this view does not cache its
      *        drawing, false otherwise
-     
+     */
     public void setWillNotCacheDrawing(boolean willNotCacheDrawing) {
         setFlags(willNotCacheDrawing ? WILL_NOT_CACHE_DRAWING : 0, WILL_NOT_CACHE_DRAWING);
     }
-    */
 
     /**
      * Returns whether or not this View can cache its drawing or not.
      *
      * @return true if this view does not cache its drawing, false otherwise
-     
+     */
     //ViewDebug.ExportedProperty
     public boolean willNotCacheDrawing() {
         return (mViewFlags & WILL_NOT_CACHE_DRAWING) == WILL_NOT_CACHE_DRAWING;
     }
-    */
+
+    /**
+     * Enables or disables the drawing cache. When the drawing cache is enabled,
+     * the view and its children are rendered once into an offscreen bitmap,
+     * which the parent then draws until something in the view is invalidated.
+     * Only the invalidated area of the bitmap is rendered again.
+     *
+     * Without it, the view may still get a cache when 
+     * {@link DrawingCache#setAutoCacheEnabled(boolean) automatic caching} is on.
+     *
+     * @param enabled true to enable the drawing cache, false otherwise
+     *
+     * @see #isDrawingCacheEnabled()
+     * @see #getDrawingCache()
+     */
+    public void setDrawingCacheEnabled(boolean enabled) {
+        setFlags(enabled ? DRAWING_CACHE_ENABLED : 0, DRAWING_CACHE_ENABLED);
+    }
+
+    /**
+     * Indicates whether the drawing cache is enabled for this view.
+     *
+     * @return true if the drawing cache is enabled
+     *
+     * @see #setDrawingCacheEnabled(boolean)
+     */
+    //ViewDebug.ExportedProperty
+    public boolean isDrawingCacheEnabled() {
+        return (mViewFlags & DRAWING_CACHE_ENABLED) == DRAWING_CACHE_ENABLED;
+    }
+
+    /**
+     * Setting a solid background color for the drawing cache's bitmap makes
+     * it opaque, which is cheaper to draw and lets invalidations rebuild only
+     * the damaged part of the cache. Use it when the view covers its bounds
+     * with that color. 0 (the default) means a translucent cache, rebuilt 
+     * entirely on every invalidation.
+     *
+     * @param color The background color to use for the drawing cache's bitmap
+     */
+    public void setDrawingCacheBackgroundColor(int color) {
+        if (color != mDrawingCacheBackgroundColor) {
+            mDrawingCacheBackgroundColor = color;
+            destroyDrawingCache();
+        }
+    }
+
+    /**
+     * @return The background color to used for the drawing cache's bitmap
+     */
+    public int getDrawingCacheBackgroundColor() {
+        return mDrawingCacheBackgroundColor;
+    }
+
+    /**
+     * Returns the bitmap in which this view drawing is cached, (re)building
+     * it if needed. The returned bitmap is null when the view has no size or
+     * doesn't fit in the {@link DrawingCache drawing cache budget}.
+     *
+     * @return A bitmap representing this view or null if cache is disabled
+     */
+    public Bitmap getDrawingCache() {
+        if ((mViewFlags & WILL_NOT_CACHE_DRAWING) == WILL_NOT_CACHE_DRAWING) {
+            return null;
+        }
+        if ((mPrivateFlags & DRAWING_CACHE_VALID) == 0 || mDrawingCache == null) {
+            buildDrawingCache();
+        }
+        return mDrawingCache;
+    }
+
+    /**
+     * Frees the resources used by the drawing cache.
+     */
+    public void destroyDrawingCache() {
+        if (mDrawingCache != null) {
+            final Bitmap cache = mDrawingCache;
+            mDrawingCache = null;
+            DrawingCache.release(this, cache);
+            cache.getNativeBitmap().flush();
+        }
+    }
+
+    /**
+     * Forces the drawing cache to be built if it is not valid. Only the area 
+     * invalidated since the last build is rendered again when the cache is
+     * opaque and the view kept its size.
+     */
+    public void buildDrawingCache() {
+        final int width = mRight - mLeft;
+        final int height = mBottom - mTop;
+
+        if (width <= 0 || height <= 0) {
+            destroyDrawingCache();
+            return;
+        }
+
+        final boolean opaque = mDrawingCacheBackgroundColor != 0;
+        Bitmap cache = mDrawingCache;
+        Rect dirty = mDrawingCacheDirty;
+
+        if (cache == null || !opaque || cache.getWidth() != width || cache.getHeight() != height) {
+            destroyDrawingCache();
+            cache = DrawingCache.allocate(this, width, height, !opaque);
+            if (cache == null) {
+                return;
+            }
+            mDrawingCache = cache;
+            if (dirty == null) {
+                dirty = mDrawingCacheDirty = new Rect();
+            }
+            dirty.set(0, 0, width, height);
+        }
+        else if (!dirty.intersect(0, 0, width, height)) {
+            mPrivateFlags |= DRAWING_CACHE_VALID;
+            return;
+        }
+
+        final java.awt.Graphics graphics = cache.getNativeBitmap().getGraphics();
+        try {
+            graphics.setClip(dirty.left, dirty.top, dirty.width(), dirty.height());
+
+            final Canvas canvas = new Canvas();
+            canvas.setNativeGraphics(graphics);
+            if (opaque) {
+                canvas.drawColor(mDrawingCacheBackgroundColor);
+            }
+            canvas.translate(-mScrollX, -mScrollY);
+
+            // set before drawing, anything invalidated while drawing must 
+            // invalidate the cache again
+            mPrivateFlags |= DRAWING_CACHE_VALID;
+            dirty.setEmpty();
+
+            // Fast path for layouts with no backgrounds
+            if ((mPrivateFlags & SKIP_DRAW) == SKIP_DRAW) {
+                mPrivateFlags |= DRAWN;
+                dispatchDraw(canvas);
+            } else {
+                draw(canvas);
+            }
+        }
+        finally {
+            graphics.dispose();
+        }
+
+        DrawingCache.built(this);
+    }
+
+    /**
+     * Marks the area (in the view's visible coordinates) of the drawing cache
+     * as needing to be rendered again. An automatic cache is dropped instead,
+     * the view is obviously not static.
+     */
+    void invalidateDrawingCache(int l, int t, int r, int b) {
+        mPrivateFlags &= ~DRAWING_CACHE_VALID;
+        mCleanDraws = 0;
+
+        if (mDrawingCache != null) {
+            if ((mViewFlags & DRAWING_CACHE_ENABLED) == 0) {
+                destroyDrawingCache();
+            } else {
+                mDrawingCacheDirty.union(l, t, r, b);
+            }
+        }
+    }
+
+    /**
+     * Called by the parent, with the canvas translated to the scrolled origin
+     * of the view, to draw the view from its drawing cache when it has, or
+     * should get, one.
+     *
+     * @return false if the view has to be drawn the usual way
+     */
+    boolean drawFromCache(Canvas canvas) {
+        if ((mPrivateFlags & DRAWING_CACHE_VALID) == DRAWING_CACHE_VALID) {
+            if (mCleanDraws < DrawingCache.AUTO_CACHE_CLEAN_DRAWS) {
+                mCleanDraws++;
+            }
+        } else {
+            mCleanDraws = 0;
+        }
+
+        final int viewFlags = mViewFlags;
+        final boolean useCache = (viewFlags & WILL_NOT_CACHE_DRAWING) == 0 && 
+                ((viewFlags & DRAWING_CACHE_ENABLED) == DRAWING_CACHE_ENABLED || mDrawingCache != null || 
+                        (DrawingCache.isAutoCacheEnabled() && mCleanDraws >= DrawingCache.AUTO_CACHE_CLEAN_DRAWS &&
+                                (mRight - mLeft) * (mBottom - mTop) >= DrawingCache.AUTO_CACHE_MIN_AREA));
+
+        if (useCache) {
+            final boolean wasValid = (mPrivateFlags & DRAWING_CACHE_VALID) == DRAWING_CACHE_VALID && mDrawingCache != null;
+            final Bitmap cache = getDrawingCache();
+            if (cache != null) {
+                if (wasValid) {
+                    DrawingCache.hit(this);
+                }
+                canvas.drawBitmap(cache, mScrollX, mScrollY, null);
+                return true;
+            }
+        }
+
+        // whatever is drawn now stays valid until the next invalidation
+        mPrivateFlags |= DRAWING_CACHE_VALID;
+        return false;
+    }
 
     /**
      * Indicates whether this view reacts to click events or not.
@@ -1836,6 +2096,16 @@ public class View implements Drawable.Callback, KeyEvent.Callback {
             }
         }
 
+        if ((changed & (DRAWING_CACHE_ENABLED | WILL_NOT_CACHE_DRAWING)) != 0) {
+            destroyDrawingCache();
+            mPrivateFlags &= ~DRAWING_CACHE_VALID;
+        }
+
+        if ((changed & DISPLAY_LIST_ENABLED) != 0) {
+            mDisplayList = null;
+            mPrivateFlags &= ~DISPLAY_LIST_VALID;
+        }
+
         if ((changed & DRAW_MASK) != 0) {
             if ((mViewFlags & WILL_NOT_DRAW) != 0) {
                 if (mBGDrawable != null) {
@@ -2290,6 +2560,8 @@ public class View implements Drawable.Callback, KeyEvent.Callback {
                 final int scrollY = mScrollY;
                 mTempRect.set(dirty.left - scrollX, dirty.top - scrollY,
                               dirty.right - scrollX, dirty.bottom - scrollY);
+                mPrivateFlags &= ~DISPLAY_LIST_VALID;
+                invalidateDrawingCache(mTempRect.left, mTempRect.top, mTempRect.right, mTempRect.bottom);
                 p.invalidateChild(this, mTempRect);
             }
         }
@@ -2316,6 +2588,8 @@ public class View implements Drawable.Callback, KeyEvent.Callback {
                 final int scrollX = mScrollX;
                 final int scrollY = mScrollY;
                 mTempRect.set(l - scrollX, t - scrollY, r - scrollX, b - scrollY);
+                mPrivateFlags &= ~DISPLAY_LIST_VALID;
+                invalidateDrawingCache(mTempRect.left, mTempRect.top, mTempRect.right, mTempRect.bottom);
                 p.invalidateChild(this, mTempRect);
             }
         }
@@ -2329,7 +2603,8 @@ public class View implements Drawable.Callback, KeyEvent.Callback {
     public void invalidate() {
 
         if ((mPrivateFlags & (DRAWN | HAS_BOUNDS)) == (DRAWN | HAS_BOUNDS)) {
-            mPrivateFlags &= ~DRAWN ;//& ~DRAWING_CACHE_VALID;
+            mPrivateFlags &= ~(DRAWN | DISPLAY_LIST_VALID);
+            invalidateDrawingCache(0, 0, mRight - mLeft, mBottom - mTop);
             ViewParent p = mParent;
             
             if (p != null) {
@@ -2344,6 +2619,14 @@ public class View implements Drawable.Callback, KeyEvent.Callback {
     
 
 
+    /**
+     * @return A handler associated with the thread running the View. This
+     * handler can be used to pump events in the UI events queue.
+     */
+    public Handler getHandler() {
+        return ViewRoot.getHandler();
+    }
+
     /**
      * Causes the Runnable to be added to the message queue.
      * The runnable will be run on the user interface thread.
@@ -2351,26 +2634,12 @@ public class View implements Drawable.Callback, KeyEvent.Callback {
      * @param action The Runnable that will be executed.
      *
      * @return Returns true if the Runnable was successfully placed in to the
-     *         message queue.  Returns false on failure, usually because the
-     *         looper processing the message queue is exiting.
-    
+     *         message queue.
+     */
     public boolean post(Runnable action) {
-        Handler handler;
-        if (mAttachInfo != null) {
-            handler = mAttachInfo.mHandler;
-        } else {
-            handler = ViewRoot.sUiThreads.get();
-            if (handler == null) {
-                // Assume that post will succeed later
-                ViewRoot.sRunQueue.post(action);
-                return true;
-            }
-        }
-
-        return handler.post(action);
+        return ViewRoot.getHandler().post(action);
     }
- */
-    
+
     /**
      * Causes the Runnable to be added to the message queue, to be run
      * after the specified amount of time elapses.
@@ -2381,29 +2650,12 @@ public class View implements Drawable.Callback, KeyEvent.Callback {
      *        will be executed.
      *
      * @return true if the Runnable was successfully placed in to the
-     *         message queue.  Returns false on failure, usually because the
-     *         looper processing the message queue is exiting.  Note that a
-     *         result of true does not mean the Runnable will be processed --
-     *         if the looper is quit before the delivery time of the message
-     *         occurs then the message will be dropped.
-    
+     *         message queue.
+     */
     public boolean postDelayed(Runnable action, long delayMillis) {
-        Handler handler;
-        if (mAttachInfo != null) {
-            handler = mAttachInfo.mHandler;
-        } else {
-            handler = ViewRoot.sUiThreads.get();
-            if (handler == null) {
-                // Assume that post will succeed later
-                ViewRoot.sRunQueue.postDelayed(action, delayMillis);
-                return true;
-            }
-        }
-
-        return handler.postDelayed(action, delayMillis);
+        return ViewRoot.getHandler().postDelayed(action, delayMillis);
     }
- */
-    
+
     /**
      * Removes the specified Runnable from the message queue.
      *
@@ -2413,25 +2665,12 @@ public class View implements Drawable.Callback, KeyEvent.Callback {
      *         false otherwise. When the returned value is true, the Runnable
      *         may or may not have been actually removed from the message queue
      *         (for instance, if the Runnable was not in the queue already.)
-    
+     */
     public boolean removeCallbacks(Runnable action) {
-        Handler handler;
-        if (mAttachInfo != null) {
-            handler = mAttachInfo.mHandler;
-        } else {
-            handler = ViewRoot.sUiThreads.get();
-            if (handler == null) {
-                // Assume that post will succeed later
-                ViewRoot.sRunQueue.removeCallbacks(action);
-                return true;
-            }
-        }
-
-        handler.removeCallbacks(action);
+        ViewRoot.getHandler().removeCallbacks(action);
         return true;
     }
- */
-    
+
     /**
      * Cause an invalidate to happen on a subsequent cycle through the event loop.
      * Use this to invalidate the View from a non-UI thread.
@@ -2439,16 +2678,7 @@ public class View implements Drawable.Callback, KeyEvent.Callback {
      * @see #invalidate()
      */
     public void postInvalidate() {
-        // We try only with the AttachInfo because there's no point in invalidating
-        // if we are not attached to our window
-        /* XXX
-    	if (mAttachInfo != null) {
-            Message msg = Message.obtain();
-            msg.what = AttachInfo.INVALIDATE_MSG;
-            msg.obj = this;
-            mAttachInfo.mHandler.sendMessage(msg);
-        }
-        */
+        postInvalidateDelayed(0);
     }
 
     /**
@@ -2464,19 +2694,7 @@ public class View implements Drawable.Callback, KeyEvent.Callback {
      * @see #invalidate(Rect)
      */
     public void postInvalidate(int left, int top, int right, int bottom) {
-        // We try only with the AttachInfo because there's no point in invalidating
-        // if we are not attached to our window
-    	
-    	/*
-        if (mAttachInfo != null) {
-            Message msg = Message.obtain();
-            msg.what = AttachInfo.INVALIDATE_RECT_MSG;
-            msg.obj = this;
-            msg.arg1 = (left << 16) | (top & 0xFFFF);
-            msg.arg2 = (right << 16) | (bottom & 0xFFFF);
-            mAttachInfo.mHandler.sendMessage(msg);
-        }
-        */
+        postInvalidateDelayed(0, left, top, right, bottom);
     }
 
     /**
@@ -2487,17 +2705,8 @@ public class View implements Drawable.Callback, KeyEvent.Callback {
      *         invalidation by
      */
     public void postInvalidateDelayed(long delayMilliseconds) {
-        // We try only with the AttachInfo because there's no point in invalidating
-        // if we are not attached to our window
-    	
-    	/*
-        if (mAttachInfo != null) {
-            Message msg = Message.obtain();
-            msg.what = AttachInfo.INVALIDATE_MSG;
-            msg.obj = this;
-            mAttachInfo.mHandler.sendMessageDelayed(msg, delayMilliseconds);
-        }
-        */
+        final Handler handler = ViewRoot.getHandler();
+        handler.sendMessageDelayed(handler.obtainMessage(ViewRoot.INVALIDATE_MSG, this), delayMilliseconds);
     }
 
     /**
@@ -2513,19 +2722,44 @@ public class View implements Drawable.Callback, KeyEvent.Callback {
      */
     public void postInvalidateDelayed(long delayMilliseconds, int left, int top
             , int right, int bottom) {
-        // We try only with the AttachInfo because there's no point in invalidating
-        // if we are not attached to our window
-    	
-    	/*
-        if (mAttachInfo != null) {
-            Message msg = Message.obtain();
-            msg.what = AttachInfo.INVALIDATE_RECT_MSG;
-            msg.obj = this;
-            msg.arg1 = (left << 16) | (top & 0xFFFF);
-            msg.arg2 = (right << 16) | (bottom & 0xFFFF);
-            mAttachInfo.mHandler.sendMessageDelayed(msg, delayMilliseconds);
+        final Handler handler = ViewRoot.getHandler();
+        final Message msg = handler.obtainMessage(ViewRoot.INVALIDATE_RECT_MSG,
+                (left << 16) | (top & 0xFFFF), (right << 16) | (bottom & 0xFFFF), this);
+        handler.sendMessageDelayed(msg, delayMilliseconds);
+    }
+
+    /**
+     * Causes the Runnable to be run at the start of the next frame, with the
+     * other animations. Must be called from the UI thread.
+     *
+     * @param action The Runnable that will be executed.
+     *
+     * @see Choreographer#postFrameCallback
+     */
+    public void postOnAnimation(final Runnable action) {
+        Choreographer.getInstance().postFrameCallback(new Choreographer.FrameCallback() {
+            public void doFrame(long frameTimeMillis) {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * Cause an invalidate to happen at the start of the next frame, the view
+     * is redrawn by the traversal of that frame. Use this to draw the next
+     * step of an animation. Must be called from the UI thread.
+     */
+    public void postInvalidateOnAnimation() {
+        if (mInvalidateOnAnimation == null) {
+            mInvalidateOnAnimation = new Choreographer.FrameCallback() {
+                public void doFrame(long frameTimeMillis) {
+                    invalidate();
+                }
+            };
         }
-        */
+        final Choreographer choreographer = Choreographer.getInstance();
+        choreographer.removeFrameCallback(mInvalidateOnAnimation);
+        choreographer.postFrameCallback(mInvalidateOnAnimation);
     }
 
     /**
@@ -3033,6 +3267,18 @@ public class View implements Drawable.Callback, KeyEvent.Callback {
      * @param canvas The Canvas to which the View is rendered.
      */
     public void draw(Canvas canvas) {
+        if (sTraversalStats == null) {
+            performDraw(canvas);
+        } else {
+            sTraversalStats.draw(this, canvas);
+        }
+    }
+
+    /**
+     * The drawing steps of {@link #draw}, timed by the traversal stats when
+     * they are enabled.
+     */
+    final void performDraw(Canvas canvas) {
         /*
          * Draw traversal performs several drawing steps which must be executed
          * in the appropriate order:
@@ -3051,6 +3297,46 @@ public class View implements Drawable.Callback, KeyEvent.Callback {
     	
     	//Log.i(VIEW_LOG_TAG, mScrollX+" "+mScrollY);
     	
+    	if ((mViewFlags & DISPLAY_LIST_ENABLED) == DISPLAY_LIST_ENABLED) {
+    		
+    		// Steps 1 and 3 replayed from the display list
+    		mPrivateFlags |= DRAWN;
+    		
+    		if ((mPrivateFlags & DISPLAY_LIST_VALID) == 0 || mDisplayList == null) {
+    			recordDisplayList();
+    		}
+    		
+    		mDisplayList.draw(canvas);
+    	}
+    	else {
+    		drawBackground(canvas);
+    		
+	        // Step 3, draw the content
+	        mPrivateFlags |= DRAWN;
+	        onDraw(canvas);
+    	}
+
+        // Step 4, draw the children
+        dispatchDraw(canvas);
+
+        // Step 6, draw decorations (scrollbars)
+        onDrawScrollBars(canvas);
+
+            // we're done...
+            
+        if(DBG_DRAW_EXTENDS) {
+        	drawExtends(canvas);
+        }
+        
+  
+        canvas.restoreToCount(sc);
+         
+    }
+    
+    /**
+     * Draws the background drawable, following the scroll.
+     */
+    private void drawBackground(Canvas canvas) {
     	
         final Drawable background = mBGDrawable;
        
@@ -3074,28 +3360,58 @@ public class View implements Drawable.Callback, KeyEvent.Callback {
                 canvas.translate(-scrollX, -scrollY);
             }
         }
-
-
+    }
     
-        // Step 3, draw the content
-        mPrivateFlags |= DRAWN;
-        onDraw(canvas);
-
-        // Step 4, draw the children
-        dispatchDraw(canvas);
+    /**
+     * Records the background and the content of the view into its display
+     * list.
+     */
+    private void recordDisplayList() {
+    	
+    	if (mDisplayList == null) {
+    		mDisplayList = new Picture();
+    	}
+    	
+    	final Canvas canvas = mDisplayList.beginRecording(mRight - mLeft, mBottom - mTop);
+    	
+    	// set before recording, anything invalidated meanwhile has to be 
+    	// recorded again
+    	mPrivateFlags |= DISPLAY_LIST_VALID;
+    	
+    	drawBackground(canvas);
+    	onDraw(canvas);
+    	
+    	mDisplayList.endRecording();
+    }
+    
+    /**
+     * When the display list is enabled, the drawing operations of the view's
+     * background and {@link #onDraw} are recorded once and replayed on every
+     * draw until the view is invalidated. The children are not part of it,
+     * each one having its own. Only use it for views which invalidate 
+     * themselves whenever what they draw changes.
+     *
+     * @param enabled true to enable the display list
+     */
+    public void setDisplayListEnabled(boolean enabled) {
+        setFlags(enabled ? DISPLAY_LIST_ENABLED : 0, DISPLAY_LIST_ENABLED);
+    }
 
-        // Step 6, draw decorations (scrollbars)
-        onDrawScrollBars(canvas);
+    /**
+     * @return true if the view draws from its display list
+     *
+     * @see #setDisplayListEnabled(boolean)
+     */
+    public boolean isDisplayListEnabled() {
+        return (mViewFlags & DISPLAY_LIST_ENABLED) == DISPLAY_LIST_ENABLED;
+    }
 
-            // we're done...
-            
-        if(DBG_DRAW_EXTENDS) {
-        	drawExtends(canvas);
-        }
-        
-  
-        canvas.restoreToCount(sc);
-         
+    /**
+     * Returns the recorded background and content of the view, or null if it
+     * has none yet. Useful to dump a frame, see {@link Picture#writeToStream}.
+     */
+    public Picture getDisplayList() {
+        return mDisplayList;
     }
     
     public void drawExtends(Canvas canvas) {
@@ -3261,6 +3577,19 @@ public class View implements Drawable.Callback, KeyEvent.Callback {
      * @param b Bottom position, relative to parent
      */
     public final void layout(int l, int t, int r, int b) {
+        if ((mPrivateFlags & MEASURE_NEEDED_BEFORE_LAYOUT) == MEASURE_NEEDED_BEFORE_LAYOUT) {
+            // the size came from the cache, the children may have been
+            // measured for other specs since
+            if (sTraversalStats == null) {
+                onMeasure(mOldWidthMeasureSpec, mOldHeightMeasureSpec);
+            } else {
+                sTraversalStats.onMeasure(this, mOldWidthMeasureSpec, mOldHeightMeasureSpec);
+            }
+            mMeasuredSpecs = ((long) mOldWidthMeasureSpec << 32) | (mOldHeightMeasureSpec & 0xffffffffL);
+            mPrivateFlags &= ~MEASURE_NEEDED_BEFORE_LAYOUT;
+            mPrivateFlags |= LAYOUT_REQUIRED;
+        }
+
         boolean changed = setFrame(l, t, r, b);
         if (changed || (mPrivateFlags & LAYOUT_REQUIRED) == LAYOUT_REQUIRED) {
             
@@ -3270,7 +3599,11 @@ public class View implements Drawable.Callback, KeyEvent.Callback {
             }
         	*/
         	
-            onLayout(changed, l, t, r, b);
+            if (sTraversalStats == null) {
+                onLayout(changed, l, t, r, b);
+            } else {
+                sTraversalStats.onLayout(this, changed, l, t, r, b);
+            }
             mPrivateFlags &= ~LAYOUT_REQUIRED;
         }
         mPrivateFlags &= ~FORCE_LAYOUT;
@@ -3405,42 +3738,12 @@ public class View implements Drawable.Callback, KeyEvent.Callback {
      * @param who the recipient of the action
      * @param what the action to run on the drawable
      * @param when the time at which the action must occur. Uses the
-     *        {@link SystemClock#uptimeMillis} timebase.
+     *        {@link System#currentTimeMillis} timebase.
      */
-    
-
-    
-    
     public void scheduleDrawable(Drawable who, Runnable what, long when) {
-        
-    	//Log.i(VIEW_LOG_TAG, "scheduleDrawable");
-    	/*
-    	if(who instanceof AnimationDrawable) {
-    		AnimationDrawable ad = (AnimationDrawable) who;
-    		if(! ((AnimationDrawable)who).isRunning() ) {
-    			return;
-    		}
-    	}
-    	
-    	if (verifyDrawable(who)) {
-    	
-	    	long current = System.currentTimeMillis();
-	    	
-	    	if(when < current) {
-	    		what.run();
-	    		return;
-	    	}
-
-    	}
-    	*/
-
-    	FlowDisplay.instance().getRunnableScheduler().scheduleRunnable(what, when);
-    	// XXX
-    	/*
-    	if (verifyDrawable(who) && what != null && mAttachInfo != null) {
-            mAttachInfo.mHandler.postAtTime(what, who, when);
+        if (what != null) {
+            ViewRoot.getHandler().postAtTime(what, who, when);
         }
-        */
     }
 
     /**
@@ -3450,12 +3753,9 @@ public class View implements Drawable.Callback, KeyEvent.Callback {
      * @param what the action to cancel
    */
     public void unscheduleDrawable(Drawable who, Runnable what) {
-    	FlowDisplay.instance().getRunnableScheduler().unscheduleRunable(what);
-       /*
-    	if (verifyDrawable(who) && what != null && mAttachInfo != null) {
-            mAttachInfo.mHandler.removeCallbacks(what, who);
+        if (what != null) {
+            ViewRoot.getHandler().removeCallbacks(what, who);
         }
-        */
     }
   
     /**
@@ -3467,14 +3767,10 @@ public class View implements Drawable.Callback, KeyEvent.Callback {
      * 
      * @see #drawableStateChanged
      */
-    
     public void unscheduleDrawable(Drawable who) {
-    	// XXX
-    	/*
-    	if (mAttachInfo != null) {
-            mAttachInfo.mHandler.removeCallbacksAndMessages(who);
+        if (who != null) {
+            ViewRoot.getHandler().removeCallbacksAndMessages(who);
         }
-        */
     }
 
     /**
@@ -4073,8 +4369,33 @@ public class View implements Drawable.Callback, KeyEvent.Callback {
      */
     public void requestLayout() {
         mPrivateFlags |= FORCE_LAYOUT;
+        mMeasureCacheCount = 0;
         if (mParent != null && !mParent.isLayoutRequested()) {
             mParent.requestLayout();
+        } else {
+            // the ancestors requested a layout already, but may have been
+            // measured since
+            invalidateParentMeasureCaches();
+        }
+    }
+
+    /**
+     * Forgets the dimensions this view and its ancestors were measured with
+     * for other specs than the current ones. For a view whose content
+     * changed without changing its size for the current specs, which then
+     * needs no new layout.
+     */
+    protected void invalidateMeasureCache() {
+        mMeasureCacheCount = 0;
+        invalidateParentMeasureCaches();
+    }
+
+    private void invalidateParentMeasureCaches() {
+        ViewParent parent = mParent;
+        while (parent instanceof View) {
+            final View view = (View) parent;
+            view.mMeasureCacheCount = 0;
+            parent = view.mParent;
         }
     }
 
@@ -4085,6 +4406,7 @@ public class View implements Drawable.Callback, KeyEvent.Callback {
      */
     public void forceLayout() {
         mPrivateFlags |= FORCE_LAYOUT;
+        mMeasureCacheCount = 0;
     } 
     
     /**
@@ -4115,8 +4437,30 @@ public class View implements Drawable.Callback, KeyEvent.Callback {
             // first clears the measured dimension flag
             mPrivateFlags &= ~MEASURED_DIMENSION_SET;
 
-            // measure ourselves, this should set the measured dimension flag back
-            onMeasure(widthMeasureSpec, heightMeasureSpec);
+            final long key = ((long) widthMeasureSpec << 32) | (heightMeasureSpec & 0xffffffffL);
+
+            // the cache is cleared by a layout request, a forced view may
+            // use what it measured since
+            final int cacheIndex = indexOfMeasureCache(key);
+
+            if (cacheIndex < 0) {
+                // measure ourselves, this should set the measured dimension flag back
+                if (sTraversalStats == null) {
+                    onMeasure(widthMeasureSpec, heightMeasureSpec);
+                } else {
+                    sTraversalStats.onMeasure(this, widthMeasureSpec, heightMeasureSpec);
+                }
+                mMeasuredSpecs = key;
+                mPrivateFlags &= ~MEASURE_NEEDED_BEFORE_LAYOUT;
+            } else {
+                final long value = mMeasureCache[cacheIndex + 1];
+                setMeasuredDimension((int) (value >> 32), (int) value);
+                if (key != mMeasuredSpecs) {
+                    mPrivateFlags |= MEASURE_NEEDED_BEFORE_LAYOUT;
+                } else {
+                    mPrivateFlags &= ~MEASURE_NEEDED_BEFORE_LAYOUT;
+                }
+            }
 
             // flag not set, setMeasuredDimension() was not invoked, we raise
             // an exception to warn the developer
@@ -4126,6 +4470,10 @@ public class View implements Drawable.Callback, KeyEvent.Callback {
                         + " setMeasuredDimension()");
             }
 
+            if (cacheIndex < 0) {
+                putMeasureCache(key, ((long) mMeasuredWidth << 32) | (mMeasuredHeight & 0xffffffffL));
+            }
+
             mPrivateFlags |= LAYOUT_REQUIRED;
         }
 
@@ -4133,6 +4481,35 @@ public class View implements Drawable.Callback, KeyEvent.Callback {
         mOldHeightMeasureSpec = heightMeasureSpec;
     }
 
+    private int indexOfMeasureCache(long key) {
+        final long[] cache = mMeasureCache;
+        for (int i = 2 * mMeasureCacheCount - 2; i >= 0; i -= 2) {
+            if (cache[i] == key) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void putMeasureCache(long key, long value) {
+        if (mMeasureCache == null) {
+            mMeasureCache = new long[2 * MEASURE_CACHE_SIZE];
+        }
+
+        int index = indexOfMeasureCache(key);
+        if (index < 0) {
+            if (mMeasureCacheCount < MEASURE_CACHE_SIZE) {
+                index = 2 * mMeasureCacheCount++;
+            } else {
+                index = 2 * mMeasureCacheNext;
+                mMeasureCacheNext = (mMeasureCacheNext + 1) % MEASURE_CACHE_SIZE;
+            }
+        }
+
+        mMeasureCache[index] = key;
+        mMeasureCache[index + 1] = value;
+    }
+
     /**
      * <p>
      * Measure the view and its content to determine the measured width and the
@@ -43,6 +43,9 @@ public abstract class ViewGroup extends View implements ViewParent {
 	private View mMotionTarget;
 	private final Rect mTempRect = new Rect();
 
+	// canvas clip, in the dispatchDraw() of a group culling its children
+	private final Rect mViewport = new Rect();
+
 	protected int mGroupFlags;
 
 	// When set, ViewGroup invalidates only the child's rectangle
@@ -126,6 +129,12 @@ public abstract class ViewGroup extends View implements ViewParent {
 
 	private static final int FLAG_MASK_FOCUSABILITY = 0x60000;
 
+	/**
+	 * When set, dispatchDraw() only visits the children within the canvas
+	 * clip, see {@link #setCullToViewport(boolean)}.
+	 */
+	private static final int FLAG_CULL_TO_VIEWPORT = 0x100000;
+
 	/**
 	 * This view will get focus before any of its descendants.
 	 */
@@ -933,9 +942,16 @@ public abstract class ViewGroup extends View implements ViewParent {
 		mGroupFlags &= ~FLAG_INVALIDATE_REQUIRED;
 
 		if ((flags & FLAG_USE_CHILD_DRAWING_ORDER) == 0) {
-			for (int i = 0; i < count; i++) {
+			final Rect viewport = mViewport;
+			final boolean cull = (flags & FLAG_CULL_TO_VIEWPORT) == FLAG_CULL_TO_VIEWPORT
+					&& canvas.getClipBounds(viewport);
+
+			for (int i = cull ? getFirstChildInViewport(viewport) : 0; i < count; i++) {
 				final View child = children[i];
 				if ((child.mViewFlags & VISIBILITY_MASK) == VISIBLE) {
+					if (cull && isPastViewport(child, viewport)) {
+						break;
+					}
 					drawChild(canvas, child);
 				}
 			}
@@ -978,6 +994,45 @@ public abstract class ViewGroup extends View implements ViewParent {
 		return i;
 	}
 
+	/**
+	 * Sets whether dispatchDraw() only visits the children within the
+	 * viewport, the clip of the canvas it draws on, instead of rejecting the
+	 * others one by one. Set by a scrolling parent showing a small part of a
+	 * long content, see {@link android.widget.ScrollView#setViewportCulling(boolean)}.
+	 * It only has an effect on groups knowing how their children are laid
+	 * out, overriding {@link #getFirstChildInViewport(Rect)} and
+	 * {@link #isPastViewport(View, Rect)}.
+	 */
+	public void setCullToViewport(boolean cull) {
+		setBooleanFlag(FLAG_CULL_TO_VIEWPORT, cull);
+	}
+
+	public boolean isCullToViewport() {
+		return (mGroupFlags & FLAG_CULL_TO_VIEWPORT) == FLAG_CULL_TO_VIEWPORT;
+	}
+
+	/**
+	 * Returns the index of the first child which may intersect the viewport,
+	 * when culling to the viewport. By default all the children are visited.
+	 * 
+	 * @param viewport
+	 *            the canvas clip, in this view's coordinates
+	 */
+	protected int getFirstChildInViewport(Rect viewport) {
+		return 0;
+	}
+
+	/**
+	 * Returns true if the child and all the following ones are out of the
+	 * viewport, when culling to the viewport.
+	 * 
+	 * @param viewport
+	 *            the canvas clip, in this view's coordinates
+	 */
+	protected boolean isPastViewport(View child, Rect viewport) {
+		return false;
+	}
+
 	/**
 	 * Draw one child of this View Group. This method is responsible for getting
 	 * the canvas in the right state. This includes clipping, translating so
@@ -1006,6 +1061,10 @@ public abstract class ViewGroup extends View implements ViewParent {
 			mGroupFlags &= ~FLAG_CLEAR_TRANSFORMATION;
 		}
 
+		// outside of the clip (scrolled out, or not damaged), nothing to do
+		if (canvas.quickReject(cl, ct, cr, cb)) {
+			return;
+		}
 
 		child.computeScroll();
 
@@ -1019,6 +1078,12 @@ public abstract class ViewGroup extends View implements ViewParent {
 			canvas.clipRect(sx, sy, sx + cr - cl, sy + cb - ct);
 		}
 
+		// static subtree, blit its cached rendering
+		if (child.drawFromCache(canvas)) {
+			canvas.restoreToCount(restoreTo);
+			return;
+		}
+
 		// Fast path for layouts with no backgrounds
 		if ((child.mPrivateFlags & SKIP_DRAW) == SKIP_DRAW) {
 
@@ -1892,6 +1957,7 @@ public abstract class ViewGroup extends View implements ViewParent {
 
 			if ((mGroupFlags & (FLAG_OPTIMIZE_INVALIDATE)) != FLAG_OPTIMIZE_INVALIDATE) {
 				dirty.offset(location[CHILD_LEFT_INDEX] - mScrollX, location[CHILD_TOP_INDEX] - mScrollY);
+				invalidateDrawingCache(dirty.left, dirty.top, dirty.right, dirty.bottom);
 
 				final int left = mLeft;
 				final int top = mTop;
@@ -1905,7 +1971,8 @@ public abstract class ViewGroup extends View implements ViewParent {
 				}
 			}
 			else {
-				mPrivateFlags &= ~DRAWN;// XXX& ~DRAWING_CACHE_VALID;
+				mPrivateFlags &= ~DRAWN;
+				invalidateDrawingCache(0, 0, mRight - mLeft, mBottom - mTop);
 
 				location[CHILD_LEFT_INDEX] = mLeft;
 				location[CHILD_TOP_INDEX] = mTop;
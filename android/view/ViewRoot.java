@@ -18,9 +18,11 @@ package android.view;
 
 import com.flowme.FlowDisplay;
 import android.graphics.Canvas;
-import android.graphics.Paint;
 import android.graphics.Rect;
+import android.graphics.Region;
 
+import android.os.Handler;
+import android.os.Message;
 import android.util.Log;
 import android.view.View.MeasureSpec;
 
@@ -36,6 +38,12 @@ public final class ViewRoot implements ViewParent {
 
 	private final static String TAG ="ViewRoot";
 
+	final static int INVALIDATE_MSG = 1;
+	final static int INVALIDATE_RECT_MSG = 2;
+
+	// shared by the views of every root, there is a single UI thread
+	private static Handler sHandler = null;
+
 
 	//private final Thread mThread;
 
@@ -49,16 +57,19 @@ public final class ViewRoot implements ViewParent {
 	private final Rect mTempRect; // used in the transaction to not thrash the
 									// heap.
 
+	// area of the window damaged since the last time the display collected it
+	private final Region mDirty = new Region();
+	private boolean mFullRedrawNeeded;
+
 	private boolean mWillDrawSoon;
 	private boolean mLayoutRequested;
 	private boolean mFirst;
 	private boolean mAdded;
 
-	private Paint	mFpsPaint = new Paint();
-	private int mFpsCounter = 0;
-	private int mFps = 0;
-	private boolean mDrawFps = false;
-	private long mDrawingStart = 0; // used for fps drawing
+	// null while disabled
+	private TraversalStats mTraversalStats = null;
+	private FrameProfiler mFrameProfiler = null;
+	private boolean mDrawProfilerOverlay = false;
 	
 	private FlowDisplay display;
 	
@@ -82,6 +93,29 @@ public final class ViewRoot implements ViewParent {
 		
 	}
 
+	/**
+	 * The handler running the views' posted Runnables and invalidations on
+	 * the UI thread.
+	 */
+	static synchronized Handler getHandler() {
+		if (sHandler == null) {
+			sHandler = new Handler() {
+				public void handleMessage(Message msg) {
+					switch (msg.what) {
+					case INVALIDATE_MSG:
+						((View) msg.obj).invalidate();
+						break;
+					case INVALIDATE_RECT_MSG:
+						// left, top, right, bottom packed as shorts
+						((View) msg.obj).invalidate(msg.arg1 >> 16, (short) msg.arg1, msg.arg2 >> 16, (short) msg.arg2);
+						break;
+					}
+				}
+			};
+		}
+		return sHandler;
+	}
+
 	/**
 	 * We have one child
 	 */
@@ -119,7 +153,7 @@ public final class ViewRoot implements ViewParent {
 		mLayoutRequested = true;
 		//performTraversals();
 		
-		display.invalidate();
+		display.scheduleFrame();
 	}
 
 	/**
@@ -136,13 +170,40 @@ public final class ViewRoot implements ViewParent {
 
 	public void invalidateChild(View child, Rect dirty) {
 		//Log.i(TAG, "invalidateChild");
-		mLayoutRequested = true;
-		/* 
 		checkThread();
-		if (!mWillDrawSoon) {
-			performTraversals();
+		
+		if (child != null) {
+			mDirty.union(dirty.left + child.mLeft, dirty.top + child.mTop, 
+					dirty.right + child.mLeft, dirty.bottom + child.mTop);
 		}
-		*/
+		else {
+			mDirty.union(dirty);
+		}
+		
+		// a redraw alone never needs a new measure/layout pass, only 
+		// requestLayout() does
+		display.scheduleFrame();
+	}
+
+	/**
+	 * Mark the whole window as needing to be drawn, the damage is computed 
+	 * from the size of the view on the next traversal.
+	 */
+	public void invalidate() {
+		mFullRedrawNeeded = true;
+		display.scheduleFrame();
+	}
+
+	/**
+	 * Returns the area of the window damaged since the last call to 
+	 * {@link #clearDirtyRegion()}, in window coordinates.
+	 */
+	public Region getDirtyRegion() {
+		return mDirty;
+	}
+
+	public void clearDirtyRegion() {
+		mDirty.setEmpty();
 	}
 
 	public ViewParent getParent() {
@@ -150,6 +211,7 @@ public final class ViewRoot implements ViewParent {
 	}
 
 	public ViewParent invalidateChildInParent(final int[] location, final Rect dirty) {
+		dirty.offset(location[0], location[1]);
 		invalidateChild(null, dirty);
 		return null;
 	}
@@ -165,8 +227,10 @@ public final class ViewRoot implements ViewParent {
 	}
 
 	/**
-     * 
-     */
+	 * Measures and lays out the hierarchy if a layout was requested. When
+	 * only invalidations happened since the last traversal this is a no-op,
+	 * the damage is already recorded in the dirty region.
+	 */
 	public void performTraversals(int widthMeasureSpec, int heightMeasureSpec) {
 
 		
@@ -179,15 +243,39 @@ public final class ViewRoot implements ViewParent {
 
 		mWillDrawSoon = true;
 
-		if (mLayoutRequested) {
-			host.measure(widthMeasureSpec, heightMeasureSpec);
+		if (mTraversalStats != null) {
+			mTraversalStats.beginTraversal();
 		}
 
-
+		if (mFrameProfiler != null) {
+			mFrameProfiler.beginFrame();
+			if (mDrawProfilerOverlay) {
+				// drawn with the numbers of the last frames, without asking
+				// for another one
+				mFrameProfiler.getOverlayBounds(mTempRect);
+				mDirty.union(mTempRect);
+			}
+		}
 
 		if (mLayoutRequested) {
+			// cleared first, a view may request another layout from onLayout()
 			mLayoutRequested = false;
-			host.layout(0, 0, host.mMeasuredWidth, host.mMeasuredHeight);
+
+			final TraversalStats stats = View.sTraversalStats;
+			View.sTraversalStats = mTraversalStats;
+			try {
+				host.measure(widthMeasureSpec, heightMeasureSpec);
+				if (mFrameProfiler != null) {
+					mFrameProfiler.mark(FrameProfiler.MARK_MEASURE_END);
+				}
+				host.layout(0, 0, host.mMeasuredWidth, host.mMeasuredHeight);
+				if (mFrameProfiler != null) {
+					mFrameProfiler.mark(FrameProfiler.MARK_LAYOUT_END);
+				}
+			}
+			finally {
+				View.sTraversalStats = stats;
+			}
 		}
 
 		if (mFirst) {
@@ -197,6 +285,14 @@ public final class ViewRoot implements ViewParent {
 				mView.requestFocus(View.FOCUS_FORWARD);
 				mFocusedView = mView.findFocus();
 			}
+			
+			mFullRedrawNeeded = true;
+		}
+
+		if (mFullRedrawNeeded) {
+			mFullRedrawNeeded = false;
+			mDirty.setEmpty();
+			mDirty.union(0, 0, host.mMeasuredWidth, host.mMeasuredHeight);
 		}
 
 		mFirst = false;
@@ -211,67 +307,83 @@ public final class ViewRoot implements ViewParent {
      */
 	public void performTraversals() {
 
-		Log.i(TAG, "performTraversals " + mWidth + " " + mHeight);
-		
-		if (mView == null || !mAdded) {
-			return;
+		if (Log.isLoggable(TAG, Log.LEVEL_DEBUG)) {
+			Log.d(TAG, "performTraversals " + mWidth + " " + mHeight);
 		}
+		
+		performTraversals(MeasureSpec.makeMeasureSpec(mWidth, View.MeasureSpec.EXACTLY),
+						  MeasureSpec.makeMeasureSpec(mHeight, View.MeasureSpec.EXACTLY));
+	}
 
-		// cache mView since it is used so much below...
-		final View host = mView;
-
-		mWillDrawSoon = true;
-
-		if (mLayoutRequested) {
-			int childWidthMeasureSpec = MeasureSpec.makeMeasureSpec(mWidth, View.MeasureSpec.EXACTLY);
-			int childHeightMeasureSpec = MeasureSpec.makeMeasureSpec(mHeight, View.MeasureSpec.EXACTLY);
-			host.measure(childWidthMeasureSpec, childHeightMeasureSpec);
-		}
+	/*
+	public void requestTransparentRegion(View child) {
+	}
+	*/
 
 
 
-		if (mLayoutRequested) {
-			mLayoutRequested = false;
-			host.layout(0, 0, host.mMeasuredWidth, host.mMeasuredHeight);
+	public void draw(Canvas canvas) {
+		
+		final TraversalStats stats = View.sTraversalStats;
+		View.sTraversalStats = mTraversalStats;
+		try {
+			mView.draw(canvas);
+		}
+		finally {
+			View.sTraversalStats = stats;
 		}
 
-		if (mFirst) {
-
-			// handle first focus request
-			if (mView != null && !mView.hasFocus()) {
-				mView.requestFocus(View.FOCUS_FORWARD);
-				mFocusedView = mView.findFocus();
+		if (mFrameProfiler != null) {
+			mFrameProfiler.mark(FrameProfiler.MARK_DRAW_END);
+			if (mDrawProfilerOverlay) {
+				mFrameProfiler.drawOverlay(canvas);
 			}
 		}
+	}
 
-		mFirst = false;
-		mWillDrawSoon = false;
 
+	/**
+	 * Starts or stops counting the measure, layout and draw calls of the
+	 * views of this root and timing them. Each call to
+	 * {@link #performTraversals(int, int)} starts a new traversal, the draw
+	 * following it belongs to the same one. While disabled, measure(),
+	 * layout() and draw() only test a static field.
+	 */
+	public void setTraversalStatsEnabled(boolean enabled) {
+		if (!enabled) {
+			mTraversalStats = null;
+		}
+		else if (mTraversalStats == null) {
+			mTraversalStats = new TraversalStats();
+		}
 	}
 
-	/*
-	public void requestTransparentRegion(View child) {
+	public boolean isTraversalStatsEnabled() {
+		return mTraversalStats != null;
 	}
-	*/
-
 
+	/**
+	 * @return the stats collected since they were enabled, null while
+	 *         disabled
+	 */
+	public TraversalStats getTraversalStats() {
+		return mTraversalStats;
+	}
 
-	public void draw(Canvas canvas) {
-		
-		mView.draw(canvas);
-		
-		// DEBUG
-		/*
-		if(mDrawFps) {
-			mFpsCounter++;
-			if(System.currentTimeMillis()-mDrawingStart>1000) {
-				mDrawingStart = System.currentTimeMillis();
-				mFps = mFpsCounter;
-				mFpsCounter = 0;
-			}
-			canvas.drawText(mFps+" fps", 0, 0, mFpsPaint);
+	/**
+	 * Logs the stats of the last traversal and, per view class, the sums
+	 * over all of them, as tables with one line per view class, or per view
+	 * when byView is true.
+	 */
+	public void dumpTraversalStats(boolean byView) {
+		if (mTraversalStats == null) {
+			Log.i(TAG, "traversal stats disabled");
+			return;
+		}
+		Log.i(TAG, mTraversalStats.dump(byView, false));
+		if (!byView) {
+			Log.i(TAG, mTraversalStats.dump(false, true));
 		}
-		*/
 	}
 
 	   /**
@@ -375,6 +487,9 @@ public final class ViewRoot implements ViewParent {
 
 	public void deliverKeyEvent(KeyEvent event) {
 
+		if (mFrameProfiler != null) {
+			mFrameProfiler.markInput();
+		}
 
 		if (mView != null && mAdded) {
 			final int action = event.getAction();
@@ -458,6 +573,7 @@ public final class ViewRoot implements ViewParent {
 		mWidth = w;
 		mHeight = h;
 		
+		mFullRedrawNeeded = true;
 		requestLayout();
 	}
 
@@ -467,6 +583,10 @@ public final class ViewRoot implements ViewParent {
 			return;
 		}
 
+		if (mFrameProfiler != null) {
+			mFrameProfiler.markInput();
+		}
+
 		try {
 
 			if (mView != null && mAdded && event != null) {
@@ -548,14 +668,65 @@ public final class ViewRoot implements ViewParent {
 	
 	
 	
-	public boolean isDrawFps() {
-		return mDrawFps;
+	/**
+	 * Starts or stops recording the steps of each frame, from the input
+	 * event which caused it to {@link #notifyFrameFlushed()}. Each call to
+	 * {@link #performTraversals(int, int)} starts a new frame.
+	 */
+	public void setFrameProfilingEnabled(boolean enabled) {
+		if (!enabled) {
+			setFrameProfilerOverlayEnabled(false);
+			mFrameProfiler = null;
+		}
+		else if (mFrameProfiler == null) {
+			mFrameProfiler = new FrameProfiler();
+		}
 	}
 
+	public boolean isFrameProfilingEnabled() {
+		return mFrameProfiler != null;
+	}
 
-	public void setDrawFps(boolean drawFps) {
-		this.mDrawFps = drawFps;
+	/**
+	 * @return the frames recorded since profiling was enabled, null while
+	 *         disabled
+	 */
+	public FrameProfiler getFrameProfiler() {
+		return mFrameProfiler;
+	}
+
+	/**
+	 * Draws the frame time percentiles on top of the views, enabling frame
+	 * profiling if needed.
+	 */
+	public void setFrameProfilerOverlayEnabled(boolean enabled) {
+		if (enabled == mDrawProfilerOverlay) {
+			return;
+		}
+		if (enabled) {
+			setFrameProfilingEnabled(true);
+		}
+		else if (mFrameProfiler != null) {
+			// what is under the overlay
+			mFrameProfiler.getOverlayBounds(mTempRect);
+			invalidateChild(null, mTempRect);
+		}
+		mDrawProfilerOverlay = enabled;
+		display.scheduleFrame();
+	}
+
+	public boolean isFrameProfilerOverlayEnabled() {
+		return mDrawProfilerOverlay;
+	}
 
+	/**
+	 * To be called once what was drawn has been copied to the screen, ends
+	 * the frame being profiled.
+	 */
+	public void notifyFrameFlushed() {
+		if (mFrameProfiler != null) {
+			mFrameProfiler.markFlush();
+		}
 	}
 
 
@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2006 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.view.text;
+
+/**
+ * An editable sequence of characters kept in a single array with a gap at
+ * the last edit position. Edits next to each other, as when typing, only
+ * move the gap boundaries; the array grows (doubling) when the gap is used
+ * up.
+ */
+public final class GapBuffer {
+
+	private final static int MIN_GAP = 16;
+
+	private char[] mChars;
+	private int mGapStart;
+	private int mGapEnd;
+
+	// toString() result, until the next edit
+	private String mString = null;
+
+	public GapBuffer() {
+		this(MIN_GAP);
+	}
+
+	public GapBuffer(int capacity) {
+		mChars = new char[Math.max(capacity, MIN_GAP)];
+		mGapStart = 0;
+		mGapEnd = mChars.length;
+	}
+
+	public int length() {
+		return mChars.length - (mGapEnd - mGapStart);
+	}
+
+	public char charAt(int index) {
+		if (index < 0 || index >= length()) {
+			throw new IndexOutOfBoundsException("index " + index + ", length " + length());
+		}
+		return index < mGapStart ? mChars[index] : mChars[index + mGapEnd - mGapStart];
+	}
+
+	/**
+	 * Copies the characters [start, end) into dest, from destOffset.
+	 */
+	public void getChars(int start, int end, char[] dest, int destOffset) {
+		checkRange(start, end);
+
+		if (end <= mGapStart) {
+			System.arraycopy(mChars, start, dest, destOffset, end - start);
+		}
+		else if (start >= mGapStart) {
+			System.arraycopy(mChars, start + mGapEnd - mGapStart, dest, destOffset, end - start);
+		}
+		else {
+			final int before = mGapStart - start;
+			System.arraycopy(mChars, start, dest, destOffset, before);
+			System.arraycopy(mChars, mGapEnd, dest, destOffset + before, end - mGapStart);
+		}
+	}
+
+	/**
+	 * Replaces the whole content.
+	 */
+	public void set(String text) {
+		final int length = text.length();
+		if (mChars.length < length + MIN_GAP) {
+			mChars = new char[length + MIN_GAP];
+		}
+		text.getChars(0, length, mChars, 0);
+		mGapStart = length;
+		mGapEnd = mChars.length;
+		mString = text;
+	}
+
+	public void insert(int where, char c) {
+		if (where < 0 || where > length()) {
+			throw new IndexOutOfBoundsException("where " + where + ", length " + length());
+		}
+
+		moveGap(where);
+		if (mGapStart == mGapEnd) {
+			grow(1);
+		}
+		mChars[mGapStart++] = c;
+		mString = null;
+	}
+
+	public void insert(int where, String text) {
+		if (where < 0 || where > length()) {
+			throw new IndexOutOfBoundsException("where " + where + ", length " + length());
+		}
+
+		final int count = text.length();
+		moveGap(where);
+		if (mGapEnd - mGapStart < count) {
+			grow(count);
+		}
+		text.getChars(0, count, mChars, mGapStart);
+		mGapStart += count;
+		mString = null;
+	}
+
+	/**
+	 * Removes the characters [start, end).
+	 */
+	public void delete(int start, int end) {
+		checkRange(start, end);
+
+		if (start == end) {
+			return;
+		}
+
+		moveGap(end);
+		mGapStart = start;
+		mString = null;
+	}
+
+	/**
+	 * Offset of the first occurrence of c at or after from, -1 if none.
+	 */
+	public int indexOf(char c, int from) {
+		final int length = length();
+		for (int i = Math.max(from, 0); i < length; i++) {
+			if (charAt(i) == c) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Offset of the last occurrence of c at or before from, -1 if none.
+	 */
+	public int lastIndexOf(char c, int from) {
+		for (int i = Math.min(from, length() - 1); i >= 0; i--) {
+			if (charAt(i) == c) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	public String toString() {
+		if (mString == null) {
+			final char[] chars = new char[length()];
+			getChars(0, chars.length, chars, 0);
+			mString = new String(chars);
+		}
+		return mString;
+	}
+
+	private void checkRange(int start, int end) {
+		if (start < 0 || end < start || end > length()) {
+			throw new IndexOutOfBoundsException("[" + start + ", " + end + "), length " + length());
+		}
+	}
+
+	private void moveGap(int where) {
+		if (where < mGapStart) {
+			final int count = mGapStart - where;
+			System.arraycopy(mChars, where, mChars, mGapEnd - count, count);
+			mGapStart -= count;
+			mGapEnd -= count;
+		}
+		else if (where > mGapStart) {
+			final int count = where - mGapStart;
+			System.arraycopy(mChars, mGapEnd, mChars, mGapStart, count);
+			mGapStart += count;
+			mGapEnd += count;
+		}
+	}
+
+	private void grow(int needed) {
+		final int size = Math.max(mChars.length * 2, length() + needed + MIN_GAP);
+		final char[] chars = new char[size];
+		final int after = mChars.length - mGapEnd;
+
+		System.arraycopy(mChars, 0, chars, 0, mGapStart);
+		System.arraycopy(mChars, mGapEnd, chars, size - after, after);
+
+		mGapEnd = size - after;
+		mChars = chars;
+	}
+}
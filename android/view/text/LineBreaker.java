@@ -0,0 +1,241 @@
+/*
+ * Copyright (C) 2006 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.view.text;
+
+import android.graphics.Paint;
+
+/**
+ * Splits a text in lines no wider than a given width, in a single pass over
+ * the characters. Lines are broken after the last space fitting in the width,
+ * or in the middle of a word longer than the whole width, and on every '\n'.
+ * Spaces around a break are not part of the lines.
+ *
+ * The result is a list of offsets in the text, no string is copied. An
+ * instance keeps its scratch buffers from one call to the next; it holds no
+ * other state, so a breaker used by a single thread at a time may run on any
+ * thread.
+ */
+public final class LineBreaker {
+
+	// copy of a String being broken
+	private char[] mChars = new char[64];
+
+	// advances of the characters of the text being broken, from its start
+	private float[] mWidths = new float[64];
+	private int mStart;
+
+	// (start, end) pairs of the lines found so far
+	private int[] mOffsets = new int[16];
+	private int[] mLineWidths = new int[8];
+	private int mLineCount;
+	private int mMaxWidth;
+	private boolean mWrapped;
+
+	public LineBreaker() {
+	}
+
+	/**
+	 * Breaks the text in lines of at most maxWidth pixels (a line always holds
+	 * at least one character).
+	 *
+	 * @return the lines as consecutive (start, end) offset pairs, an empty
+	 *         text giving a single empty line
+	 */
+	public int[] breakLines(Paint paint, String text, int maxWidth) {
+
+		final int length = text.length();
+		if (mChars.length < length) {
+			mChars = new char[Math.max(length, mChars.length * 2)];
+		}
+		text.getChars(0, length, mChars, 0);
+
+		return breakLines(paint, mChars, 0, length, maxWidth);
+	}
+
+	/**
+	 * Breaks text[start, end) in lines of at most maxWidth pixels (a line
+	 * always holds at least one character).
+	 *
+	 * @return the lines as consecutive (start, end) offset pairs in text, an
+	 *         empty range giving a single empty line
+	 */
+	public int[] breakLines(Paint paint, char[] text, int start, int end, int maxWidth) {
+
+		final int length = end - start;
+
+		mLineCount = 0;
+		mMaxWidth = 0;
+		mWrapped = false;
+		mStart = start;
+
+		if (length == 0) {
+			addLine(start, start, 0);
+			return getOffsets();
+		}
+
+		if (mWidths.length < length) {
+			mWidths = new float[Math.max(length, mWidths.length * 2)];
+		}
+		final float[] widths = mWidths;
+		paint.getTextWidths(text, start, length, widths);
+
+		int lineStart = start;
+		int lineWidth = 0;
+
+		// last space of the line, and the width of what follows it
+		int lastSpace = -1;
+		int widthAfterSpace = 0;
+
+		for (int i = start; i < end; i++) {
+			final char c = text[i];
+
+			if (c == '\n') {
+				addTrimmedLine(text, lineStart, i, true);
+				lineStart = i + 1;
+				lineWidth = 0;
+				lastSpace = -1;
+				continue;
+			}
+
+			final int advance = (int) widths[i - start];
+
+			if (c == ' ') {
+				lastSpace = i;
+				widthAfterSpace = 0;
+				// leading spaces are trimmed, they don't count
+				if (lineWidth != 0) {
+					lineWidth += advance;
+				}
+				continue;
+			}
+
+			if (lineWidth + advance > maxWidth && i > lineStart) {
+				mWrapped = true;
+				if (lastSpace >= lineStart) {
+					addTrimmedLine(text, lineStart, lastSpace, false);
+					lineStart = lastSpace + 1;
+					lineWidth = widthAfterSpace;
+				}
+				else {
+					addTrimmedLine(text, lineStart, i, false);
+					lineStart = i;
+					lineWidth = 0;
+				}
+				lastSpace = -1;
+			}
+
+			lineWidth += advance;
+			widthAfterSpace += advance;
+		}
+
+		if (lineStart < end || mLineCount == 0) {
+			addTrimmedLine(text, lineStart, end, true);
+		}
+
+		return getOffsets();
+	}
+
+	/**
+	 * Number of lines found by the last call to breakLines().
+	 */
+	public int getLineCount() {
+		return mLineCount;
+	}
+
+	/**
+	 * Width of the widest line found by the last call to breakLines().
+	 */
+	public int getMaxWidth() {
+		return mMaxWidth;
+	}
+
+	/**
+	 * Width of a line found by the last call to breakLines().
+	 */
+	public int getLineWidth(int line) {
+		if (line < 0 || line >= mLineCount) {
+			throw new IndexOutOfBoundsException();
+		}
+		return mLineWidths[line];
+	}
+
+	/**
+	 * True if the last call to breakLines() had to break a line because of
+	 * the width. If not, the same lines are found for any width at least
+	 * getMaxWidth().
+	 */
+	public boolean isWrapped() {
+		return mWrapped;
+	}
+
+	/**
+	 * Adds text[start, end) without its leading and trailing spaces. A line
+	 * made only of spaces is dropped unless keepEmpty is set.
+	 */
+	private void addTrimmedLine(char[] text, int start, int end, boolean keepEmpty) {
+
+		while (start < end && text[start] == ' ') {
+			start++;
+		}
+		while (end > start && text[end - 1] == ' ') {
+			end--;
+		}
+
+		if (start == end && !keepEmpty) {
+			return;
+		}
+
+		final float[] widths = mWidths;
+		int width = 0;
+		for (int i = start; i < end; i++) {
+			width += (int) widths[i - mStart];
+		}
+
+		addLine(start, end, width);
+	}
+
+	private void addLine(int start, int end, int width) {
+
+		final int n = mLineCount * 2;
+		if (n + 2 > mOffsets.length) {
+			final int[] offsets = new int[mOffsets.length * 2];
+			System.arraycopy(mOffsets, 0, offsets, 0, n);
+			mOffsets = offsets;
+		}
+
+		if (mLineCount == mLineWidths.length) {
+			final int[] lineWidths = new int[mLineCount * 2];
+			System.arraycopy(mLineWidths, 0, lineWidths, 0, mLineCount);
+			mLineWidths = lineWidths;
+		}
+
+		mOffsets[n] = start;
+		mOffsets[n + 1] = end;
+		mLineWidths[mLineCount] = width;
+		mLineCount++;
+
+		if (width > mMaxWidth) {
+			mMaxWidth = width;
+		}
+	}
+
+	private int[] getOffsets() {
+		final int[] offsets = new int[mLineCount * 2];
+		System.arraycopy(mOffsets, 0, offsets, 0, offsets.length);
+		return offsets;
+	}
+}
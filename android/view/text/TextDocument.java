@@ -0,0 +1,423 @@
+/*
+ * Copyright (C) 2006 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.view.text;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.util.Vector;
+
+import android.util.Log;
+
+/**
+ * A read only text, read from a stream as far as it is accessed. The text is
+ * kept in fixed size chunks, so a book doesn't need to fit in a single
+ * array, nor to be read before its first page can be shown.
+ *
+ * Only the part read so far has a known length; the methods reading past it
+ * read the stream as needed. A read error is handled as the end of the text.
+ *
+ * Read from a {@link Source}, at most {@link #MAX_LOADED_CHUNKS} chunks are
+ * held, the least recently used ones are dropped and read again from a
+ * reopened stream when accessed. The stream can only be skipped through, so
+ * reading a chunk again decodes the text before it. Read from a single
+ * {@link Reader} or a String, every chunk read stays in memory, 2 bytes per
+ * character.
+ */
+public class TextDocument {
+
+	private final static String TAG = "TextDocument";
+
+	/**
+	 * Number of characters per chunk.
+	 */
+	public final static int CHUNK_SIZE = 8192;
+
+	/**
+	 * Number of chunks held at most when the text comes from a
+	 * {@link Source}.
+	 */
+	public final static int MAX_LOADED_CHUNKS = 16;
+
+	/**
+	 * Where a text can be read again from its start, e.g. a file.
+	 */
+	public interface Source {
+
+		/**
+		 * A new stream of the text, from its start, the same text each time.
+		 */
+		Reader open() throws IOException;
+	}
+
+	private final Source mSource;
+
+	// reads on from mLength
+	private Reader mReader;
+	private boolean mComplete = false;
+
+	// char[CHUNK_SIZE] each, or null once dropped; the last one filled up
+	// to mLength and never dropped
+	private final Vector mChunks = new Vector();
+	private int mLength = 0;
+
+	// Integer, the indexes of the chunks held, least recently used first;
+	// only kept for a Source
+	private final Vector mLoaded = new Vector();
+	private int mLastIndex = -1;
+	private char[] mLastChunk = null;
+
+	// reads the dropped chunks again, at mReloadPosition
+	private Reader mReloadReader = null;
+	private int mReloadPosition = 0;
+
+	public TextDocument(Reader reader) {
+		mSource = null;
+		mReader = reader;
+	}
+
+	public TextDocument(InputStream stream, String encoding) throws UnsupportedEncodingException {
+		this(new InputStreamReader(stream, encoding));
+	}
+
+	/**
+	 * A text of which only a window of chunks is held, see
+	 * {@link #MAX_LOADED_CHUNKS}.
+	 */
+	public TextDocument(Source source) {
+		if (source == null) {
+			throw new IllegalArgumentException("source must not be null");
+		}
+		mSource = source;
+		mReader = null;
+	}
+
+	public TextDocument(String text) {
+		mSource = null;
+		mReader = null;
+		mComplete = true;
+		final int length = text.length();
+		for (int start = 0; start < length; start += CHUNK_SIZE) {
+			final char[] chunk = new char[CHUNK_SIZE];
+			final int end = Math.min(start + CHUNK_SIZE, length);
+			text.getChars(start, end, chunk, 0);
+			mChunks.addElement(chunk);
+		}
+		mLength = length;
+	}
+
+	/**
+	 * Number of characters read so far.
+	 */
+	public int getLoadedLength() {
+		return mLength;
+	}
+
+	/**
+	 * True once the whole stream has been read.
+	 */
+	public boolean isComplete() {
+		return mComplete;
+	}
+
+	/**
+	 * Reads the whole stream and returns the length of the text.
+	 */
+	public int length() {
+		while (readChunk()) {
+			// read on
+		}
+		return mLength;
+	}
+
+	/**
+	 * True if offset is a valid offset in the text, reading the stream up to
+	 * it if needed.
+	 */
+	public boolean exists(int offset) {
+		while (offset >= mLength) {
+			if (!readChunk()) {
+				return false;
+			}
+		}
+		return offset >= 0;
+	}
+
+	public char charAt(int offset) {
+		if (!exists(offset)) {
+			throw new IndexOutOfBoundsException("offset " + offset);
+		}
+		return getChunk(offset / CHUNK_SIZE)[offset % CHUNK_SIZE];
+	}
+
+	/**
+	 * Copies the characters [start, end) into dest from destOffset. The range
+	 * is clipped to the end of the text.
+	 *
+	 * @return the number of characters copied
+	 */
+	public int getChars(int start, int end, char[] dest, int destOffset) {
+		if (start < 0 || end < start) {
+			throw new IndexOutOfBoundsException("[" + start + ", " + end + ")");
+		}
+
+		exists(end - 1);
+		end = Math.min(end, mLength);
+
+		int offset = start;
+		while (offset < end) {
+			final char[] chunk = getChunk(offset / CHUNK_SIZE);
+			final int from = offset % CHUNK_SIZE;
+			final int count = Math.min(CHUNK_SIZE - from, end - offset);
+			System.arraycopy(chunk, from, dest, destOffset + offset - start, count);
+			offset += count;
+		}
+
+		return Math.max(end - start, 0);
+	}
+
+	/**
+	 * Offset of the first c at or after from, -1 if there is none.
+	 */
+	public int indexOf(char c, int from) {
+		for (int i = Math.max(from, 0); exists(i); i++) {
+			if (getChunk(i / CHUNK_SIZE)[i % CHUNK_SIZE] == c) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Offset of the last c at or before from, -1 if there is none.
+	 */
+	public int lastIndexOf(char c, int from) {
+		exists(from);
+		for (int i = Math.min(from, mLength - 1); i >= 0; i--) {
+			if (getChunk(i / CHUNK_SIZE)[i % CHUNK_SIZE] == c) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Stops reading the stream, the text is what has been read so far.
+	 */
+	public void close() {
+		if (mReader != null) {
+			close(mReader);
+			mReader = null;
+		}
+		mComplete = true;
+		closeReloadReader();
+	}
+
+	/**
+	 * The chunk at index, read again if it was dropped.
+	 */
+	private char[] getChunk(int index) {
+		if (index == mLastIndex) {
+			return mLastChunk;
+		}
+
+		char[] chunk = (char[]) mChunks.elementAt(index);
+		if (chunk == null) {
+			chunk = reloadChunks(index);
+		}
+		else {
+			touch(index);
+		}
+
+		mLastIndex = index;
+		mLastChunk = chunk;
+		return chunk;
+	}
+
+	/**
+	 * Fills the last chunk, or adds a new one.
+	 *
+	 * @return false at the end of the stream
+	 */
+	private boolean readChunk() {
+		if (mComplete) {
+			return false;
+		}
+		if (mReader == null) {
+			try {
+				mReader = mSource.open();
+			}
+			catch (IOException e) {
+				Log.e(TAG, "open failed: " + e);
+				close();
+				return false;
+			}
+		}
+
+		final int used = mLength % CHUNK_SIZE;
+		char[] chunk;
+		if (used == 0) {
+			chunk = new char[CHUNK_SIZE];
+			mChunks.addElement(chunk);
+		}
+		else {
+			chunk = (char[]) mChunks.lastElement();
+		}
+
+		int count;
+		try {
+			count = mReader.read(chunk, used, CHUNK_SIZE - used);
+		}
+		catch (IOException e) {
+			Log.e(TAG, "read failed at " + mLength + ": " + e);
+			count = -1;
+		}
+
+		if (count <= 0) {
+			if (used == 0) {
+				mChunks.removeElementAt(mChunks.size() - 1);
+			}
+			close();
+			return false;
+		}
+
+		mLength += count;
+		if (used == 0) {
+			touch(mChunks.size() - 1);
+		}
+		return true;
+	}
+
+	/**
+	 * Reads the dropped chunk at index again, with the dropped chunks before
+	 * it up to half the window, so that going back through the text doesn't
+	 * reopen the source for every chunk.
+	 */
+	private char[] reloadChunks(int index) {
+		int first = Math.max(index - MAX_LOADED_CHUNKS / 2 + 1, 0);
+		if (mReloadReader != null && mReloadPosition <= index * CHUNK_SIZE) {
+			// reading on is cheaper than reopening
+			first = Math.max(first, mReloadPosition / CHUNK_SIZE);
+		}
+
+		try {
+			if (mReloadReader == null || mReloadPosition > first * CHUNK_SIZE) {
+				closeReloadReader();
+				mReloadReader = mSource.open();
+				mReloadPosition = 0;
+			}
+			skip(first * CHUNK_SIZE - mReloadPosition);
+
+			for (int i = first; i <= index; i++) {
+				if (mChunks.elementAt(i) != null) {
+					skip(CHUNK_SIZE);
+					continue;
+				}
+				final char[] chunk = new char[CHUNK_SIZE];
+				read(chunk);
+				mChunks.setElementAt(chunk, i);
+				touch(i);
+			}
+		}
+		catch (IOException e) {
+			// the text changed under us, it can't be shown as it was
+			Log.e(TAG, "reading chunk " + index + " again failed: " + e);
+			closeReloadReader();
+			final char[] chunk = new char[CHUNK_SIZE];
+			for (int i = 0; i < CHUNK_SIZE; i++) {
+				chunk[i] = ' ';
+			}
+			mChunks.setElementAt(chunk, index);
+			touch(index);
+		}
+
+		return (char[]) mChunks.elementAt(index);
+	}
+
+	private void skip(int count) throws IOException {
+		while (count > 0) {
+			final long skipped = mReloadReader.skip(count);
+			if (skipped <= 0) {
+				throw new IOException("end of the text at " + mReloadPosition);
+			}
+			count -= skipped;
+			mReloadPosition += skipped;
+		}
+	}
+
+	private void read(char[] chunk) throws IOException {
+		int used = 0;
+		while (used < chunk.length) {
+			final int count = mReloadReader.read(chunk, used, chunk.length - used);
+			if (count <= 0) {
+				throw new IOException("end of the text at " + mReloadPosition);
+			}
+			used += count;
+			mReloadPosition += count;
+		}
+	}
+
+	/**
+	 * Makes the chunk at index the most recently used, then drops the least
+	 * recently used chunks over the window. Only for a Source.
+	 */
+	private void touch(int index) {
+		if (mSource == null) {
+			return;
+		}
+
+		final Integer key = new Integer(index);
+		mLoaded.removeElement(key);
+		mLoaded.addElement(key);
+
+		final int tail = mChunks.size() - 1;
+		int i = 0;
+		while (mLoaded.size() > MAX_LOADED_CHUNKS && i < mLoaded.size()) {
+			final int dropped = ((Integer) mLoaded.elementAt(i)).intValue();
+			if (dropped == tail) {
+				// still being filled
+				i++;
+				continue;
+			}
+			mLoaded.removeElementAt(i);
+			mChunks.setElementAt(null, dropped);
+			if (dropped == mLastIndex) {
+				mLastIndex = -1;
+				mLastChunk = null;
+			}
+		}
+	}
+
+	private void closeReloadReader() {
+		if (mReloadReader != null) {
+			close(mReloadReader);
+			mReloadReader = null;
+			mReloadPosition = 0;
+		}
+	}
+
+	private static void close(Reader reader) {
+		try {
+			reader.close();
+		}
+		catch (IOException e) {
+			Log.e(TAG, "close failed: " + e);
+		}
+	}
+}
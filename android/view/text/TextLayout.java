@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2006 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.view.text;
+
+import java.awt.Font;
+import java.util.Hashtable;
+import java.util.Vector;
+
+import android.graphics.Paint;
+
+/**
+ * The lines of a text broken for a font and a width: their offsets, their
+ * widths and the width of the widest one. Layouts are immutable and shared:
+ * the last ones obtained are kept in a small LRU cache keyed by (text, font,
+ * width), so the same string shown in several views, or measured several
+ * times with the same width, is only broken once.
+ */
+public final class TextLayout {
+
+	/**
+	 * Default number of layouts kept in the cache.
+	 */
+	public final static int DEFAULT_CACHE_SIZE = 64;
+
+	// Key -> TextLayout
+	private static final Hashtable sLayouts = new Hashtable();
+
+	// keys, least recently used first
+	private static final Vector sKeys = new Vector();
+
+	private static int sCacheSize = DEFAULT_CACHE_SIZE;
+
+	private static final LineBreaker sLineBreaker = new LineBreaker();
+
+	// reused for the lookups
+	private static final Key sLookupKey = new Key();
+
+	// statistics
+	private static int sHits = 0;
+	private static int sMisses = 0;
+
+	private final String mText;
+	private final Font mFont;
+	private final int mWidth;
+
+	// (start, end) pairs
+	private final int[] mOffsets;
+	private final int[] mLineWidths;
+	private final int mMaxWidth;
+	private final boolean mWrapped;
+
+	// built on demand, shared by the views drawing the layout
+	private final String[] mLineTexts;
+
+	private TextLayout(String text, Font font, int width, int[] offsets, LineBreaker breaker) {
+		mText = text;
+		mFont = font;
+		mWidth = width;
+
+		final int lineCount = offsets.length / 2;
+		mOffsets = offsets;
+		mLineWidths = new int[lineCount];
+		for (int i = 0; i < lineCount; i++) {
+			mLineWidths[i] = breaker.getLineWidth(i);
+		}
+		mMaxWidth = breaker.getMaxWidth();
+		mWrapped = breaker.isWrapped();
+
+		mLineTexts = new String[lineCount];
+	}
+
+	/**
+	 * Returns the layout of the text broken with the paint's font in lines of
+	 * at most maxWidth pixels, from the cache when possible.
+	 */
+	public static synchronized TextLayout obtain(Paint paint, String text, int maxWidth) {
+
+		final Font font = paint.getCurrentNativeTypeface();
+
+		final Key lookup = sLookupKey;
+		lookup.set(text, font, maxWidth);
+
+		TextLayout layout = (TextLayout) sLayouts.get(lookup);
+		if (layout != null) {
+			sHits++;
+			// most recently used last
+			final int index = sKeys.indexOf(lookup);
+			if (index != sKeys.size() - 1) {
+				final Object key = sKeys.elementAt(index);
+				sKeys.removeElementAt(index);
+				sKeys.addElement(key);
+			}
+			lookup.text = null;
+			return layout;
+		}
+
+		sMisses++;
+		lookup.text = null;
+
+		final int[] offsets = sLineBreaker.breakLines(paint, text, maxWidth);
+		layout = new TextLayout(text, font, maxWidth, offsets, sLineBreaker);
+
+		if (sCacheSize > 0) {
+			while (sKeys.size() >= sCacheSize) {
+				sLayouts.remove(sKeys.firstElement());
+				sKeys.removeElementAt(0);
+			}
+
+			final Key key = new Key();
+			key.set(text, font, maxWidth);
+			sLayouts.put(key, layout);
+			sKeys.addElement(key);
+		}
+
+		return layout;
+	}
+
+	/**
+	 * Sets the number of layouts kept in the cache, 0 disabling it.
+	 */
+	public static synchronized void setCacheSize(int size) {
+		sCacheSize = size < 0 ? 0 : size;
+		while (sKeys.size() > sCacheSize) {
+			sLayouts.remove(sKeys.firstElement());
+			sKeys.removeElementAt(0);
+		}
+	}
+
+	public static synchronized int getCacheSize() {
+		return sCacheSize;
+	}
+
+	public static synchronized void clearCache() {
+		sLayouts.clear();
+		sKeys.removeAllElements();
+	}
+
+	public static synchronized int getHitCount() {
+		return sHits;
+	}
+
+	public static synchronized int getMissCount() {
+		return sMisses;
+	}
+
+	// ---------------------------------------------------------------------------------
+
+	/**
+	 * True if this layout is also the layout of the text for the paint's font
+	 * and the given width: it was built for them, or none of its lines had to
+	 * be wrapped and they all fit in the width.
+	 */
+	public boolean isValidFor(Paint paint, String text, int maxWidth) {
+		if (mFont != paint.getCurrentNativeTypeface()) {
+			return false;
+		}
+		if (mText != text && !mText.equals(text)) {
+			return false;
+		}
+		return maxWidth == mWidth || (!mWrapped && maxWidth >= mMaxWidth);
+	}
+
+	public String getText() {
+		return mText;
+	}
+
+	public int getLineCount() {
+		return mLineTexts.length;
+	}
+
+	public int getLineStart(int line) {
+		return mOffsets[2 * line];
+	}
+
+	public int getLineEnd(int line) {
+		return mOffsets[2 * line + 1];
+	}
+
+	public int getLineWidth(int line) {
+		return mLineWidths[line];
+	}
+
+	/**
+	 * Width of the widest line.
+	 */
+	public int getMaxWidth() {
+		return mMaxWidth;
+	}
+
+	/**
+	 * The text of a line, without its surrounding spaces.
+	 */
+	public String getLineText(int line) {
+		String s = mLineTexts[line];
+		if (s == null) {
+			// racing threads build equal strings
+			s = mText.substring(mOffsets[2 * line], mOffsets[2 * line + 1]);
+			mLineTexts[line] = s;
+		}
+		return s;
+	}
+
+	// ---------------------------------------------------------------------------------
+
+	private static final class Key {
+		String text;
+		Font font;
+		int width;
+		int hash;
+
+		void set(String text, Font font, int width) {
+			this.text = text;
+			this.font = font;
+			this.width = width;
+			hash = (text.hashCode() * 31 + System.identityHashCode(font)) * 31 + width;
+		}
+
+		public int hashCode() {
+			return hash;
+		}
+
+		public boolean equals(Object o) {
+			if (!(o instanceof Key)) {
+				return false;
+			}
+			final Key k = (Key) o;
+			return hash == k.hash && width == k.width && font == k.font
+					&& (text == k.text || text.equals(k.text));
+		}
+	}
+}
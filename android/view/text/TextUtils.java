@@ -32,8 +32,6 @@
  */
 package android.view.text;
 
-import java.util.Vector;
-
 import android.graphics.Paint;
 
 
@@ -56,145 +54,26 @@ public class TextUtils {
 	
 	public static final class Metric {
 		
-		private static Paint mPaint = null;
-		private static String mText = null;
-		private static int mLength = 0;
-		private static int mWidth = 0;
-		private static int mPosition = 0;
-		private static int mStart = 0;
-		
 		/**
 		 * Generates array of lines which width is less than max width.
 		 * You can calculate height of whole text by multiply array.length * font.getHeight()
 		 * @param maxWidth maximum width of line in pixels
+		 * @see LineBreaker
 		 */
 		public static final String[] getTextLines(Paint textPaint, String text,int maxWidth) {
-			Vector lines = new Vector();
 			
 			if(isEmpty(text)) {
 				text = " ";
 			}
 			
-			mPaint = textPaint;
-			mText = text;
-			mLength = text.length();
-			mWidth = maxWidth;		
-			mPosition = 0;
-			mStart = 0;	
+			final int[] offsets = new LineBreaker().breakLines(textPaint, text, maxWidth);
 			
-			while(mPosition < (mLength) ) {
-
-				String s = null;
-				try {
-					s = nextLine();
-					
-					if(s != null) {
-						lines.addElement(s.trim());	
-					}
-	
-				}
-				catch(IndexOutOfBoundsException e) {/*hocus pocus*/};				
+			String line[] = new String[offsets.length / 2];
+			for (int i = 0; i < line.length; i++) {
+				line[i] = text.substring(offsets[2 * i], offsets[2 * i + 1]);
 			}
-			
-			String line[] = new String[lines.size()];
-			lines.copyInto(line);
-			lines = null;
 			return line;
 		}
-
-		private static final String nextLine(){
-			
-			if(mText == null) {
-				return null;
-			}
-			
-			int maxLength = mText.length();
-			int next = next();
-			
-			
-			if(mStart>=maxLength || next>maxLength) {
-				return null;
-			}
-				
-			
-			String nextLine = mText.substring(mStart, next);
-			
-			mStart = next;
-			
-			if( (mText.length()-1>mStart ) && ((mText.charAt(mStart)=='\n') || (mText.charAt(mStart)==' ')) ){
-				mPosition++;
-				mStart++;
-			}
-			return nextLine;
-		}
-
-		private static final int next(){
-			
-			int i = getNextWordIndex(mPosition);
-			
-			int lastBreak = -1;
-			
-			String line;
-			line = mText.substring(mPosition, i);
-			
-			int lineWidth = (int)mPaint.measureText(line);
-			
-			while (i<mLength && lineWidth<= mWidth) {
-				
-				if(mText.charAt(i)==' ' ) {
-					lastBreak = i;
-				}
-				else if(mText.charAt(i)== '\n') {
-					lastBreak = i;
-					break;
-				}
-				if(++i<mLength) {
-					i = getNextWordIndex(i);
-					line = mText.substring(mPosition, i);
-					lineWidth = (int)mPaint.measureText(line);
-				}
-			}
-			
-			if(i==mLength && lineWidth <= mWidth) {
-				mPosition = i;
-			}
-			else if(lastBreak == mPosition){
-				mPosition++;
-			}
-			else if(lastBreak < mPosition){
-				mPosition =i;
-			}
-			else{
-				mPosition = lastBreak;
-			}
-			return mPosition;
-		}
-
-		/**
-		 * 
-		 * @param startIndex
-		 * @return position of next word 
-		 */
-		private static final int getNextWordIndex(int startIndex){
-			
-			int space = mText.indexOf(' ', startIndex);
-			int newLine = mText.indexOf('\n', startIndex);
-			
-			if(space == -1 ) {
-				space = mLength;
-			}
-			
-			if(newLine == -1 ) {
-				newLine = mLength;
-			}
-			
-			if(space<newLine) {
-				return space;
-			}
-			else {
-				return newLine;
-			}
-		}
 	}	
 	
 	// -------------------------------------------------------------------------------------------
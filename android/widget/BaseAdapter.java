@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2006 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.widget;
+
+import java.util.Vector;
+
+import android.database.DataSetObserver;
+
+/**
+ * Common base class of common implementation for an {@link Adapter}.
+ * Subclasses call {@link #notifyDataSetChanged()} when their data change, the
+ * views showing them lay out their rows again.
+ */
+public abstract class BaseAdapter implements Adapter {
+
+    // DataSetObserver, notified last registered first
+    private final Vector mObservers = new Vector();
+
+    public void registerDataSetObserver(DataSetObserver observer) {
+        if (observer == null) {
+            throw new IllegalArgumentException("The observer is null.");
+        }
+        if (mObservers.contains(observer)) {
+            throw new IllegalStateException("Observer " + observer + " is already registered.");
+        }
+        mObservers.addElement(observer);
+    }
+
+    public void unregisterDataSetObserver(DataSetObserver observer) {
+        mObservers.removeElement(observer);
+    }
+
+    /**
+     * Notifies the attached View that the underlying data has been changed
+     * and it should refresh itself.
+     */
+    public void notifyDataSetChanged() {
+        for (int i = mObservers.size() - 1; i >= 0; i--) {
+            ((DataSetObserver) mObservers.elementAt(i)).onChanged();
+        }
+    }
+
+    /**
+     * Notifies the attached View that the underlying data is no longer valid.
+     */
+    public void notifyDataSetInvalidated() {
+        for (int i = mObservers.size() - 1; i >= 0; i--) {
+            ((DataSetObserver) mObservers.elementAt(i)).onInvalidated();
+        }
+    }
+
+    public long getItemId(int position) {
+        return position;
+    }
+
+    public int getItemViewType(int position) {
+        return 0;
+    }
+
+    public int getViewTypeCount() {
+        return 1;
+    }
+
+    public boolean isEmpty() {
+        return getCount() == 0;
+    }
+}
@@ -16,16 +16,23 @@
 
 package android.widget;
 
+import java.awt.Font;
+
 import com.flowme.FlowDisplay;
 import com.flowme.util.Color;
+import android.graphics.Canvas;
 import android.graphics.Paint;
+import android.graphics.Rect;
 import android.graphics.drawable.ShapeDrawable;
 import android.graphics.drawable.StateListDrawable;
 import android.graphics.drawable.shapes.RoundRectShape;
 import android.util.Log;
 import android.util.StateSet;
+import android.view.Gravity;
 import android.view.KeyEvent;
 import android.view.View;
+import android.view.text.GapBuffer;
+import android.view.text.LineBreaker;
 
 
 
@@ -40,6 +47,10 @@ import android.view.View;
  * EditText is a thin veneer over TextView that configures itself
  * to be editable.
  * <p>
+ * The text is kept in a gap buffer. An edit only breaks again the paragraph
+ * it happened in, and only redraws its lines and the caret, unless the
+ * number of lines changed.
+ * <p>
  * <b>XML attributes</b>
  * <p>
  * See {@link android.R.styleable#EditText EditText Attributes},
@@ -52,6 +63,41 @@ public class EditText extends TextView {
 	
 	private int mInputType = 0;
 	
+	private final static int CARET_WIDTH = 2;
+	
+	// shared by the edit texts, only used on the UI thread
+	private static final LineBreaker sLineBreaker = new LineBreaker();
+	
+	private final GapBuffer mBuffer = new GapBuffer();
+	private int mCursor = 0;
+	
+	// the lines, 0 until the first measure; unlike the lines of the
+	// breaker they keep their spaces
+	private int[] mLineStarts = new int[8];
+	private int[] mLineEnds = new int[8];
+	private int[] mLineWidths = new int[8];
+	private String[] mLineTexts = new String[8];
+	private int mLineCount = 0;
+	private int mMaxLineWidth = 0;
+	
+	// what the lines were broken for
+	private int mBreakWidth = 0;
+	private Font mLayoutFont = null;
+	private int mWidthMode = MeasureSpec.UNSPECIFIED;
+	private int mHeightMode = MeasureSpec.UNSPECIFIED;
+	
+	// lines of the paragraphs being broken again
+	private int[] mNewLineStarts = new int[8];
+	private int[] mNewLineEnds = new int[8];
+	private int[] mNewLineWidths = new int[8];
+	private int mNewLineCount = 0;
+	
+	private char[] mScratch = new char[64];
+	
+	private final Rect mCaretRect = new Rect();
+	private final Paint mCaretPaint = new Paint();
+	private final Paint.FontMetricsInt mFontMetrics = new Paint.FontMetricsInt();
+	
 	/*
 	public EditText(Context context) {
         this(context, null);
@@ -110,15 +156,16 @@ public class EditText extends TextView {
 		if(keyCode >= KeyEvent.KEYCODE_A && keyCode<= KeyEvent.KEYCODE_Z) {
 			addChar ((char) ('a' + keyCode-KeyEvent.KEYCODE_A));
 		}
-		if(keyCode >= KeyEvent.KEYCODE_0 && keyCode<= KeyEvent.KEYCODE_9) {
+		else if(keyCode >= KeyEvent.KEYCODE_0 && keyCode<= KeyEvent.KEYCODE_9) {
 			addChar ((char) ('0' + keyCode-KeyEvent.KEYCODE_0));
 		}
+		else if(keyCode == KeyEvent.KEYCODE_SPACE) {
+			addChar(' ');
+		}
 		else if(keyCode == KeyEvent.KEYCODE_DEL) {
 			
-			String old=getText();
-			
-			if(old.length()>0) {
-				setText(old.substring(0,old.length()-1));
+			if(mCursor > 0) {
+				edit(mCursor - 1, 1, '\0');
 			}
 			
 		}
@@ -132,9 +179,429 @@ public class EditText extends TextView {
 	
 	
     private void addChar(char c) {
-    	setText(getText()+c);
+    	edit(mCursor, 0, c);
+    }
+    
+    /**
+     * The text being edited. The string is built again after each edit, when
+     * first asked for.
+     */
+    public String getText() {
+    	return mBuffer.toString();
+    }
+    
+    public void setText(String text) {
+    	if (text == null) {
+    		text = "";
+    	}
+    	if (text.equals(mBuffer.toString())) {
+    		return;
+    	}
+    	
+    	mBuffer.set(text);
+    	mCursor = text.length();
+    	mLineCount = 0;
+    	
+    	requestLayout();
+    	invalidate();
+    }
+    
+    /**
+     * Moves the cursor, the text is inserted at its position.
+     */
+    public void setSelection(int index) {
+    	if (index < 0 || index > mBuffer.length()) {
+    		throw new IndexOutOfBoundsException();
+    	}
+    	if (index != mCursor) {
+    		invalidateCaret();
+    		mCursor = index;
+    		invalidateCaret();
+    	}
+    }
+    
+    public int getSelectionStart() {
+    	return mCursor;
+    }
+    
+    public int getSelectionEnd() {
+    	return mCursor;
+    }
+    
+    /**
+     * Removes count characters at where, then inserts c if count is 0. Only
+     * the paragraph containing the edit is broken again, and only its lines
+     * are redrawn, unless the number of lines changed.
+     */
+    private void edit(int where, int count, char c) {
+    	
+    	invalidateCaret();
+    	
+    	int inserted = 0;
+    	if (count > 0) {
+    		mBuffer.delete(where, where + count);
+    		mCursor = where;
+    	}
+    	else {
+    		mBuffer.insert(where, c);
+    		mCursor = where + 1;
+    		inserted = 1;
+    	}
+    	
+    	if (mLineCount == 0) {
+    		// never laid out
+    		requestLayout();
+    		invalidate();
+    		return;
+    	}
+    	
+    	final int delta = inserted - count;
+    	
+    	// the paragraphs touched by the edit, in the new text
+    	final int start = mBuffer.lastIndexOf('\n', where - 1) + 1;
+    	int end = mBuffer.indexOf('\n', where + inserted);
+    	if (end < 0) {
+    		end = mBuffer.length();
+    	}
+    	
+    	// their lines, in the old text
+    	final int oldEnd = end - delta;
+    	int first = 0;
+    	while (first < mLineCount && mLineStarts[first] < start) {
+    		first++;
+    	}
+    	int last = first;
+    	while (last < mLineCount && mLineStarts[last] <= oldEnd) {
+    		last++;
+    	}
+    	
+    	final int oldCount = last - first;
+    	final int oldMaxWidth = mMaxLineWidth;
+    	
+    	final int newCount = relayout(first, last, start, end, delta);
+    	
+    	final boolean linesMoved = newCount != oldCount;
+    	final boolean widthChanged = mMaxLineWidth != oldMaxWidth;
+    	
+    	if ((linesMoved && mHeightMode != MeasureSpec.EXACTLY)
+    			|| (widthChanged && mWidthMode != MeasureSpec.EXACTLY)) {
+    		requestLayout();
+    	}
+    	else if (linesMoved || widthChanged) {
+    		// same size for the current specs, not for the cached ones
+    		invalidateMeasureCache();
+    	}
+    	
+    	if (widthChanged && (getGravity() & Gravity.HORIZONTAL_GRAVITY_MASK) != Gravity.LEFT) {
+    		// every line moves
+    		invalidate();
+    	}
+    	else {
+    		final int bottom = linesMoved ? getHeight() : getLineBottom(first + newCount - 1);
+    		invalidate(0, getLineTop(first), getWidth(), bottom);
+    	}
+    	
+    	invalidateCaret();
+    }
+    
+    /**
+     * Replaces the lines [first, last) with the lines of the paragraphs in
+     * [start, end) of the text, and shifts the following lines by delta.
+     *
+     * @return the number of lines of the paragraphs
+     */
+    private int relayout(int first, int last, int start, int end, int delta) {
+    	
+    	final Paint paint = getPaint();
+    	
+    	// break the paragraphs aside, then splice them in
+    	mNewLineCount = 0;
+    	
+    	int paragraphStart = start;
+    	while (true) {
+    		int paragraphEnd = mBuffer.indexOf('\n', paragraphStart);
+    		if (paragraphEnd < 0 || paragraphEnd > end) {
+    			paragraphEnd = end;
+    		}
+    		
+    		final int length = paragraphEnd - paragraphStart;
+    		if (mScratch.length < length) {
+    			mScratch = new char[Math.max(length, mScratch.length * 2)];
+    		}
+    		mBuffer.getChars(paragraphStart, paragraphEnd, mScratch, 0);
+    		
+    		// the breaker trims the lines, the spaces are given back so that
+    		// the lines cover the paragraph and the caret can stand after a
+    		// space: the leading ones to the first line, the others to the
+    		// line they end
+    		final int[] offsets = sLineBreaker.breakLines(paint, mScratch, 0, length, mBreakWidth);
+    		final int lineCount = offsets.length / 2;
+    		for (int i = 0; i < lineCount; i++) {
+    			final int lineStart = i == 0 ? 0 : offsets[2 * i];
+    			final int lineEnd = i + 1 < lineCount ? offsets[2 * i + 2] : length;
+    			int width = sLineBreaker.getLineWidth(i);
+    			if (i == 0 && offsets[0] > 0) {
+    				width += (int) paint.measureText(mScratch, 0, offsets[0]);
+    			}
+    			addNewLine(paragraphStart + lineStart, paragraphStart + lineEnd, width);
+    		}
+    		
+    		if (paragraphEnd == end) {
+    			break;
+    		}
+    		paragraphStart = paragraphEnd + 1;
+    	}
+    	
+    	final int newCount = mNewLineCount;
+    	final int tail = mLineCount - last;
+    	
+    	ensureLineCapacity(first + newCount + tail);
+    	
+    	System.arraycopy(mLineStarts, last, mLineStarts, first + newCount, tail);
+    	System.arraycopy(mLineEnds, last, mLineEnds, first + newCount, tail);
+    	System.arraycopy(mLineWidths, last, mLineWidths, first + newCount, tail);
+    	System.arraycopy(mLineTexts, last, mLineTexts, first + newCount, tail);
+    	
+    	System.arraycopy(mNewLineStarts, 0, mLineStarts, first, newCount);
+    	System.arraycopy(mNewLineEnds, 0, mLineEnds, first, newCount);
+    	System.arraycopy(mNewLineWidths, 0, mLineWidths, first, newCount);
+    	for (int i = first; i < first + newCount; i++) {
+    		mLineTexts[i] = null;
+    	}
+    	
+    	final int oldLineCount = mLineCount;
+    	mLineCount = first + newCount + tail;
+    	for (int i = mLineCount; i < oldLineCount; i++) {
+    		mLineTexts[i] = null;
+    	}
+    	
+    	if (delta != 0) {
+    		for (int i = first + newCount; i < mLineCount; i++) {
+    			mLineStarts[i] += delta;
+    			mLineEnds[i] += delta;
+    		}
+    	}
+    	
+    	int maxWidth = 0;
+    	for (int i = 0; i < mLineCount; i++) {
+    		if (mLineWidths[i] > maxWidth) {
+    			maxWidth = mLineWidths[i];
+    		}
+    	}
+    	mMaxLineWidth = maxWidth;
+    	
+    	return newCount;
+    }
+    
+    /**
+     * Breaks the whole text again, for a new width or font.
+     */
+    private void relayoutAll(int breakWidth) {
+    	mBreakWidth = breakWidth;
+    	mLayoutFont = getPaint().getCurrentNativeTypeface();
+    	
+    	final int oldCount = mLineCount;
+    	mLineCount = 0;
+    	relayout(0, 0, 0, mBuffer.length(), 0);
+    	
+    	for (int i = mLineCount; i < oldCount; i++) {
+    		mLineTexts[i] = null;
+    	}
+    }
+    
+    private void addNewLine(int start, int end, int width) {
+    	final int n = mNewLineCount;
+    	if (n == mNewLineStarts.length) {
+    		mNewLineStarts = grow(mNewLineStarts, n * 2);
+    		mNewLineEnds = grow(mNewLineEnds, n * 2);
+    		mNewLineWidths = grow(mNewLineWidths, n * 2);
+    	}
+    	mNewLineStarts[n] = start;
+    	mNewLineEnds[n] = end;
+    	mNewLineWidths[n] = width;
+    	mNewLineCount++;
+    }
+    
+    private void ensureLineCapacity(int count) {
+    	if (count > mLineStarts.length) {
+    		final int size = Math.max(count, mLineStarts.length * 2);
+    		mLineStarts = grow(mLineStarts, size);
+    		mLineEnds = grow(mLineEnds, size);
+    		mLineWidths = grow(mLineWidths, size);
+    		
+    		final String[] texts = new String[size];
+    		System.arraycopy(mLineTexts, 0, texts, 0, mLineTexts.length);
+    		mLineTexts = texts;
+    	}
+    }
+    
+    private static int[] grow(int[] array, int size) {
+    	final int[] grown = new int[size];
+    	System.arraycopy(array, 0, grown, 0, array.length);
+    	return grown;
+    }
+    
+    private String getLineText(int line) {
+    	String s = mLineTexts[line];
+    	if (s == null) {
+    		final int start = mLineStarts[line];
+    		final int length = mLineEnds[line] - start;
+    		if (mScratch.length < length) {
+    			mScratch = new char[Math.max(length, mScratch.length * 2)];
+    		}
+    		mBuffer.getChars(start, start + length, mScratch, 0);
+    		s = new String(mScratch, 0, length);
+    		mLineTexts[line] = s;
+    	}
+    	return s;
+    }
+    
+    // ---------------------------------------------------------------------------------
+    // geometry
+    
+    private int getLineTop(int line) {
+    	return mPaddingTop + line * getPaint().getFontMetricsInt(null);
     }
     
+    private int getLineBaseline(int line) {
+    	return mPaddingTop + (line + 1) * getPaint().getFontMetricsInt(null);
+    }
+    
+    private int getLineBottom(int line) {
+    	// descenders go below the baseline
+    	getPaint().getFontMetricsInt(mFontMetrics);
+    	return getLineBaseline(line) + mFontMetrics.descent;
+    }
+    
+    private int getLineLeft() {
+    	int left = mPaddingLeft;
+    	
+    	final int gravity = getGravity() & Gravity.HORIZONTAL_GRAVITY_MASK;
+    	final int room = getWidth() - mMaxLineWidth - CARET_WIDTH - mPaddingLeft - mPaddingRight;
+    	
+    	if (gravity == Gravity.CENTER_HORIZONTAL) {
+    		left += room / 2;
+    	}
+    	else if (gravity == Gravity.RIGHT) {
+    		left += room;
+    	}
+    	return left;
+    }
+    
+    /**
+     * Line showing the cursor: the last one starting before it.
+     */
+    private int getCursorLine() {
+    	int line = 0;
+    	while (line + 1 < mLineCount && mLineStarts[line + 1] <= mCursor) {
+    		line++;
+    	}
+    	return line;
+    }
+    
+    private void getCaretRect(Rect out) {
+    	final int line = getCursorLine();
+    	final int start = mLineStarts[line];
+    	final int end = Math.min(Math.max(mCursor, start), mLineEnds[line]);
+    	
+    	final int length = end - start;
+    	if (mScratch.length < length) {
+    		mScratch = new char[Math.max(length, mScratch.length * 2)];
+    	}
+    	mBuffer.getChars(start, end, mScratch, 0);
+    	
+    	final int x = getLineLeft() + (int) getPaint().measureText(mScratch, 0, length);
+    	out.set(x, getLineTop(line), x + CARET_WIDTH, getLineBottom(line));
+    }
+    
+    private void invalidateCaret() {
+    	if (mLineCount > 0 && isFocused()) {
+    		getCaretRect(mCaretRect);
+    		invalidate(mCaretRect.left, mCaretRect.top, mCaretRect.right, mCaretRect.bottom);
+    	}
+    }
+    
+    // ---------------------------------------------------------------------------------
+    
+    public void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+    	
+		final int widthMode = MeasureSpec.getMode(widthMeasureSpec);
+		final int heightMode = MeasureSpec.getMode(heightMeasureSpec);
+		final int width = MeasureSpec.getSize(widthMeasureSpec);
+		final int height = MeasureSpec.getSize(heightMeasureSpec);
+		
+		mWidthMode = widthMode;
+		mHeightMode = heightMode;
+		
+		final int horizontalPadding = mPaddingLeft + mPaddingRight + CARET_WIDTH;
+		final int breakWidth = widthMode == MeasureSpec.UNSPECIFIED ? Integer.MAX_VALUE
+				: width - horizontalPadding;
+		
+		if (mLineCount == 0 || breakWidth != mBreakWidth
+				|| mLayoutFont != getPaint().getCurrentNativeTypeface()) {
+			relayoutAll(breakWidth);
+		}
+		
+		int measuredWidth;
+		if (widthMode == MeasureSpec.EXACTLY) {
+			measuredWidth = width;
+		}
+		else {
+			measuredWidth = Math.max(mMaxLineWidth + horizontalPadding, getMinWidth());
+			if (widthMode == MeasureSpec.AT_MOST) {
+				measuredWidth = Math.min(measuredWidth, width);
+			}
+		}
+		
+		final int textHeight = getPaint().getFontMetricsInt(null) * mLineCount + mPaddingTop + mPaddingBottom;
+		
+		int measuredHeight;
+		if (heightMode == MeasureSpec.EXACTLY) {
+			measuredHeight = height;
+		}
+		else {
+			measuredHeight = Math.max(textHeight, getMinHeight());
+			if (heightMode == MeasureSpec.AT_MOST) {
+				measuredHeight = Math.min(measuredHeight, height);
+			}
+		}
+		
+		setMeasuredDimension(measuredWidth, measuredHeight);
+    }
+    
+	protected void onDraw(Canvas canvas) {
+		
+		if (mLineCount == 0) {
+			return;
+		}
+		
+		final Paint paint = getPaint();
+		final int left = getLineLeft();
+		final int right = getWidth();
+		
+		for (int i = 0; i < mLineCount; i++) {
+			
+			final int top = getLineTop(i);
+			if (top >= getHeight()) {
+				break;
+			}
+			
+			if (canvas.quickReject(left, top, right, getLineBottom(i))) {
+				continue;
+			}
+			
+			canvas.drawText(getLineText(i), left, getLineBaseline(i), paint);
+		}
+		
+		if (isFocused()) {
+			getCaretRect(mCaretRect);
+			if (!canvas.quickReject(mCaretRect.left, mCaretRect.top, mCaretRect.right, mCaretRect.bottom)) {
+				mCaretPaint.setColor(paint.getColor());
+				canvas.drawRect(mCaretRect, mCaretPaint);
+			}
+		}
+	}
+	
 
     // Override
     //protected boolean getDefaultEditable() {
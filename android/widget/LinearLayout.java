@@ -16,6 +16,7 @@
 
 package android.widget;
 
+import android.graphics.Rect;
 import android.view.Gravity;
 import android.view.View;
 import android.view.ViewGroup;
@@ -70,6 +71,14 @@ public class LinearLayout extends ViewGroup {
     private int[] mMaxAscent;
     private int[] mMaxDescent;
 
+    /**
+     * Bottom (right for a horizontal layout) of the children laid out up to
+     * each index, at the last layout. Used to find the children in the
+     * viewport with a binary search; not valid if the children overlap.
+     */
+    private int[] mChildEdges = new int[0];
+    private int mChildEdgesCount = -1;
+
     private static final int VERTICAL_GRAVITY_COUNT = 4;
 
     private static final int INDEX_CENTER_VERTICAL = 0;
@@ -888,6 +897,74 @@ public class LinearLayout extends ViewGroup {
         } else {
             layoutHorizontal();
         }
+
+        if (isCullToViewport()) {
+            updateChildEdges();
+        }
+    }
+
+    /**
+     * Records the edges of the children in mChildEdges, or invalidates them
+     * if the children overlap (negative margins, offsets).
+     */
+    private void updateChildEdges() {
+        final int count = getChildCount();
+        if (mChildEdges.length < count) {
+            mChildEdges = new int[count];
+        }
+
+        final boolean vertical = mOrientation == VERTICAL;
+        final int[] edges = mChildEdges;
+        int edge = Integer.MIN_VALUE;
+
+        for (int i = 0; i < count; i++) {
+            final View child = getChildAt(i);
+            // a gone child keeps its old bounds
+            if (child.getVisibility() != GONE) {
+                final int start = vertical ? child.getTop() : child.getLeft();
+                if (start < edge) {
+                    mChildEdgesCount = -1;
+                    return;
+                }
+                edge = vertical ? child.getBottom() : child.getRight();
+            }
+            edges[i] = edge;
+        }
+
+        mChildEdgesCount = count;
+    }
+
+    // Override
+    protected int getFirstChildInViewport(Rect viewport) {
+        if (mChildEdgesCount != getChildCount()) {
+            // not laid out yet
+            return 0;
+        }
+
+        final int viewportStart = mOrientation == VERTICAL ? viewport.top : viewport.left;
+        final int[] edges = mChildEdges;
+
+        // first child ending after the start of the viewport
+        int low = 0;
+        int high = mChildEdgesCount;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (edges[mid] <= viewportStart) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Override
+    protected boolean isPastViewport(View child, Rect viewport) {
+        if (mChildEdgesCount != getChildCount()) {
+            return false;
+        }
+        return mOrientation == VERTICAL ? child.getTop() >= viewport.bottom
+                : child.getLeft() >= viewport.right;
     }
 
     /**
@@ -0,0 +1,826 @@
+/*
+ * Copyright (C) 2006 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.widget;
+
+import java.util.Vector;
+
+import com.flowme.util.Color;
+
+import android.database.DataSetObserver;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.drawable.Drawable;
+import android.graphics.drawable.ShapeDrawable;
+import android.graphics.drawable.shapes.RoundRectShape;
+import android.view.KeyEvent;
+import android.view.View;
+import android.view.ViewGroup;
+
+/**
+ * A view that shows items in a vertically scrolling list. The items come from
+ * the {@link Adapter} associated with this view.
+ *
+ * Only the rows in view, plus the ones within a small margin above and below,
+ * exist as children: rows leaving the margin go to a scrap heap (one per view
+ * type) and are handed back to the adapter as convertView for the rows coming
+ * in. Measuring and laying out the list costs O(rows in view), whatever the
+ * number of items.
+ *
+ * The list takes the focus itself and keeps a selected item: DPAD up and down
+ * move the selection by one row, DPAD left and right (the page turn keys) by
+ * a page, scrolling as needed, and ENTER or DPAD center clicks it. Moving past
+ * the first or last item lets the focus leave the list.
+ */
+public class ListView extends AdapterView {
+
+	/**
+	 * Default height, in pixels, of the margins above and below the list
+	 * where rows are kept laid out.
+	 */
+	public final static int DEFAULT_PRELOAD_MARGIN = 64;
+
+	// layout modes
+	private final static int LAYOUT_NORMAL = 0;
+	// mSyncPosition at mSpecificTop
+	private final static int LAYOUT_SPECIFIC = 1;
+
+	private Adapter mAdapter;
+	private AdapterDataSetObserver mDataSetObserver;
+
+	private final RecycleBin mRecycler = new RecycleBin();
+
+	private int mLayoutMode = LAYOUT_NORMAL;
+	private int mSyncPosition;
+	private int mSpecificTop;
+
+	private int mPreloadMargin = DEFAULT_PRELOAD_MARGIN;
+
+	// drawn over the selected row while the list has the focus
+	private Drawable mSelector;
+
+	private final Rect mTempRect = new Rect();
+
+	public ListView(/*Context context, AttributeSet attrs, int defStyle*/) {
+		super(/*context, attrs, defStyle*/);
+
+		ShapeDrawable selector = new ShapeDrawable(new RoundRectShape(15, 15));
+		selector.getPaint().setStyle(Paint.STROKE);
+		selector.getPaint().setColor(Color.BLACK);
+		mSelector = selector;
+
+		setFocusable(true);
+		// the rows get no focus, the list keeps a selection instead
+		setDescendantFocusability(FOCUS_BLOCK_DESCENDANTS);
+	}
+
+	/**
+	 * Per-child layout information: the view type of the row, for the scrap
+	 * heap.
+	 */
+	public static class LayoutParams extends ViewGroup.LayoutParams {
+
+		int viewType;
+
+		public LayoutParams(int width, int height) {
+			super(width, height);
+		}
+
+		public LayoutParams(ViewGroup.LayoutParams source) {
+			super(source);
+		}
+	}
+
+	// ---------------------------------------------------------------------------------
+	// adapter
+
+	public Adapter getAdapter() {
+		return mAdapter;
+	}
+
+	/**
+	 * Sets the data behind this ListView.
+	 */
+	public void setAdapter(Adapter adapter) {
+		if (mAdapter != null) {
+			mAdapter.unregisterDataSetObserver(mDataSetObserver);
+		}
+
+		removeAllViewsInLayout();
+		mRecycler.clear();
+
+		mAdapter = adapter;
+		mFirstPosition = 0;
+		mSelectedPosition = INVALID_POSITION;
+		mLayoutMode = LAYOUT_NORMAL;
+
+		if (adapter != null) {
+			mItemCount = adapter.getCount();
+			mRecycler.setViewTypeCount(adapter.getViewTypeCount());
+
+			if (mDataSetObserver == null) {
+				mDataSetObserver = new AdapterDataSetObserver();
+			}
+			adapter.registerDataSetObserver(mDataSetObserver);
+		}
+		else {
+			mItemCount = 0;
+		}
+
+		mDataChanged = true;
+		requestLayout();
+		invalidate();
+	}
+
+	private final class AdapterDataSetObserver extends DataSetObserver {
+
+		public void onChanged() {
+			dataSetChanged(false);
+		}
+
+		public void onInvalidated() {
+			dataSetChanged(true);
+		}
+	}
+
+	private void dataSetChanged(boolean invalidated) {
+		mDataChanged = true;
+		mItemCount = mAdapter.getCount();
+
+		if (invalidated || mItemCount == 0) {
+			setSelectedPositionInt(INVALID_POSITION);
+		}
+		else if (mSelectedPosition >= mItemCount) {
+			setSelectedPositionInt(mItemCount - 1);
+		}
+
+		requestLayout();
+	}
+
+	// ---------------------------------------------------------------------------------
+	// settings
+
+	/**
+	 * Sets the height, in pixels, of the margins above and below the list
+	 * where rows are kept laid out.
+	 */
+	public void setPreloadMargin(int margin) {
+		mPreloadMargin = Math.max(margin, 0);
+		requestLayout();
+	}
+
+	public int getPreloadMargin() {
+		return mPreloadMargin;
+	}
+
+	/**
+	 * Sets the drawable drawn over the selected row, null for none.
+	 */
+	public void setSelector(Drawable selector) {
+		mSelector = selector;
+		invalidateSelection();
+	}
+
+	public Drawable getSelector() {
+		return mSelector;
+	}
+
+	// ---------------------------------------------------------------------------------
+	// selection
+
+	public View getSelectedView() {
+		final int index = mSelectedPosition - mFirstPosition;
+		if (mSelectedPosition >= 0 && index >= 0 && index < getChildCount()) {
+			return getChildAt(index);
+		}
+		return null;
+	}
+
+	public void setSelection(int position) {
+		if (mAdapter == null || position < 0 || position >= mItemCount) {
+			return;
+		}
+
+		setSelectedPositionInt(position);
+
+		if (!mDataChanged && !isLayoutRequested() && position >= mFirstPosition - getChildCount()
+				&& position < mFirstPosition + 2 * getChildCount()) {
+			// near enough to scroll to it
+			makeVisible(position);
+		}
+		else {
+			// laid out at the top
+			mLayoutMode = LAYOUT_SPECIFIC;
+			mSyncPosition = position;
+			mSpecificTop = mPaddingTop;
+			requestLayout();
+		}
+	}
+
+	private void setSelectedPositionInt(int position) {
+		if (position == mSelectedPosition) {
+			return;
+		}
+
+		invalidateSelection();
+		View selected = getSelectedView();
+		if (selected != null) {
+			selected.setSelected(false);
+		}
+
+		mSelectedPosition = position;
+
+		invalidateSelection();
+		selected = getSelectedView();
+		if (selected != null) {
+			selected.setSelected(true);
+		}
+
+		fireOnSelected();
+	}
+
+	private void invalidateSelection() {
+		final View selected = getSelectedView();
+		if (selected != null) {
+			invalidate(selected.getLeft(), selected.getTop(), selected.getRight(), selected.getBottom());
+		}
+	}
+
+	/**
+	 * Position of the first row fully in view, or of the first row if none
+	 * is.
+	 */
+	private int getFirstFullyVisiblePosition() {
+		final int listTop = mPaddingTop;
+		final int listBottom = getHeight() - mPaddingBottom;
+		final int count = getChildCount();
+		for (int i = 0; i < count; i++) {
+			final View child = getChildAt(i);
+			if (child.getTop() >= listTop && child.getBottom() <= listBottom) {
+				return mFirstPosition + i;
+			}
+		}
+		for (int i = 0; i < count; i++) {
+			if (getChildAt(i).getBottom() > listTop) {
+				return mFirstPosition + i;
+			}
+		}
+		return mFirstPosition;
+	}
+
+	protected void onFocusChanged(boolean gainFocus, int direction, Rect previouslyFocusedRect) {
+		super.onFocusChanged(gainFocus, direction, previouslyFocusedRect);
+
+		if (gainFocus && mSelectedPosition == INVALID_POSITION && mItemCount > 0) {
+			setSelectedPositionInt(getChildCount() > 0 ? getFirstFullyVisiblePosition() : 0);
+		}
+	}
+
+	public boolean onKeyDown(int keyCode, KeyEvent event) {
+		if (mAdapter == null || mDataChanged) {
+			return super.onKeyDown(keyCode, event);
+		}
+
+		switch (keyCode) {
+		case KeyEvent.KEYCODE_DPAD_DOWN:
+			return arrowScroll(1);
+
+		case KeyEvent.KEYCODE_DPAD_UP:
+			return arrowScroll(-1);
+
+		case KeyEvent.KEYCODE_DPAD_RIGHT:
+			return pageScroll(1);
+
+		case KeyEvent.KEYCODE_DPAD_LEFT:
+			return pageScroll(-1);
+
+		case KeyEvent.KEYCODE_DPAD_CENTER:
+		case KeyEvent.KEYCODE_ENTER:
+			if (mSelectedPosition >= 0 && isEnabled()) {
+				return true;
+			}
+			break;
+		}
+		return super.onKeyDown(keyCode, event);
+	}
+
+	public boolean onKeyUp(int keyCode, KeyEvent event) {
+		switch (keyCode) {
+		case KeyEvent.KEYCODE_DPAD_CENTER:
+		case KeyEvent.KEYCODE_ENTER:
+			if (mAdapter != null && mSelectedPosition >= 0 && isEnabled()) {
+				performItemClick(getSelectedView(), mSelectedPosition, mAdapter.getItemId(mSelectedPosition));
+				return true;
+			}
+			break;
+		}
+		return super.onKeyUp(keyCode, event);
+	}
+
+	/**
+	 * Moves the selection by one row.
+	 *
+	 * @return false at the end of the list
+	 */
+	private boolean arrowScroll(int direction) {
+		if (mItemCount == 0) {
+			return false;
+		}
+
+		final int next = mSelectedPosition == INVALID_POSITION ? getFirstFullyVisiblePosition()
+				: mSelectedPosition + direction;
+		if (next < 0 || next >= mItemCount) {
+			return false;
+		}
+
+		setSelectedPositionInt(next);
+		makeVisible(next);
+		return true;
+	}
+
+	/**
+	 * Scrolls by a page and selects its first row.
+	 *
+	 * @return false if the first (last) item is already selected
+	 */
+	private boolean pageScroll(int direction) {
+		if (mItemCount == 0) {
+			return false;
+		}
+
+		final int last = direction > 0 ? mItemCount - 1 : 0;
+		if (mSelectedPosition == last) {
+			return false;
+		}
+
+		final int pageHeight = getHeight() - mPaddingTop - mPaddingBottom;
+		if (scrollListBy(-direction * pageHeight)) {
+			setSelectedPositionInt(getFirstFullyVisiblePosition());
+		}
+		else {
+			// already showing the end of the list
+			setSelectedPositionInt(last);
+			makeVisible(last);
+		}
+		return true;
+	}
+
+	// ---------------------------------------------------------------------------------
+	// measure and layout
+
+	protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+		final int widthMode = MeasureSpec.getMode(widthMeasureSpec);
+		final int heightMode = MeasureSpec.getMode(heightMeasureSpec);
+		final int widthSize = MeasureSpec.getSize(widthMeasureSpec);
+		final int heightSize = MeasureSpec.getSize(heightMeasureSpec);
+
+		mItemCount = mAdapter == null ? 0 : mAdapter.getCount();
+
+		int width = widthSize;
+		int height = heightSize;
+
+		if (widthMode != MeasureSpec.EXACTLY || heightMode != MeasureSpec.EXACTLY) {
+			// the rows fitting in the height, only the first one if unbounded
+			final int maxHeight = heightMode == MeasureSpec.UNSPECIFIED ? 0 : heightSize - mPaddingTop
+					- mPaddingBottom;
+			final int[] size = measureRows(widthMeasureSpec, maxHeight);
+
+			if (widthMode != MeasureSpec.EXACTLY) {
+				width = size[0] + mPaddingLeft + mPaddingRight;
+				if (widthMode == MeasureSpec.AT_MOST) {
+					width = Math.min(width, widthSize);
+				}
+			}
+			if (heightMode != MeasureSpec.EXACTLY) {
+				height = size[1] + mPaddingTop + mPaddingBottom;
+				if (heightMode == MeasureSpec.AT_MOST) {
+					height = Math.min(height, heightSize);
+				}
+			}
+		}
+
+		setMeasuredDimension(width, height);
+	}
+
+	/**
+	 * Measures the rows from the first one until maxHeight is filled.
+	 *
+	 * @return the width of the widest row and the height of the rows
+	 */
+	private int[] measureRows(int widthMeasureSpec, int maxHeight) {
+		int width = 0;
+		int height = 0;
+
+		for (int position = 0; position < mItemCount; position++) {
+			final int index = position - mFirstPosition;
+			final boolean laidOut = !mDataChanged && index >= 0 && index < getChildCount();
+
+			final View child = laidOut ? getChildAt(index) : obtainView(position);
+			measureRow(child, widthMeasureSpec);
+			if (!laidOut) {
+				mRecycler.addScrapView(child);
+			}
+
+			width = Math.max(width, child.getMeasuredWidth());
+			height += child.getMeasuredHeight();
+			if (height >= maxHeight) {
+				break;
+			}
+		}
+
+		return new int[] { width, height };
+	}
+
+	private void measureRow(View child, int widthMeasureSpec) {
+		final ViewGroup.LayoutParams lp = child.getLayoutParams();
+		final int childWidthSpec = getChildMeasureSpec(widthMeasureSpec, mPaddingLeft + mPaddingRight, lp.width);
+		final int childHeightSpec = lp.height > 0 ? MeasureSpec.makeMeasureSpec(lp.height, MeasureSpec.EXACTLY)
+				: MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED);
+		child.measure(childWidthSpec, childHeightSpec);
+	}
+
+	protected void onLayout(boolean changed, int l, int t, int r, int b) {
+		layoutChildren();
+	}
+
+	/**
+	 * Lays out the rows again, keeping the first one where it is unless a
+	 * specific position was asked for.
+	 */
+	private void layoutChildren() {
+		final int listTop = mPaddingTop;
+
+		int position;
+		int top;
+		if (mLayoutMode == LAYOUT_SPECIFIC) {
+			position = mSyncPosition;
+			top = mSpecificTop;
+		}
+		else {
+			position = mFirstPosition;
+			top = getChildCount() > 0 ? getChildAt(0).getTop() : listTop;
+		}
+		position = Math.max(Math.min(position, mItemCount - 1), 0);
+
+		// rows showing the same items are reused as they are
+		final int childCount = getChildCount();
+		if (mDataChanged) {
+			for (int i = 0; i < childCount; i++) {
+				mRecycler.addScrapView(getChildAt(i));
+			}
+		}
+		else {
+			mRecycler.fillActiveViews(this, childCount, mFirstPosition);
+		}
+		detachAllViewsFromParent();
+
+		mFirstPosition = position;
+		if (mItemCount > 0) {
+			makeAndAddView(position, top, true);
+			fillGaps();
+		}
+
+		mRecycler.scrapActiveViews();
+
+		mDataChanged = false;
+		mLayoutMode = LAYOUT_NORMAL;
+
+		invalidate();
+	}
+
+	/**
+	 * Adds rows above and below the ones laid out up to the margins, moves
+	 * them so that there is no room left at either end of the list, and
+	 * recycles the rows out of the margins.
+	 */
+	private void fillGaps() {
+		final int listTop = mPaddingTop;
+		final int listBottom = getHeight() - mPaddingBottom;
+
+		// rows scrolled out are reused for the rows coming in
+		recycleOutOfMargins();
+
+		fillDown();
+		fillUp();
+
+		// the last item doesn't end above the bottom
+		final View last = getChildAt(getChildCount() - 1);
+		if (mFirstPosition + getChildCount() == mItemCount && last.getBottom() < listBottom) {
+			offsetChildrenTopAndBottom(listBottom - last.getBottom());
+			fillUp();
+		}
+
+		// the first item doesn't start below the top
+		final View first = getChildAt(0);
+		if (mFirstPosition == 0 && first.getTop() > listTop) {
+			offsetChildrenTopAndBottom(listTop - first.getTop());
+			fillDown();
+		}
+
+		recycleOutOfMargins();
+	}
+
+	/**
+	 * Moves the rows out of the margins to the scrap heaps, keeping at least
+	 * one row.
+	 */
+	private void recycleOutOfMargins() {
+		final int listTop = mPaddingTop;
+		final int listBottom = getHeight() - mPaddingBottom;
+		final int margin = mPreloadMargin;
+
+		int count = 0;
+		while (count < getChildCount() - 1 && getChildAt(count).getBottom() < listTop - margin) {
+			mRecycler.addScrapView(getChildAt(count));
+			count++;
+		}
+		if (count > 0) {
+			detachViewsFromParent(0, count);
+			mFirstPosition += count;
+		}
+
+		final int childCount = getChildCount();
+		count = 0;
+		while (count < childCount - 1 && getChildAt(childCount - 1 - count).getTop() > listBottom + margin) {
+			mRecycler.addScrapView(getChildAt(childCount - 1 - count));
+			count++;
+		}
+		if (count > 0) {
+			detachViewsFromParent(childCount - count, count);
+		}
+	}
+
+	private void fillDown() {
+		final int limit = getHeight() - mPaddingBottom + mPreloadMargin;
+
+		int position = mFirstPosition + getChildCount();
+		int nextTop = getChildAt(getChildCount() - 1).getBottom();
+		while (nextTop < limit && position < mItemCount) {
+			nextTop = makeAndAddView(position, nextTop, true).getBottom();
+			position++;
+		}
+	}
+
+	private void fillUp() {
+		final int limit = mPaddingTop - mPreloadMargin;
+
+		int nextBottom = getChildAt(0).getTop();
+		while (nextBottom > limit && mFirstPosition > 0) {
+			mFirstPosition--;
+			nextBottom = makeAndAddView(mFirstPosition, nextBottom, false).getTop();
+		}
+	}
+
+	/**
+	 * Scrolls the rows by delta pixels, less if that would go past an end of
+	 * the list.
+	 *
+	 * @return false if the list couldn't scroll at all
+	 */
+	private boolean scrollListBy(int delta) {
+		final int count = getChildCount();
+		if (count == 0 || delta == 0) {
+			return false;
+		}
+
+		if (delta < 0 && mFirstPosition + count == mItemCount) {
+			final int room = getChildAt(count - 1).getBottom() - (getHeight() - mPaddingBottom);
+			if (room <= 0) {
+				return false;
+			}
+			delta = Math.max(delta, -room);
+		}
+		else if (delta > 0 && mFirstPosition == 0) {
+			final int room = mPaddingTop - getChildAt(0).getTop();
+			if (room <= 0) {
+				return false;
+			}
+			delta = Math.min(delta, room);
+		}
+
+		offsetChildrenTopAndBottom(delta);
+		fillGaps();
+		invalidate();
+		return true;
+	}
+
+	/**
+	 * Lays out the rows up to the position and scrolls it into view.
+	 */
+	private void makeVisible(int position) {
+		if (getChildCount() == 0) {
+			return;
+		}
+
+		while (position >= mFirstPosition + getChildCount()) {
+			final View last = getChildAt(getChildCount() - 1);
+			makeAndAddView(mFirstPosition + getChildCount(), last.getBottom(), true);
+		}
+		while (position < mFirstPosition) {
+			final View first = getChildAt(0);
+			mFirstPosition--;
+			makeAndAddView(mFirstPosition, first.getTop(), false);
+		}
+
+		final View child = getChildAt(position - mFirstPosition);
+		final int listTop = mPaddingTop;
+		final int listBottom = getHeight() - mPaddingBottom;
+
+		int delta = 0;
+		if (child.getBottom() > listBottom) {
+			delta = listBottom - child.getBottom();
+		}
+		// a row higher than the list shows its top
+		if (child.getTop() + delta < listTop) {
+			delta = listTop - child.getTop();
+		}
+
+		if (!scrollListBy(delta)) {
+			// recycles the rows added out of the margins
+			fillGaps();
+		}
+	}
+
+	/**
+	 * Gets the row for the position, as it was laid out or from the adapter,
+	 * and adds it above or below the rows at y.
+	 */
+	private View makeAndAddView(int position, int y, boolean flowDown) {
+		View child = mRecycler.getActiveView(position);
+		if (child == null) {
+			child = obtainView(position);
+		}
+
+		addViewInLayout(child, flowDown ? -1 : 0, child.getLayoutParams(), true);
+		child.setSelected(position == mSelectedPosition);
+
+		measureRow(child, MeasureSpec.makeMeasureSpec(getWidth(), MeasureSpec.EXACTLY));
+
+		final int height = child.getMeasuredHeight();
+		final int top = flowDown ? y : y - height;
+		child.layout(mPaddingLeft, top, mPaddingLeft + child.getMeasuredWidth(), top + height);
+
+		return child;
+	}
+
+	/**
+	 * Gets a view from the adapter for the position, handing it a scrap view
+	 * of the right type to convert.
+	 */
+	private View obtainView(int position) {
+		final int viewType = mAdapter.getItemViewType(position);
+		final View scrap = mRecycler.getScrapView(viewType);
+		final View child = mAdapter.getView(position, scrap, this);
+
+		if (scrap != null && child != scrap) {
+			mRecycler.addScrapView(scrap);
+		}
+
+		ViewGroup.LayoutParams params = child.getLayoutParams();
+		LayoutParams lp;
+		if (params instanceof LayoutParams) {
+			lp = (LayoutParams) params;
+		}
+		else {
+			lp = params == null ? (LayoutParams) generateDefaultLayoutParams() : new LayoutParams(params);
+			child.setLayoutParams(lp);
+		}
+		lp.viewType = viewType;
+
+		return child;
+	}
+
+	protected ViewGroup.LayoutParams generateDefaultLayoutParams() {
+		return new LayoutParams(LayoutParams.FILL_PARENT, LayoutParams.WRAP_CONTENT);
+	}
+
+	protected ViewGroup.LayoutParams generateLayoutParams(ViewGroup.LayoutParams p) {
+		return new LayoutParams(p);
+	}
+
+	protected boolean checkLayoutParams(ViewGroup.LayoutParams p) {
+		return p instanceof LayoutParams;
+	}
+
+	// ---------------------------------------------------------------------------------
+	// drawing
+
+	protected void dispatchDraw(Canvas canvas) {
+		super.dispatchDraw(canvas);
+
+		final View selected = getSelectedView();
+		if (mSelector != null && selected != null && isFocused()) {
+			final Rect bounds = mTempRect;
+			bounds.set(selected.getLeft(), selected.getTop(), selected.getRight(), selected.getBottom());
+			mSelector.setBounds(bounds);
+			mSelector.draw(canvas);
+		}
+	}
+
+	// ---------------------------------------------------------------------------------
+
+	/**
+	 * Keeps the rows out of the list until they are reused: the active views
+	 * are the rows of the last layout, given back as they are for the same
+	 * positions; the scrap views, one heap per view type, are converted by the
+	 * adapter for other positions.
+	 */
+	private static final class RecycleBin {
+
+		private View[] mActiveViews = new View[0];
+		private int mFirstActivePosition;
+
+		// Vector of View per view type
+		private Vector[] mScrapViews = new Vector[] { new Vector() };
+
+		void setViewTypeCount(int viewTypeCount) {
+			if (viewTypeCount < 1) {
+				throw new IllegalArgumentException("Can't have a viewTypeCount < 1");
+			}
+			mScrapViews = new Vector[viewTypeCount];
+			for (int i = 0; i < viewTypeCount; i++) {
+				mScrapViews[i] = new Vector();
+			}
+		}
+
+		void fillActiveViews(ViewGroup parent, int childCount, int firstActivePosition) {
+			if (mActiveViews.length < childCount) {
+				mActiveViews = new View[childCount];
+			}
+			mFirstActivePosition = firstActivePosition;
+			for (int i = 0; i < childCount; i++) {
+				mActiveViews[i] = parent.getChildAt(i);
+			}
+		}
+
+		View getActiveView(int position) {
+			final int index = position - mFirstActivePosition;
+			if (index >= 0 && index < mActiveViews.length) {
+				final View match = mActiveViews[index];
+				mActiveViews[index] = null;
+				return match;
+			}
+			return null;
+		}
+
+		/**
+		 * Moves the active views left unused to the scrap heaps.
+		 */
+		void scrapActiveViews() {
+			final View[] activeViews = mActiveViews;
+			for (int i = 0; i < activeViews.length; i++) {
+				if (activeViews[i] != null) {
+					addScrapView(activeViews[i]);
+					activeViews[i] = null;
+				}
+			}
+		}
+
+		void addScrapView(View scrap) {
+			final LayoutParams lp = (LayoutParams) scrap.getLayoutParams();
+			if (lp == null || lp.viewType < 0 || lp.viewType >= mScrapViews.length) {
+				// not recycled
+				return;
+			}
+			scrap.setSelected(false);
+			mScrapViews[lp.viewType].addElement(scrap);
+		}
+
+		View getScrapView(int viewType) {
+			if (viewType < 0 || viewType >= mScrapViews.length) {
+				return null;
+			}
+			final Vector scrapViews = mScrapViews[viewType];
+			final int size = scrapViews.size();
+			if (size == 0) {
+				return null;
+			}
+			final View scrap = (View) scrapViews.elementAt(size - 1);
+			scrapViews.removeElementAt(size - 1);
+			return scrap;
+		}
+
+		void clear() {
+			for (int i = 0; i < mScrapViews.length; i++) {
+				mScrapViews[i].removeAllElements();
+			}
+			for (int i = 0; i < mActiveViews.length; i++) {
+				mActiveViews[i] = null;
+			}
+		}
+	}
+}
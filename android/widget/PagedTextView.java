@@ -0,0 +1,547 @@
+/*
+ * Copyright (C) 2006 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package android.widget;
+
+import java.awt.Font;
+import java.util.Vector;
+
+import com.flowme.util.Color;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.view.KeyEvent;
+import android.view.View;
+import android.view.text.LineBreaker;
+import android.view.text.TextDocument;
+
+/**
+ * Shows a document one page at a time. Lines are broken page by page as the
+ * pages are shown, only the pages around the current one are kept laid out,
+ * so the length of the document doesn't matter: it is read from its stream
+ * as far as it has been paged through.
+ *
+ * The page turn keys (DPAD left and right) move to the previous and next
+ * page; the pages next to the current one are laid out in advance, right
+ * after a page turn.
+ */
+public class PagedTextView extends View {
+
+	/**
+	 * Default number of pages kept laid out on each side of the current one.
+	 */
+	public final static int DEFAULT_PAGE_WINDOW = 2;
+
+	// longest run of a paragraph broken at once
+	private final static int MAX_RUN = 2048;
+
+	// how far back the start of a paragraph is looked for to find the
+	// previous page, longer paragraphs are broken from a space near the limit
+	private final static int MAX_BACKTRACK = 16 * MAX_RUN;
+
+	private TextDocument mDocument = null;
+
+	private final Paint mTextPaint;
+	private final Paint.FontMetricsInt mFontMetrics = new Paint.FontMetricsInt();
+
+	private final LineBreaker mLineBreaker = new LineBreaker();
+	private final char[] mRun = new char[MAX_RUN];
+
+	// line starts found by collectLineStarts()
+	private int[] mLineStarts = new int[64];
+
+	// laid out pages in text order, mPages[mCurrent] is shown
+	private final Vector mPages = new Vector();
+	private int mCurrent = -1;
+	private int mPageWindow = DEFAULT_PAGE_WINDOW;
+
+	// offset to show, the page is laid out from the start of its line
+	private int mAnchor = 0;
+
+	// what the pages were laid out for
+	private int mLayoutWidth = -1;
+	private int mLayoutLines = -1;
+	private Font mLayoutFont = null;
+
+	private boolean mPrefetchPending = false;
+	private final Runnable mPrefetch = new Runnable() {
+		public void run() {
+			mPrefetchPending = false;
+			prefetch();
+		}
+	};
+
+	/**
+	 * A page: its lines as (start, end) offset pairs, and the offset the next
+	 * page starts at.
+	 */
+	private static final class Page {
+		final int start;
+		int next;
+
+		int[] offsets = new int[32];
+		int lineCount = 0;
+		String[] texts = null;
+
+		Page(int start) {
+			this.start = start;
+			this.next = start;
+		}
+
+		void addLine(int lineStart, int lineEnd) {
+			if (2 * lineCount == offsets.length) {
+				final int[] grown = new int[offsets.length * 2];
+				System.arraycopy(offsets, 0, grown, 0, offsets.length);
+				offsets = grown;
+			}
+			offsets[2 * lineCount] = lineStart;
+			offsets[2 * lineCount + 1] = lineEnd;
+			lineCount++;
+		}
+	}
+
+	public PagedTextView() {
+		mTextPaint = new Paint();
+		mTextPaint.setColor(Color.BLACK);
+
+		setFocusable(true);
+	}
+
+	/**
+	 * Shows the document from its beginning.
+	 */
+	public void setDocument(TextDocument document) {
+		mDocument = document;
+		mAnchor = 0;
+		discardPages();
+		invalidate();
+	}
+
+	public TextDocument getDocument() {
+		return mDocument;
+	}
+
+	public Paint getPaint() {
+		return mTextPaint;
+	}
+
+	public void setTextColor(int color) {
+		if (color != mTextPaint.getColor()) {
+			mTextPaint.setColor(color);
+			invalidate();
+		}
+	}
+
+	public void setTextSize(int size) {
+		if (size != mTextPaint.getTextSize()) {
+			mTextPaint.setTextSize(size);
+			invalidate();
+		}
+	}
+
+	/**
+	 * Number of pages kept laid out on each side of the current one.
+	 */
+	public void setPageWindow(int pages) {
+		mPageWindow = pages < 1 ? 1 : pages;
+		trimPages();
+	}
+
+	public int getPageWindow() {
+		return mPageWindow;
+	}
+
+	/**
+	 * Shows the page holding the character at offset.
+	 */
+	public void seekTo(int offset) {
+		if (mDocument == null) {
+			return;
+		}
+		mAnchor = Math.max(offset, 0);
+		discardPages();
+		invalidate();
+	}
+
+	/**
+	 * Offset of the first character of the page shown.
+	 */
+	public int getPageStart() {
+		final Page page = getCurrentPage();
+		return page != null ? page.start : mAnchor;
+	}
+
+	/**
+	 * Offset following the last character of the page shown.
+	 */
+	public int getPageEnd() {
+		final Page page = getCurrentPage();
+		return page != null ? page.next : mAnchor;
+	}
+
+	public boolean isFirstPage() {
+		return getPageStart() == 0;
+	}
+
+	public boolean isLastPage() {
+		final Page page = getCurrentPage();
+		return page == null || !mDocument.exists(page.next);
+	}
+
+	/**
+	 * Shows the next page.
+	 *
+	 * @return false if the last page is shown
+	 */
+	public boolean nextPage() {
+		final Page page = getCurrentPage();
+		if (page == null) {
+			return false;
+		}
+
+		if (mCurrent + 1 < mPages.size()) {
+			mCurrent++;
+		}
+		else {
+			if (!mDocument.exists(page.next)) {
+				return false;
+			}
+			mPages.addElement(layoutPage(page.next));
+			mCurrent++;
+		}
+
+		pageChanged();
+		return true;
+	}
+
+	/**
+	 * Shows the previous page.
+	 *
+	 * @return false if the first page is shown
+	 */
+	public boolean previousPage() {
+		final Page page = getCurrentPage();
+		if (page == null || page.start == 0) {
+			return false;
+		}
+
+		if (mCurrent > 0) {
+			mCurrent--;
+		}
+		else {
+			mPages.insertElementAt(layoutPage(getPreviousPageStart(page.start)), 0);
+		}
+
+		pageChanged();
+		return true;
+	}
+
+	public boolean onKeyDown(int keyCode, KeyEvent event) {
+		switch (keyCode) {
+		case KeyEvent.KEYCODE_DPAD_RIGHT:
+			return nextPage();
+
+		case KeyEvent.KEYCODE_DPAD_LEFT:
+			return previousPage();
+		}
+		return super.onKeyDown(keyCode, event);
+	}
+
+	protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+		super.onSizeChanged(w, h, oldw, oldh);
+		// laid out again when drawn
+		invalidate();
+	}
+
+	protected void onDraw(Canvas canvas) {
+		super.onDraw(canvas);
+
+		final Page page = getCurrentPage();
+		if (page == null) {
+			return;
+		}
+
+		final int spacing = mTextPaint.getFontMetricsInt(mFontMetrics);
+		final int left = mPaddingLeft;
+		final int right = getWidth() - mPaddingRight;
+
+		if (page.texts == null) {
+			page.texts = new String[page.lineCount];
+		}
+
+		int baseline = mPaddingTop;
+		for (int i = 0; i < page.lineCount; i++) {
+			baseline += spacing;
+
+			// descenders go below the baseline
+			if (canvas.quickReject(left, baseline - spacing, right, baseline + mFontMetrics.descent)) {
+				continue;
+			}
+
+			String text = page.texts[i];
+			if (text == null) {
+				final int start = page.offsets[2 * i];
+				final int count = mDocument.getChars(start, page.offsets[2 * i + 1], mRun, 0);
+				text = new String(mRun, 0, count);
+				page.texts[i] = text;
+			}
+
+			canvas.drawText(text, left, baseline, mTextPaint);
+		}
+
+		schedulePrefetch();
+	}
+
+	// ---------------------------------------------------------------------------------
+	// pages
+
+	/**
+	 * The page shown, laid out again if the size or the font changed.
+	 */
+	private Page getCurrentPage() {
+		if (mDocument == null) {
+			return null;
+		}
+
+		final int width = getWidth() - mPaddingLeft - mPaddingRight;
+		final int spacing = mTextPaint.getFontMetricsInt(null);
+		final int lines = Math.max((getHeight() - mPaddingTop - mPaddingBottom) / Math.max(spacing, 1), 1);
+		final Font font = mTextPaint.getCurrentNativeTypeface();
+
+		if (width != mLayoutWidth || lines != mLayoutLines || font != mLayoutFont) {
+			if (mCurrent >= 0) {
+				mAnchor = ((Page) mPages.elementAt(mCurrent)).start;
+			}
+			discardPages();
+			mLayoutWidth = width;
+			mLayoutLines = lines;
+			mLayoutFont = font;
+		}
+
+		if (mCurrent < 0) {
+			// the line starts move with the width and the font
+			mAnchor = getLineStart(mAnchor);
+			mPages.addElement(layoutPage(mAnchor));
+			mCurrent = 0;
+		}
+
+		return (Page) mPages.elementAt(mCurrent);
+	}
+
+	private void pageChanged() {
+		mAnchor = ((Page) mPages.elementAt(mCurrent)).start;
+		trimPages();
+		invalidate();
+	}
+
+	private void discardPages() {
+		mPages.removeAllElements();
+		mCurrent = -1;
+	}
+
+	/**
+	 * Forgets the pages out of the window.
+	 */
+	private void trimPages() {
+		while (mCurrent > mPageWindow) {
+			mPages.removeElementAt(0);
+			mCurrent--;
+		}
+		while (mPages.size() - 1 - mCurrent > mPageWindow) {
+			mPages.removeElementAt(mPages.size() - 1);
+		}
+	}
+
+	private void schedulePrefetch() {
+		if (!mPrefetchPending) {
+			final int last = mPages.size() - 1;
+			final boolean needNext = mCurrent == last && mDocument.exists(((Page) mPages.elementAt(last)).next);
+			final boolean needPrevious = mCurrent == 0 && ((Page) mPages.elementAt(0)).start != 0;
+			if (needNext || needPrevious) {
+				mPrefetchPending = true;
+				// after the frame being drawn
+				post(mPrefetch);
+			}
+		}
+	}
+
+	/**
+	 * Lays out the pages next to the current one, if they aren't yet.
+	 */
+	private void prefetch() {
+		if (mCurrent < 0) {
+			return;
+		}
+
+		final int last = mPages.size() - 1;
+		final Page lastPage = (Page) mPages.elementAt(last);
+		if (mCurrent == last && mDocument.exists(lastPage.next)) {
+			mPages.addElement(layoutPage(lastPage.next));
+		}
+
+		final Page firstPage = (Page) mPages.elementAt(0);
+		if (mCurrent == 0 && firstPage.start != 0) {
+			mPages.insertElementAt(layoutPage(getPreviousPageStart(firstPage.start)), 0);
+			mCurrent++;
+		}
+	}
+
+	/**
+	 * Lays out the page starting at the line start offset.
+	 */
+	private Page layoutPage(int start) {
+		final Page page = new Page(start);
+		final int maxLines = mLayoutLines;
+
+		int offset = start;
+		while (page.lineCount < maxLines && mDocument.exists(offset)) {
+			final int runEnd = readRun(offset);
+			final boolean paragraphEnd = runEnd < MAX_RUN;
+
+			final int[] lines = mLineBreaker.breakLines(mTextPaint, mRun, 0, runEnd, mLayoutWidth);
+			final int count = getCompleteLines(lines, paragraphEnd);
+
+			int i = 0;
+			for (; i < count && page.lineCount < maxLines; i++) {
+				page.addLine(offset + lines[2 * i], offset + lines[2 * i + 1]);
+			}
+
+			if (i < count) {
+				// the page is full
+				offset += lines[2 * i];
+				break;
+			}
+
+			offset += getRunNext(lines, count, runEnd, paragraphEnd);
+		}
+
+		page.next = offset;
+		return page;
+	}
+
+	/**
+	 * Start of the page ending where the page at start begins.
+	 */
+	private int getPreviousPageStart(int start) {
+		final int lines = mLayoutLines;
+
+		int from = getParagraphStart(start - 1);
+		while (true) {
+			final int count = collectLineStarts(from, start);
+			if (count >= lines) {
+				return mLineStarts[count - lines];
+			}
+			if (from == 0 || start - from > MAX_BACKTRACK) {
+				return from;
+			}
+			from = getParagraphStart(from - 1);
+		}
+	}
+
+	/**
+	 * Start of the line holding offset, as broken from its paragraph start.
+	 */
+	private int getLineStart(int offset) {
+		if (!mDocument.exists(offset)) {
+			offset = Math.max(mDocument.length() - 1, 0);
+		}
+		final int from = getParagraphStart(offset);
+		final int count = collectLineStarts(from, offset + 1);
+		return count > 0 ? mLineStarts[count - 1] : from;
+	}
+
+	/**
+	 * Start of the paragraph holding offset. For a paragraph longer than
+	 * MAX_BACKTRACK, a word start far enough before offset.
+	 */
+	private int getParagraphStart(int offset) {
+		final int newLine = mDocument.lastIndexOf('\n', offset - 1);
+		int from = newLine + 1;
+		if (offset - from > MAX_BACKTRACK) {
+			final int space = mDocument.indexOf(' ', offset - MAX_BACKTRACK);
+			if (space >= 0 && space < offset) {
+				from = space + 1;
+			}
+		}
+		return from;
+	}
+
+	/**
+	 * Breaks [from, end) in lines, from is a line start.
+	 *
+	 * @return the number of lines starting before end, in mLineStarts
+	 */
+	private int collectLineStarts(int from, int end) {
+		int count = 0;
+		int offset = from;
+		while (offset < end && mDocument.exists(offset)) {
+			final int runEnd = readRun(offset);
+			final boolean paragraphEnd = runEnd < MAX_RUN;
+
+			final int[] lines = mLineBreaker.breakLines(mTextPaint, mRun, 0, runEnd, mLayoutWidth);
+			final int lineCount = getCompleteLines(lines, paragraphEnd);
+
+			for (int i = 0; i < lineCount && offset + lines[2 * i] < end; i++) {
+				if (count == mLineStarts.length) {
+					final int[] grown = new int[count * 2];
+					System.arraycopy(mLineStarts, 0, grown, 0, count);
+					mLineStarts = grown;
+				}
+				mLineStarts[count++] = offset + lines[2 * i];
+			}
+
+			offset += getRunNext(lines, lineCount, runEnd, paragraphEnd);
+		}
+		return count;
+	}
+
+	/**
+	 * Number of lines of a run which are lines of the text: the last line of
+	 * a cut paragraph may go on in the next run, it is broken again from
+	 * there.
+	 */
+	private static int getCompleteLines(int[] lines, boolean paragraphEnd) {
+		final int count = lines.length / 2;
+		return !paragraphEnd && count > 1 ? count - 1 : count;
+	}
+
+	/**
+	 * Offset in the run of the text following its first count lines.
+	 */
+	private static int getRunNext(int[] lines, int count, int runEnd, boolean paragraphEnd) {
+		if (paragraphEnd) {
+			// after the '\n'
+			return runEnd + 1;
+		}
+		return count < lines.length / 2 ? lines[2 * count] : runEnd;
+	}
+
+	/**
+	 * Reads into mRun the text from offset up to the end of its paragraph, or
+	 * MAX_RUN characters.
+	 *
+	 * @return the length of the run, MAX_RUN if the paragraph goes on
+	 */
+	private int readRun(int offset) {
+		final int count = mDocument.getChars(offset, offset + MAX_RUN, mRun, 0);
+		for (int i = 0; i < count; i++) {
+			if (mRun[i] == '\n') {
+				return i;
+			}
+		}
+		return count;
+	}
+}
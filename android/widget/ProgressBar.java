@@ -829,7 +829,7 @@ public class ProgressBar extends View {
         
     	
 
-        Log.i("PB", "onSizeChanged");
+        Log.d("PB", "onSizeChanged");
     	
     	// onDraw will translate the canvas so we draw starting at 0,0
         int right = w - mPaddingRight - mPaddingLeft;
@@ -841,7 +841,7 @@ public class ProgressBar extends View {
         
         if (mProgressDrawable != null) {
         	
-        	Log.i("PB", "setBounds");
+        	Log.d("PB", "setBounds");
         	
             mProgressDrawable.setBounds(0, 0, right, bottom);
         }
@@ -104,6 +104,11 @@ public class ScrollView extends FrameLayout {
      */
     private boolean mFillViewport;
 
+    /**
+     * When set, the child only draws its children within the viewport.
+     */
+    private boolean mViewportCulling = true;
+
 
 
     private int mTouchSlop;
@@ -246,6 +251,36 @@ public class ScrollView extends FrameLayout {
     }
 
 
+    /**
+     * Indicates whether the child only draws the part of its content in the
+     * viewport.
+     *
+     * @return True if the viewport is used for culling, false otherwise.
+     */
+    public boolean isViewportCulling() {
+        return mViewportCulling;
+    }
+
+    /**
+     * Indicates whether the child should only draw the part of its content in
+     * the viewport. A child layout which knows the order of its children,
+     * like a {@link LinearLayout}, then finds the children in view with a
+     * binary search instead of visiting all of them, so drawing a scrolled
+     * frame costs in proportion to the viewport, not to the content height.
+     * Enabled by default.
+     *
+     * @param viewportCulling True to cull the content to the viewport.
+     */
+    public void setViewportCulling(boolean viewportCulling) {
+        if (viewportCulling != mViewportCulling) {
+            mViewportCulling = viewportCulling;
+            // laid out again to record where its children are
+            if (getChildCount() > 0) {
+                getChildAt(0).requestLayout();
+            }
+        }
+    }
+
     // Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
         super.onMeasure(widthMeasureSpec, heightMeasureSpec);
@@ -890,8 +925,11 @@ public class ScrollView extends FrameLayout {
                 onScrollChanged(mScrollX, mScrollY, oldX, oldY);
             }
             
-            // Keep on drawing until the animation has finished.
-            postInvalidate();
+            // Keep on drawing until the animation has finished, one step
+            // per frame.
+            if (!mScroller.isFinished()) {
+                postInvalidateOnAnimation();
+            }
         }
     }
 
@@ -1065,6 +1103,11 @@ public class ScrollView extends FrameLayout {
 
     // Override
     protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        // before the child is laid out, it records where its children are
+        if (getChildCount() > 0 && getChildAt(0) instanceof ViewGroup) {
+            ((ViewGroup) getChildAt(0)).setCullToViewport(mViewportCulling);
+        }
+
         super.onLayout(changed, l, t, r, b);
         mIsLayoutDirty = false;
         // Give a child focus if it needs it 
@@ -17,6 +17,7 @@
 package android.widget;
 
 import android.util.FloatMath;
+import android.view.Choreographer;
 
 
 
@@ -27,6 +28,11 @@ import android.util.FloatMath;
  * the scrolling animation should take.  Past this time, the scrolling is 
  * automatically moved to its final stage and computeScrollOffset()
  * will always return false to indicate that scrolling is over.
+ *
+ * Time is the frame time of the {@link Choreographer}, so that every
+ * animation of a frame sees the same time. When the choreographer collapses
+ * animations, a scroll goes to its final stage on the first call to
+ * computeScrollOffset().
  */
 public class Scroller  {
     private int mMode;
@@ -162,10 +168,11 @@ public class Scroller  {
             return false;
         }
 
-       // XXX
-        int timePassed = (int) System.currentTimeMillis();
-       // int timePassed = (int)(AnimationUtils.currentAnimationTimeMillis() - mStartTime);
-    
+        int timePassed = timePassed();
+        if (Choreographer.getInstance().isCollapsingAnimations()) {
+            timePassed = mDuration;
+        }
+
         if (timePassed < mDuration) {
             
         	switch (mMode) {
@@ -253,7 +260,7 @@ public class Scroller  {
         mMode = SCROLL_MODE;
         mFinished = false;
         mDuration = duration;
-        mStartTime = (int) System.currentTimeMillis(); // XXX AnimationUtils.currentAnimationTimeMillis();
+        mStartTime = Choreographer.getInstance().getFrameTime();
         mStartX = startX;
         mStartY = startY;
         mFinalX = startX + dx;
@@ -297,7 +304,7 @@ public class Scroller  {
         mVelocity = velocity;
         mDuration = (int) (1000 * velocity / mDeceleration); // Duration is in
                                                             // milliseconds
-        mStartTime = System.currentTimeMillis(); // XXX AnimationUtils.currentAnimationTimeMillis();
+        mStartTime = Choreographer.getInstance().getFrameTime();
         mStartX = startX;
         mStartY = startY;
 
@@ -366,10 +373,14 @@ public class Scroller  {
         mFinished = false;
     }
     
+    /**
+     * Returns the time elapsed since the beginning of the scrolling, at the
+     * current frame time.
+     *
+     * @return The elapsed time in milliseconds.
+     */
     public int timePassed() {
-    	 return (int)(System.currentTimeMillis() - mStartTime);
-    	
-        //XXX return (int)(AnimationUtils.currentAnimationTimeMillis() - mStartTime);
+        return (int)(Choreographer.getInstance().getFrameTime() - mStartTime);
     }
     
     public void setFinalX(int newX) {
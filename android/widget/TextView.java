@@ -40,7 +40,7 @@ import android.util.Log;
 import android.view.Gravity;
 import android.view.View;
 
-import android.view.text.TextUtils;
+import android.view.text.TextLayout;
 
 /**
  * Simple text control. Text is formatted only with single font.
@@ -69,6 +69,7 @@ public class TextView extends View {
 	public void setTextColor(int color) {
 		if(color != mTextPaint.getColor()) {
 			mTextPaint.setColor(color);
+			invalidate();
 		}
 	}
 	
@@ -83,6 +84,7 @@ public class TextView extends View {
 		if (mText == null || text.compareTo(mText) != 0) {
 			mText = text;
 			requestLayout();
+			invalidate();
 		}
 	}
 
@@ -107,7 +109,7 @@ public class TextView extends View {
 		{
 
 			makeLines(width-paddingLeft-paddingRight);
-			if (mLines.length > 0) {
+			if (mLayout.getLineCount() > 0) {
 				measuredWidth = getMaxWidthFromLines() + paddingLeft + paddingRight;
 			}
 			else {
@@ -127,7 +129,7 @@ public class TextView extends View {
 		{
 			makeLines(Integer.MAX_VALUE);
 
-			if (mLines.length > 0) {
+			if (mLayout.getLineCount() > 0) {
 				measuredWidth = getMaxWidthFromLines() + paddingLeft + paddingRight;
 			}
 			else {
@@ -141,7 +143,7 @@ public class TextView extends View {
 		int paddingTop = mPaddingTop;
 		int paddingBottom = mPaddingBottom;
 		
-		int textHeight =  mTextPaint.getTextSize()* mLines.length + paddingTop + paddingBottom;
+		int textHeight =  mTextPaint.getFontMetricsInt(null) * mLayout.getLineCount() + paddingTop + paddingBottom;
 
 		switch (heightMode) {
 		case MeasureSpec.AT_MOST: {
@@ -175,15 +177,18 @@ public class TextView extends View {
 	protected void onDraw(Canvas canvas) {
 		super.onDraw(canvas);
 
+		if (mLayout == null) {
+			return;
+		}
 		
-		int fontHeight = (int) mTextPaint.getTextSize();
+		int fontHeight = mTextPaint.getFontMetricsInt(null);
 
 		int numberOfDrawedLines = getHeight() / fontHeight;
 
 		try
 		{ 
-			if (numberOfDrawedLines > mLines.length) {
-				numberOfDrawedLines = mLines.length;
+			if (numberOfDrawedLines > mLayout.getLineCount()) {
+				numberOfDrawedLines = mLayout.getLineCount();
 			}
 		}
 		catch(Exception e) {
@@ -215,13 +220,18 @@ public class TextView extends View {
 		
 		canvas.translate(offX, mPaddingTop);
 		
+		final int lineRight = getWidth() - offX;
+		
 		for (int i = 0; i < numberOfDrawedLines; i++) {
 			
 			offY += fontHeight;
 			
-			//Log.i(TAG, "onDraw " + mLines[i] + " at " + offY);
+			// skip lines outside of the clip, descenders go below the baseline
+			if (canvas.quickReject(0, offY - fontHeight, lineRight, offY + fontHeight)) {
+				continue;
+			}
 			
-			canvas.drawText(mLines[i], 0, offY, mTextPaint);
+			canvas.drawText(mLayout.getLineText(i), 0, offY, mTextPaint);
 			
 		}
 
@@ -242,6 +252,8 @@ public class TextView extends View {
 
 		if (size != mTextPaint.getTextSize()) {
 			mTextPaint.setTextSize(size);
+			requestLayout();
+			invalidate();
 		}
 	}
 
@@ -340,37 +352,22 @@ public class TextView extends View {
 	}
 
 	private synchronized void makeLines(int maxWidth) {
-		Log.d(TAG, "makeLines, mText " + mText);
 	
-		if (!TextUtils.isEmpty(mText)) {
-			mLines = TextUtils.Metric.getTextLines(mTextPaint, mText, maxWidth);
-		}
-		else {
-			mLines = new String[1];
-			mLines[0] = "";
-		}
+		final String text = mText != null ? mText : "";
 		
-		Log.t(TAG, "mLines.length " + mLines.length );
-		Log.t(TAG, "mLines[0] " + mLines[0] );
+		// the layout stays valid while the text, the font and the width don't change
+		if (mLayout == null || !mLayout.isValidFor(mTextPaint, text, maxWidth)) {
+			mLayout = TextLayout.obtain(mTextPaint, text, maxWidth);
+		}
 	}
 
 	private int getMaxWidthFromLines() {
 
-		if (mLines == null || mLines.length == 0 || mLines[0] == null) {
+		if (mLayout == null) {
 			return 0;
 		}
 
-		int maxValue = (int) mTextPaint.measureText(mLines[0]);
-
-		for (int i = 1; i < mLines.length; i++) {
-
-			int lineWidth = (int) mTextPaint.measureText(mLines[i]);
-			if (lineWidth > maxValue) {
-				maxValue = lineWidth;
-			}
-		}
-
-		return maxValue;
+		return mLayout.getMaxWidth();
 	}
 
 	public void setGravity(int gravity) {
@@ -436,7 +433,7 @@ public class TextView extends View {
 	/**
 	 * text lines
 	 */
-	private String[] mLines = null;
+	private TextLayout mLayout = null;
 
 	/**
 	 * Text to draw
@@ -28,15 +28,29 @@
 package com.flowme;
 
 import java.awt.Graphics;
+import java.awt.GraphicsConfiguration;
+import java.awt.Image;
+import java.awt.Rectangle;
+import java.awt.Transparency;
 import java.awt.event.KeyListener;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
 import java.util.Vector;
 
 import android.app.Dialog;
+import android.content.res.Resources;
+import android.graphics.BitmapDiskCache;
+import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.Region;
 import android.graphics.Typeface;
+import android.util.AsyncLogOutput;
 import android.util.Log;
 import android.util.LogOutputConsole;
+import android.view.Choreographer;
 import android.view.Gravity;
 import android.view.KeyEvent;
 import android.view.View;
@@ -57,6 +71,8 @@ public class FlowDisplay extends KComponent implements KeyListener
 
 	private static FlowDisplay sInstance = null;
 
+	private static final String BITMAP_CACHE_DIRECTORY = "bitmap-cache";
+
 	private Canvas mCanvas;
 	private Paint mDefaultPaint;
 	private ViewRoot mViewRoot = null;
@@ -65,7 +81,19 @@ public class FlowDisplay extends KComponent implements KeyListener
 
 	private Vector /* <KeyEvent> */mKeyEvents = null;
 	private Vector /* <MotionEvent> */mTouchEvents = null;
-	private RunnableSheduler mRunnableScheduler = null;
+	private FrameScheduler mFrameScheduler = null;
+
+	// damaged display area, in display coordinates
+	private final Region mDamage = new Region();
+	// already rendered into the backing store, not yet blitted to the screen
+	private final Region mExposed = new Region();
+	private final Rect mDamageRect = new Rect();
+	private final Rect mDialogFrame = new Rect();
+	private final Rect mPaintClip = new Rect();
+
+	// off-screen copy of the display, the views are rendered into it 
+	// incrementally and paint() only blits the requested area from it
+	private Image mBackingStore = null;
 
 
 	
@@ -76,15 +104,41 @@ public class FlowDisplay extends KComponent implements KeyListener
 
 	}
 	
+	/**
+	 * Like {@link #init()}, the decoded bitmaps being kept on disk in the home
+	 * directory of the kindlet for the next starts, where the VM can build
+	 * their gray images.
+	 */
+	public void init(KindletContext ctx) {
+		
+		final File home = ctx.getHomeDirectory();
+		if (home != null && BitmapDiskCache.isSupported()) {
+			BitmapFactory.setDiskCache(new BitmapDiskCache(new File(home, BITMAP_CACHE_DIRECTORY), getBuildVersion()));
+		}
+		init();
+	}
+
 	public void init() {
 		
-		Log.initialize(new LogOutputConsole());
+		// formatted and printed off the event thread
+		Log.initialize(new AsyncLogOutput(new LogOutputConsole()));
 
 		mKeyEvents = new Vector();
 		mTouchEvents = new Vector();
 		mCanvas = new Canvas();
+		mFrameScheduler = new FrameScheduler(new Runnable() {
+			public void run() {
+				flushDamage();
+			}
+		});
+		Choreographer.getInstance().setFrameRequester(new Runnable() {
+			public void run() {
+				scheduleFrame();
+			}
+		});
 		mViewRoot = new ViewRoot();
-		mRunnableScheduler = new RunnableSheduler();
+		// decoded off the event thread while the first views are created
+		Resources.getSystem().prefetchBitmaps();
 		mDefaultPaint = new Paint();
 		mDefaultPaint.setTypeface(Typeface.DEFAULT);
 		//setSize(getWidth(), getHeight());	
@@ -92,6 +146,20 @@ public class FlowDisplay extends KComponent implements KeyListener
 
 	}
 
+	/**
+	 * Changes when the jar is rebuilt, so that the bitmaps cached on disk by
+	 * another build are not used.
+	 */
+	private int getBuildVersion() {
+		try {
+			final URL url = FlowDisplay.class.getResource("FlowDisplay.class");
+			return url == null ? 0 : (int) (url.openConnection().getLastModified() / 1000);
+		}
+		catch (IOException e) {
+			return 0;
+		}
+	}
+
 	public static final FlowDisplay instance() {
 		
 		if(sInstance == null) {
@@ -104,25 +172,210 @@ public class FlowDisplay extends KComponent implements KeyListener
 
 	public void paint(Graphics graphics) {
 		
-		Log.i(TAG, "paint");
+		Log.d(TAG, "paint");
+		
+		performTraversals();
+		collectDamage();
+		
+		if (!ensureBackingStore()) {
+			super.paint(graphics);
+			return;
+		}
+		
+		renderDamage();
+		
+		Rectangle clip = graphics.getClipBounds();
+		if (clip == null) {
+			clip = new Rectangle(0, 0, getWidth(), getHeight());
+		}
+		
+		graphics.drawImage(mBackingStore, 
+				clip.x, clip.y, clip.x + clip.width, clip.y + clip.height, 
+				clip.x, clip.y, clip.x + clip.width, clip.y + clip.height, 
+				null);
+		
+		// whatever was rendered outside of the clip still has to reach the screen
+		mExposed.subtractContained(clip.x, clip.y, clip.x + clip.width, clip.y + clip.height);
+		repaintDamage();
+		
+		mViewRoot.notifyFrameFlushed();
+		for (int i = 0; i < mDialogs.size(); i++) {
+			((Dialog) mDialogs.elementAt(i)).getViewRoot().notifyFrameFlushed();
+		}
+		
+		super.paint(graphics);
+	}
+	
+	/**
+	 * (Re)creates the backing store when missing or when the display size 
+	 * changed, in which case the whole display is damaged.
+	 * 
+	 * @return false when the display has no size yet
+	 */
+	private boolean ensureBackingStore() {
+		
+		final int w = getWidth();
+		final int h = getHeight();
+		
+		if (w <= 0 || h <= 0) {
+			return false;
+		}
+		
+		if (mBackingStore == null || mBackingStore.getWidth(null) != w || mBackingStore.getHeight(null) != h) {
+			
+			if (mBackingStore != null) {
+				mBackingStore.flush();
+			}
+			
+			mBackingStore = createCompatibleImage(w, h, false);
+			
+			if (mBackingStore == null) {
+				return false;
+			}
+			
+			mDamage.setEmpty();
+			mDamage.union(0, 0, w, h);
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Creates an off-screen image compatible with the screen, gray on the 
+	 * device, so blitting it needs no conversion.
+	 * 
+	 * @param translucent whether the image needs an alpha channel
+	 * @return null if the display can't create images yet
+	 */
+	public Image createCompatibleImage(int w, int h, boolean translucent) {
+		
+		GraphicsConfiguration gc = getGraphicsConfiguration();
+		
+		if (gc != null) {
+			return translucent ? gc.createCompatibleImage(w, h, Transparency.TRANSLUCENT) : gc.createCompatibleImage(w, h);
+		}
+		
+		return translucent ? null : createImage(w, h);
+	}
+	
+	/**
+	 * Renders every damaged rectangle into the backing store, each one with 
+	 * its own clip so only the views intersecting it are drawn. The rendered 
+	 * area is moved to the exposed region.
+	 */
+	private void renderDamage() {
+		
+		final Rect r = mDamageRect;
+		for (int i = 0; i < mDamage.getRectCount(); i++) {
+			mDamage.getRect(i, r);
+			
+			Graphics g = mBackingStore.getGraphics();
+			try {
+				g.setClip(r.left, r.top, r.width(), r.height());
+				g.setColor(getBackground() != null ? getBackground() : java.awt.Color.white);
+				g.fillRect(r.left, r.top, r.width(), r.height());
+				drawViews(g);
+			}
+			finally {
+				g.dispose();
+			}
+			mExposed.union(r);
+		}
+		mDamage.setEmpty();
+	}
+	
+	/**
+	 * Draws the view tree and the dialogs on top of it.
+	 */
+	private void drawViews(Graphics graphics) {
 		
 		mCanvas.setNativeGraphics(graphics);
+		mCanvas.getClipBounds(mPaintClip);
 
-		if (mViewRoot.getView() != null /*&& ( mViewRoot.isLayoutRequested() || mViewRoot.isFirst() ) */) {
+		if (mViewRoot.getView() != null) {
+			mViewRoot.draw(mCanvas);
+		}
+		
+		processDialogs();
+	}
+	
+	/**
+	 * Runs the pending measure/layout passes of the view tree and of every 
+	 * dialog. Roots which were only invalidated skip measure and layout.
+	 */
+	private void performTraversals() {
 
+		if (mViewRoot.getView() != null) {
 			mViewRoot.performTraversals(
 					 MeasureSpec.makeMeasureSpec(getWidth(), View.MeasureSpec.EXACTLY),
 					 MeasureSpec.makeMeasureSpec(getHeight(), View.MeasureSpec.EXACTLY));
-			//mCanvas.drawColor(Color.WHITE);
-			mViewRoot.draw(mCanvas);
 		}
 		
-		processDialogs();
+		for (int i = 0; i < mDialogs.size(); i++) {
+			ViewRoot dialogViewRoot = ((Dialog) mDialogs.elementAt(i)).getViewRoot();
+			if (dialogViewRoot.getView() != null) {
+				dialogViewRoot.performTraversals(MeasureSpec.makeMeasureSpec(getWidth(), View.MeasureSpec.AT_MOST),
+												 MeasureSpec.makeMeasureSpec(getHeight(), View.MeasureSpec.AT_MOST));
+			}
+		}
+	}
+	
+	/**
+	 * Moves the dirty regions of the view tree and of every dialog into the 
+	 * display damage.
+	 */
+	private void collectDamage() {
 		
-		super.paint(graphics);
+		mDamage.union(mViewRoot.getDirtyRegion(), 0, 0);
+		mViewRoot.clearDirtyRegion();
+		
+		for (int i = 0; i < mDialogs.size(); i++) {
+			Dialog d = (Dialog) mDialogs.elementAt(i);
+			ViewRoot dialogViewRoot = d.getViewRoot();
+			if (dialogViewRoot.getView() != null) {
+				getDialogFrame(d, mDialogFrame);
+				mDamage.union(dialogViewRoot.getDirtyRegion(), mDialogFrame.left, mDialogFrame.top);
+			}
+			dialogViewRoot.clearDirtyRegion();
+		}
 	}
 	
+	/**
+	 * Asks for a repaint of every exposed rectangle and forgets about them. 
+	 * The frame scheduler decides per rectangle whether a partial update is 
+	 * enough or whether the ghosting left in that area calls for a full 
+	 * refresh, in which case the rectangle is grown to whole tiles.
+	 */
+	private void repaintDamage() {
+		
+		final Rect r = mDamageRect;
+		for (int i = 0; i < mExposed.getRectCount(); i++) {
+			mExposed.getRect(i, r);
+			mFrameScheduler.computeRefresh(r);
+			repaint(r.left, r.top, r.width(), r.height());
+		}
+		mExposed.setEmpty();
+	}
 	
+	/**
+	 * Runs the animations due, lays out what needs to be, renders the damaged area into the backing 
+	 * store and repaints only that area.
+	 */
+	private void flushDamage() {
+		final Choreographer choreographer = Choreographer.getInstance();
+		choreographer.beginFrame();
+		// what the animations invalidated is drawn by this frame
+		mFrameScheduler.cancel();
+
+		performTraversals();
+		collectDamage();
+		if (ensureBackingStore()) {
+			renderDamage();
+		}
+		repaintDamage();
+
+		choreographer.endFrame();
+	}
 
 	
 	public void setSize(int w, int h) {
@@ -137,10 +390,24 @@ public class FlowDisplay extends KComponent implements KeyListener
 		
 		super.setSize(w, h);
 		
+		if (mFrameScheduler != null) {
+			mFrameScheduler.setDisplaySize(w, h);
+			mFrameScheduler.scheduleFrame();
+		}
 	}
 
-	public RunnableSheduler getRunnableScheduler() {
-		return mRunnableScheduler;
+	public FrameScheduler getFrameScheduler() {
+		return mFrameScheduler;
+	}
+	
+	/**
+	 * Asks for a frame: every invalidation and layout request made until it 
+	 * runs is handled by a single traversal.
+	 */
+	public void scheduleFrame() {
+		if (mFrameScheduler != null) {
+			mFrameScheduler.scheduleFrame();
+		}
 	}
 
 	
@@ -153,47 +420,19 @@ public class FlowDisplay extends KComponent implements KeyListener
 			Dialog d = (Dialog) mDialogs.elementAt(i);
 			ViewRoot dialogViewRoot = d.getViewRoot();
 
-			if (dialogViewRoot.getView() != null /*&& 
-				( d.getViewRoot().isLayoutRequested() || d.getViewRoot().isFirst() )*/ ) {
+			if (dialogViewRoot.getView() != null) {
 
-				//Log.i(TAG, "relayout dialog");
-			
-				dialogViewRoot.performTraversals(MeasureSpec.makeMeasureSpec(getWidth(), View.MeasureSpec.AT_MOST),
-												 MeasureSpec.makeMeasureSpec(getHeight(), View.MeasureSpec.AT_MOST));
+				getDialogFrame(d, mDialogFrame);
+				
+				if (!Rect.intersects(mDialogFrame, mPaintClip)) {
+					continue;
+				}
 				
 				// DRAW DIALOG
 				int sc = mCanvas.getSaveCount();
 				mCanvas.save(); 
-				
-				final int gravityH = d.getGravity() & Gravity.HORIZONTAL_GRAVITY_MASK;
-				final int gravityV = d.getGravity() & Gravity.VERTICAL_GRAVITY_MASK;
-				
-				int offX = 0;
-				int offY = 0;
-				
-				
-				if(gravityH == Gravity.LEFT) {
-					offX = d.getMarginLeft();
-				}
-				else if(gravityH == Gravity.CENTER_HORIZONTAL) {
-					offX = (getWidth() - dialogViewRoot.getView().getMeasuredWidth())/2;
-				}
-				else if(gravityH == Gravity.RIGHT) {
-					offX = getWidth() - dialogViewRoot.getView().getMeasuredWidth() - d.getMarginRight();
-				}
-				
-				if(gravityV == Gravity.TOP) {
-					offY = d.getMarginTop();
-				}
-				else if(gravityV == Gravity.CENTER_VERTICAL) {
-					offY = (getHeight() - dialogViewRoot.getView().getMeasuredHeight())/2;
-				}
-				else if(gravityV == Gravity.BOTTOM) {
-					offY = getHeight() - dialogViewRoot.getView().getMeasuredHeight() - d.getMarginBottom();
-				}
-				
 	
-				mCanvas.translate(offX, offY);
+				mCanvas.translate(mDialogFrame.left, mDialogFrame.top);
 				dialogViewRoot.draw(mCanvas);
 				mCanvas.restoreToCount(sc);
 			
@@ -204,6 +443,43 @@ public class FlowDisplay extends KComponent implements KeyListener
 		}
 	}
 
+	/**
+	 * Computes where the dialog lies on the display, from its gravity, 
+	 * margins and measured size. 
+	 */
+	private void getDialogFrame(Dialog d, Rect outFrame) {
+		
+		final View dialogView = d.getViewRoot().getView();
+		final int gravityH = d.getGravity() & Gravity.HORIZONTAL_GRAVITY_MASK;
+		final int gravityV = d.getGravity() & Gravity.VERTICAL_GRAVITY_MASK;
+		
+		int offX = 0;
+		int offY = 0;
+		
+		
+		if(gravityH == Gravity.LEFT) {
+			offX = d.getMarginLeft();
+		}
+		else if(gravityH == Gravity.CENTER_HORIZONTAL) {
+			offX = (getWidth() - dialogView.getMeasuredWidth())/2;
+		}
+		else if(gravityH == Gravity.RIGHT) {
+			offX = getWidth() - dialogView.getMeasuredWidth() - d.getMarginRight();
+		}
+		
+		if(gravityV == Gravity.TOP) {
+			offY = d.getMarginTop();
+		}
+		else if(gravityV == Gravity.CENTER_VERTICAL) {
+			offY = (getHeight() - dialogView.getMeasuredHeight())/2;
+		}
+		else if(gravityV == Gravity.BOTTOM) {
+			offY = getHeight() - dialogView.getMeasuredHeight() - d.getMarginBottom();
+		}
+		
+		outFrame.set(offX, offY, offX + dialogView.getMeasuredWidth(), offY + dialogView.getMeasuredHeight());
+	}
+
 
 	public final void setContentView(KindletContext ctx, View view) {
 		this.addKeyListener(this);
@@ -220,10 +496,10 @@ public class FlowDisplay extends KComponent implements KeyListener
 		
 		mDialogs.addElement(dialog);
 
-		mViewRoot.requestLayout();
 		mViewRoot.clearChildFocus(mViewRoot.getView());
 		dialog.getViewRoot().getView().requestFocus();
 		dialog.getViewRoot().requestLayout();
+		dialog.getViewRoot().invalidate();
 	}
 
 	public final void dismissDialog(Dialog dialog) {
@@ -231,8 +507,14 @@ public class FlowDisplay extends KComponent implements KeyListener
 			return;
 		}
 		
-		mViewRoot.requestLayout();
+		// what was under the dialog has to be repainted
+		if (dialog.getViewRoot().getView() != null) {
+			getDialogFrame(dialog, mDialogFrame);
+			mDamage.union(mDialogFrame);
+		}
+		
 		mDialogs.removeElement(dialog);
+		dialog.getViewRoot().clearDirtyRegion();
 	}
 
 	private void dispatchEvents() {
@@ -261,8 +543,7 @@ public class FlowDisplay extends KComponent implements KeyListener
 		
 
 		
-		Log.i(TAG, "");
-		repaint();
+		scheduleFrame();
 		
 	}
 
@@ -272,7 +553,9 @@ public class FlowDisplay extends KComponent implements KeyListener
 		
 		int code = KeyCodeTransaltor.getKeyCode(paramKeyEvent.getKeyCode());
 		
-		Log.i(TAG, "keyPressed "+code);
+		if (Log.isLoggable(TAG, Log.LEVEL_DEBUG)) {
+			Log.d(TAG, "keyPressed " + code);
+		}
 		KeyEvent keyEvent = new KeyEvent(KeyEvent.ACTION_DOWN, code);
 		mKeyEvents.addElement(keyEvent);
 		dispatchEvents();
@@ -282,7 +565,9 @@ public class FlowDisplay extends KComponent implements KeyListener
 		
 		int code = KeyCodeTransaltor.getKeyCode(paramKeyEvent.getKeyCode());
 	
-		Log.i(TAG, "keyReleased "+code);
+		if (Log.isLoggable(TAG, Log.LEVEL_DEBUG)) {
+			Log.d(TAG, "keyReleased " + code);
+		}
 		KeyEvent keyEvent = new KeyEvent(KeyEvent.ACTION_UP, code);
 		mKeyEvents.addElement(keyEvent);
 		dispatchEvents();
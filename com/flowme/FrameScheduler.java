@@ -0,0 +1,206 @@
+package com.flowme;
+
+import android.graphics.Rect;
+import android.os.Handler;
+import android.util.Log;
+
+/**
+ * Coalesces every invalidate() / requestLayout() issued during a frame window
+ * into a single traversal run on the UI thread, no more often than the
+ * configured frame interval. Frames go through the UI message queue, after
+ * the messages already due.
+ *
+ * It also decides how each damaged rectangle reaches the e-ink panel. Every
+ * partial update leaves some ghosting behind, so the display is split in
+ * tiles counting the partial updates they received; once a tile went over
+ * the budget, the next update touching it is a full (flashing) refresh and
+ * the counters of the refreshed tiles are reset.
+ */
+public class FrameScheduler {
+
+	private final static String TAG = "FrameScheduler";
+
+	public final static int REFRESH_PARTIAL = 0;
+	public final static int REFRESH_FULL = 1;
+
+	public final static long DEFAULT_MIN_FRAME_INTERVAL = 100;
+	public final static int DEFAULT_MAX_PARTIAL_UPDATES = 8;
+	public final static int TILE_SIZE = 64;
+
+	private final Runnable mCallback;
+	private final Runnable mFrameRunnable;
+	private final Handler mHandler = new Handler();
+
+	private long mMinFrameInterval = DEFAULT_MIN_FRAME_INTERVAL;
+	private long mLastFrameTime = 0;
+	private boolean mFrameScheduled = false;
+
+	private int mMaxPartialUpdates = DEFAULT_MAX_PARTIAL_UPDATES;
+	private int mTileColumns = 0;
+	private int mTileRows = 0;
+	private int[] mPartialUpdates = new int[0];
+
+	// statistics
+	private int mFrameCount = 0;
+	private int mCoalescedCount = 0;
+	private int mPartialRefreshCount = 0;
+	private int mFullRefreshCount = 0;
+
+	/**
+	 * @param callback run on the AWT event thread for every frame
+	 */
+	public FrameScheduler(Runnable callback) {
+		mCallback = callback;
+		mFrameRunnable = new Runnable() {
+			public void run() {
+				synchronized (FrameScheduler.this) {
+					mFrameScheduled = false;
+					mLastFrameTime = System.currentTimeMillis();
+					mFrameCount++;
+				}
+				mCallback.run();
+			}
+		};
+	}
+
+	/**
+	 * Ask for a frame. Calls made before the pending frame ran are merged
+	 * into it.
+	 */
+	public synchronized void scheduleFrame() {
+
+		if (mFrameScheduled) {
+			mCoalescedCount++;
+			return;
+		}
+
+		mFrameScheduled = true;
+
+		final long delay = mLastFrameTime + mMinFrameInterval - System.currentTimeMillis();
+		mHandler.postDelayed(mFrameRunnable, delay);
+	}
+
+	public synchronized boolean isFrameScheduled() {
+		return mFrameScheduled;
+	}
+
+	/**
+	 * Minimal time between two frames, in milliseconds.
+	 */
+	public synchronized void setMinFrameInterval(long interval) {
+		mMinFrameInterval = interval < 0 ? 0 : interval;
+	}
+
+	public synchronized long getMinFrameInterval() {
+		return mMinFrameInterval;
+	}
+
+	/**
+	 * Number of partial updates a tile may receive before it gets a full
+	 * refresh.
+	 */
+	public void setMaxPartialUpdates(int count) {
+		mMaxPartialUpdates = count < 0 ? 0 : count;
+	}
+
+	public int getMaxPartialUpdates() {
+		return mMaxPartialUpdates;
+	}
+
+	/**
+	 * Resizes the tile grid to cover the display. All the counters are reset
+	 * as the whole display is about to be redrawn anyway.
+	 */
+	public void setDisplaySize(int w, int h) {
+		mTileColumns = (Math.max(w, 0) + TILE_SIZE - 1) / TILE_SIZE;
+		mTileRows = (Math.max(h, 0) + TILE_SIZE - 1) / TILE_SIZE;
+		mPartialUpdates = new int[mTileColumns * mTileRows];
+	}
+
+	/**
+	 * Chooses how the rectangle has to be refreshed and accounts for it. For a
+	 * full refresh, r is grown to the bounds of the tiles it touches, whose
+	 * counters are reset.
+	 *
+	 * @return {@link #REFRESH_PARTIAL} or {@link #REFRESH_FULL}
+	 */
+	public int computeRefresh(Rect r) {
+
+		final int c0 = Math.max(r.left / TILE_SIZE, 0);
+		final int r0 = Math.max(r.top / TILE_SIZE, 0);
+		final int c1 = Math.min((r.right - 1) / TILE_SIZE, mTileColumns - 1);
+		final int r1 = Math.min((r.bottom - 1) / TILE_SIZE, mTileRows - 1);
+
+		final int[] updates = mPartialUpdates;
+		boolean full = false;
+
+		for (int row = r0; row <= r1 && !full; row++) {
+			for (int col = c0; col <= c1; col++) {
+				if (updates[row * mTileColumns + col] >= mMaxPartialUpdates) {
+					full = true;
+					break;
+				}
+			}
+		}
+
+		for (int row = r0; row <= r1; row++) {
+			for (int col = c0; col <= c1; col++) {
+				if (full) {
+					updates[row * mTileColumns + col] = 0;
+				}
+				else {
+					updates[row * mTileColumns + col]++;
+				}
+			}
+		}
+
+		if (full) {
+			r.set(c0 * TILE_SIZE, r0 * TILE_SIZE, (c1 + 1) * TILE_SIZE, (r1 + 1) * TILE_SIZE);
+			mFullRefreshCount++;
+			if (Log.isLoggable(TAG, Log.LEVEL_DEBUG)) {
+				Log.d(TAG, "full refresh " + r);
+			}
+			return REFRESH_FULL;
+		}
+
+		mPartialRefreshCount++;
+		return REFRESH_PARTIAL;
+	}
+
+	/**
+	 * Number of frames run so far.
+	 */
+	public synchronized int getFrameCount() {
+		return mFrameCount;
+	}
+
+	/**
+	 * Number of frame requests merged into an already pending frame.
+	 */
+	public synchronized int getCoalescedCount() {
+		return mCoalescedCount;
+	}
+
+	public int getPartialRefreshCount() {
+		return mPartialRefreshCount;
+	}
+
+	public int getFullRefreshCount() {
+		return mFullRefreshCount;
+	}
+
+	public synchronized void resetCounters() {
+		mFrameCount = 0;
+		mCoalescedCount = 0;
+		mPartialRefreshCount = 0;
+		mFullRefreshCount = 0;
+	}
+
+	/**
+	 * Drops the pending frame.
+	 */
+	public synchronized void cancel() {
+		mHandler.removeCallbacks(mFrameRunnable);
+		mFrameScheduled = false;
+	}
+}
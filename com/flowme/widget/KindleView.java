@@ -93,7 +93,9 @@ public class KindleView extends FrameLayout implements MenuAware, MenuBuilder.Ca
 
 		int keyCode = event.getKeyCode();
 		
-		Log.i(TAG, "dispatchKeyEvent " + keyCode);
+		if (Log.isLoggable(TAG, Log.LEVEL_DEBUG)) {
+			Log.d(TAG, "dispatchKeyEvent " + keyCode);
+		}
 		
 		if (   ( keyCode == KeyEvent.KEYCODE_MENU 
 				&& event.getAction() == KeyEvent.ACTION_DOWN) ) {
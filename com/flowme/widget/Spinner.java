@@ -17,9 +17,13 @@ import android.graphics.drawable.shapes.RoundRectShape;
 import android.util.StateSet;
 import android.view.Gravity;
 import android.view.View;
+import android.view.ViewGroup;
+import android.widget.AdapterView;
+import android.widget.BaseAdapter;
 import android.widget.Button;
 import android.widget.CompoundButton;
-import android.widget.LinearLayout;
+import android.widget.ListView;
+import android.widget.AdapterView.OnItemClickListener;
 
 public class Spinner extends CompoundButton {
 
@@ -89,9 +93,9 @@ public class Spinner extends CompoundButton {
 		public void onSelectionChanged(Spinner spinner);
 	}
 	
-	private final static class ChoiceDialog extends Dialog implements OnClickListener {
+	private final static class ChoiceDialog extends Dialog implements OnItemClickListener {
 
-		private LinearLayout mView;
+		private ListView mView;
 
 		private Spinner mParentSpinner;
 
@@ -99,9 +103,8 @@ public class Spinner extends CompoundButton {
 
 			mParentSpinner = parent;
 
-			mView = new LinearLayout();
-
-			mView.setOrientation(LinearLayout.VERTICAL);
+			// only the choices in view are laid out, long lists open as fast as short ones
+			mView = new ListView();
 
 			mView.setPadding(10, 10, 10, 10);
 
@@ -113,35 +116,55 @@ public class Spinner extends CompoundButton {
 			
 			mView.setBackgroundDrawable(backgroundDrawable);
 
-			for (int i = 0; i < items.size(); i++) {
+			mView.setAdapter(new ChoiceAdapter(items));
+			mView.setOnItemClickListener(this);
+
+			getViewRoot().setView(mView);
+
+		}
 
-				Button b = new Button();
+		public void onItemClick(AdapterView parent, View view, int position, long id) {
 
-				b.setText((String) items.elementAt(i));
-				b.setOnClickListener(this);
-				b.setFocusable(true);
-				b.setPadding(5, 3, 5, 3);
-				// b.setTextColor(Color.BLACK);
-				mView.addView(b);
-				((LinearLayout.LayoutParams) b.getLayoutParams()).setMargins(5, 5, 5, 5);
+			if(mParentSpinner.selectionChangedListener != null) {
+				mParentSpinner.selectionChangedListener.onSelectionChanged(mParentSpinner);
 			}
+			
+			mParentSpinner.setText((String) parent.getItemAtPosition(position));
 
-			getViewRoot().setView(mView);
+			this.hide();
+		}
+	}
 
+	private final static class ChoiceAdapter extends BaseAdapter {
+
+		private final Vector mItems;
+
+		public ChoiceAdapter(Vector items) {
+			mItems = items;
 		}
 
-		public void onClick(View v) {
+		public int getCount() {
+			return mItems.size();
+		}
+
+		public Object getItem(int position) {
+			return mItems.elementAt(position);
+		}
 
-			if (v instanceof Button) {
-				
-				if(mParentSpinner.selectionChangedListener != null) {
-					mParentSpinner.selectionChangedListener.onSelectionChanged(mParentSpinner);
-				}
-				
-				mParentSpinner.setText(((Button) v).getText());
+		public View getView(int position, View convertView, ViewGroup parent) {
+
+			Button b = (Button) convertView;
+
+			if (b == null) {
+				b = new Button();
+				// the list shows the selection
+				b.setFocusable(false);
+				b.setPadding(5, 8, 5, 8);
 			}
 
-			this.hide();
+			b.setText((String) mItems.elementAt(position));
+
+			return b;
 		}
 	}
 }